@@ -0,0 +1,29 @@
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Helpers shared by the benchmark workloads
+ */
+public final class BenchSupport {
+
+    private BenchSupport() {}
+
+    /**
+     * Create a headless simulation with no links, for workloads that need
+     * a Manager or a Node. Nothing is printed: debug, trace and statistics
+     * output are turned off.
+     *
+     * @param numNodes The number of nodes to simulate
+     * @return The simulator. It is not started
+     */
+    public static Simulator newSimulator(int numNodes) throws IOException {
+        File topo = File.createTempFile("bench", ".topo");
+        topo.deleteOnExit();
+        Simulator simulator = new Simulator(numNodes, topo.getPath(), SortedEventQueue.DEFAULT, true);
+        Settings settings = simulator.getSettings();
+        settings.setDebug(false);
+        settings.setTrace(false);
+        settings.setStatistics(false);
+        return simulator;
+    }
+}
@@ -0,0 +1,64 @@
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Packing and unpacking of packets and transport segments. The variants are
+ * packet-pack, packet-unpack, transport-pack and transport-unpack, and the
+ * size is the length of the payload.
+ */
+public class CodecWorkload implements fishnet.bench.Workload {
+
+    // One way to pack or unpack. Each benchmark forks its own JVM and uses
+    // one of them, so the call in run is monomorphic and inlined
+    private interface Operation {
+        Object apply();
+    }
+
+    private Operation operation;
+
+    public void setUp(String variant, int size) {
+        byte[] payload = new byte[size];
+        for(int i = 0; i < size; i++){
+            payload[i] = (byte) i;
+        }
+        final Packet packet = new Packet(1, 0, Packet.MAX_TTL, Protocol.TRANSPORT_PKT, 0, payload);
+        final Transport transport = new Transport(40, 21, Transport.DATA, 8, 1, payload);
+        final byte[] packedPacket = packet.pack();
+        final byte[] packedTransport = transport.pack();
+        switch(variant){
+            case "packet-pack":
+                operation = new Operation(){
+                    public Object apply() {
+                        return packet.pack();
+                    }
+                };
+                break;
+            case "packet-unpack":
+                operation = new Operation(){
+                    public Object apply() {
+                        return Packet.unpack(packedPacket);
+                    }
+                };
+                break;
+            case "transport-pack":
+                operation = new Operation(){
+                    public Object apply() {
+                        return transport.pack();
+                    }
+                };
+                break;
+            case "transport-unpack":
+                operation = new Operation(){
+                    public Object apply() {
+                        return Transport.unpack(packedTransport);
+                    }
+                };
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown codec variant: " + variant);
+        }
+    }
+
+    public void run(Blackhole bh) {
+        bh.consume(operation.apply());
+    }
+}
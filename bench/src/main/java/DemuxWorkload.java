@@ -0,0 +1,53 @@
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * TCPManager.receivePacket with a number of connected sockets, given by the
+ * size. The sockets are bound to port 21 of node 0, each to a different
+ * foreign address and port, and receive a data segment each in turn.
+ */
+public class DemuxWorkload implements fishnet.bench.Workload {
+
+    private static final int LOCAL_PORT = 21;
+    private static final int PAYLOAD_SIZE = 100;
+
+    private TCPManager tcpMan;
+    private int[] from;
+    private PacketView[] packets;
+    private int next;
+
+    public void setUp(String variant, int size) throws Exception {
+        if(!variant.equals("connected")){
+            throw new IllegalArgumentException("Unknown demux variant: " + variant);
+        }
+        Simulator simulator = BenchSupport.newSimulator(1);
+        Node node = new Node(simulator, 0);
+        tcpMan = new TCPManager(node, 0, simulator);
+
+        from = new int[size];
+        packets = new PacketView[size];
+        for(int i = 0; i < size; i++){
+            int foreignAddress = 1 + i % (Packet.MAX_ADDRESS - 1);
+            int foreignPort = i / (Packet.MAX_ADDRESS - 1);
+            TCPSockWrapper wrapper = new TCPSockWrapper(tcpMan, node,
+                Settings.DEFAULT_READ_BUFF_SIZE, Settings.DEFAULT_WRITE_BUFF_SIZE);
+            if(tcpMan.bind(wrapper, LOCAL_PORT, foreignAddress, foreignPort) != 0){
+                throw new IllegalStateException("Could not bind socket " + i);
+            }
+            Transport segment = new Transport(foreignPort, LOCAL_PORT, Transport.DATA, 8, i,
+                new byte[PAYLOAD_SIZE]);
+            Packet packet = new Packet(0, foreignAddress, Packet.MAX_TTL, Protocol.TRANSPORT_PKT, i,
+                segment.pack());
+            from[i] = foreignAddress;
+            packets[i] = new PacketView().wrap(packet.pack());
+        }
+        next = 0;
+    }
+
+    public void run(Blackhole bh) {
+        tcpMan.receivePacket(from[next], packets[next]);
+        bh.consume(next);
+        if(++next == packets.length){
+            next = 0;
+        }
+    }
+}
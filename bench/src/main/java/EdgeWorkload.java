@@ -0,0 +1,31 @@
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Edge.schedulePkt on a link with the default options. The variant is the
+ * loss rate of the link and the size is the size of the packets. Packets
+ * are offered exactly as fast as the link sends them.
+ */
+public class EdgeWorkload implements fishnet.bench.Workload {
+
+    private Simulator simulator;
+    private Edge edge;
+    private int size;
+    private long interval;   // microseconds the link takes to send a packet
+    private long now;
+
+    public void setUp(String variant, int size) throws Exception {
+        simulator = BenchSupport.newSimulator(2);
+        EdgeOptions options = new EdgeOptions();
+        options.setLossRate(Double.parseDouble(variant));
+        edge = new Edge(0, 1, options);
+        edge.setSeed(433);
+        this.size = size;
+        interval = (long) size * 1000000 / options.getBW();
+        now = 0;
+    }
+
+    public void run(Blackhole bh) {
+        now += interval;
+        bh.consume(edge.schedulePkt(simulator, 0, size, now));
+    }
+}
@@ -0,0 +1,40 @@
+import java.util.Random;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The hold model on a SortedEventQueue. The variant is the kind of queue,
+ * as given to SortedEventQueue.newQueue, and the size is the number of
+ * events kept in it.
+ */
+public class EventQueueWorkload implements fishnet.bench.Workload {
+
+    private static final int MEAN_INTERVAL = 1000;   // microseconds between events
+    private static final int NUM_INCREMENTS = 4096;  // must be a power of 2
+
+    private SortedEventQueue queue;
+    private long[] increments;   // drawn up front so that run does not call Random
+    private int next;
+
+    public void setUp(String variant, int size) {
+        Random random = new Random(433);
+        queue = SortedEventQueue.newQueue(variant);
+        for(int i = 0; i < size; i++){
+            queue.addEvent(new Event((long) (random.nextDouble() * size * MEAN_INTERVAL), null));
+        }
+        // exponential, as for events that arrive independently
+        increments = new long[NUM_INCREMENTS];
+        for(int i = 0; i < NUM_INCREMENTS; i++){
+            increments[i] = (long) (-Math.log(1 - random.nextDouble()) * size * MEAN_INTERVAL);
+        }
+        next = 0;
+    }
+
+    public void run(Blackhole bh) {
+        Event event = queue.removeNextEvent();
+        event.setTimeToOccur(event.timeToOccur() + increments[next]);
+        next = (next + 1) & (NUM_INCREMENTS - 1);
+        queue.addEvent(event);
+        bh.consume(event);
+    }
+}
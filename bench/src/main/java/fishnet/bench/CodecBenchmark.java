@@ -0,0 +1,56 @@
+package fishnet.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Packing and unpacking of packets and transport segments.
+ * The payload lengths are empty, a full segment at the default MTU
+ * and a full segment at an Ethernet sized MTU.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CodecBenchmark {
+
+    @Param({"0", "107", "1474"})
+    public int payloadLength;
+
+    private Workload packetPack;
+    private Workload packetUnpack;
+    private Workload transportPack;
+    private Workload transportUnpack;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        packetPack = Workload.create("CodecWorkload", "packet-pack", payloadLength);
+        packetUnpack = Workload.create("CodecWorkload", "packet-unpack", payloadLength);
+        transportPack = Workload.create("CodecWorkload", "transport-pack", payloadLength);
+        transportUnpack = Workload.create("CodecWorkload", "transport-unpack", payloadLength);
+    }
+
+    @Benchmark
+    public void packetPack(Blackhole bh) throws Exception {
+        packetPack.run(bh);
+    }
+
+    @Benchmark
+    public void packetUnpack(Blackhole bh) throws Exception {
+        packetUnpack.run(bh);
+    }
+
+    @Benchmark
+    public void transportPack(Blackhole bh) throws Exception {
+        transportPack.run(bh);
+    }
+
+    @Benchmark
+    public void transportUnpack(Blackhole bh) throws Exception {
+        transportUnpack.run(bh);
+    }
+}
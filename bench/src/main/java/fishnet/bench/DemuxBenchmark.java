@@ -0,0 +1,37 @@
+package fishnet.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * TCPManager.receivePacket on a node with a number of connected sockets.
+ * Each call reads the headers of a data segment, finds its socket and
+ * unpacks the segment. Segments go to each socket in turn. The sockets
+ * are left in the READY state, so they ignore what they are given and
+ * the measurement is not mixed up with the rest of TCP.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DemuxBenchmark {
+
+    @Param({"1", "16", "256", "1024"})
+    public int sockets;
+
+    private Workload receive;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        receive = Workload.create("DemuxWorkload", "connected", sockets);
+    }
+
+    @Benchmark
+    public void receivePacket(Blackhole bh) throws Exception {
+        receive.run(bh);
+    }
+}
@@ -0,0 +1,38 @@
+package fishnet.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Edge.schedulePkt as the Simulator calls it for every hop. Packets are
+ * offered at the rate the link drains them, so none overflow its buffer.
+ * With a loss rate, a share of them is dropped at random.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EdgeBenchmark {
+
+    @Param({"0.0", "0.1"})
+    public String lossRate;
+
+    @Param({"128", "1500"})
+    public int packetSize;
+
+    private Workload schedule;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        schedule = Workload.create("EdgeWorkload", lossRate, packetSize);
+    }
+
+    @Benchmark
+    public void schedulePkt(Blackhole bh) throws Exception {
+        schedule.run(bh);
+    }
+}
@@ -0,0 +1,38 @@
+package fishnet.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The hold model: with depth events queued, remove the next one and add it
+ * back a random time later. This is what a running simulation does to its
+ * queue, so the depth stays fixed while the times keep moving forward.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EventQueueBenchmark {
+
+    @Param({"list", "heap", "calendar"})
+    public String queue;
+
+    @Param({"16", "256", "4096"})
+    public int depth;
+
+    private Workload hold;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        hold = Workload.create("EventQueueWorkload", queue, depth);
+    }
+
+    @Benchmark
+    public void removeAndAdd(Blackhole bh) throws Exception {
+        hold.run(bh);
+    }
+}
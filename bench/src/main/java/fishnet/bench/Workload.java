@@ -0,0 +1,39 @@
+package fishnet.bench;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * One operation under measurement.
+ *
+ * The Fishnet classes live in the default package, which cannot be imported
+ * from a named one, and JMH will not generate benchmarks in the default
+ * package. So each benchmark drives a Workload that is written in the
+ * default package next to the code it exercises and created by name.
+ */
+public interface Workload {
+
+    /**
+     * Prepare the workload. Called once per trial.
+     *
+     * @param variant What to measure, interpreted by each workload
+     * @param size The size of the workload: a payload length, a queue
+     *      depth, a number of sockets
+     */
+    void setUp(String variant, int size) throws Exception;
+
+    /**
+     * Run the operation once, handing its result to the blackhole
+     */
+    void run(Blackhole bh) throws Exception;
+
+    /**
+     * Create and set up a workload
+     *
+     * @param className The default package class implementing it
+     */
+    static Workload create(String className, String variant, int size) throws Exception {
+        Workload workload = (Workload) Class.forName(className).getDeclaredConstructor().newInstance();
+        workload.setUp(variant, size);
+        return workload;
+    }
+}
@@ -0,0 +1,128 @@
+import java.io.Serializable;
+import java.io.ObjectInputStream;
+import java.io.IOException;
+
+/**
+ * <pre>
+ * Pool of byte arrays that have been released and can be reused, kept in size classes.
+ *
+ * The payload of a Transport is an array of exactly the length of the payload, so each
+ * size class holds arrays of one length. A bulk transfer only uses a few: full segments,
+ * the packets that carry them, and the last short segment. There are at most MAX_CLASSES
+ * classes of at most MAX_PER_CLASS arrays each. Arrays released beyond that are left to
+ * the garbage collector.
+ *
+ * An array must not be used once it has been released. PacketBuffer and Transport count
+ * the references to the arrays they hold and release them when the count drops to zero.
+ *
+ * Not thread safe. Each Manager keeps its own, shared by its nodes.
+ * </pre>
+ */
+public class BufferPool implements Serializable {
+
+    public static final int MAX_CLASSES = 32;
+    public static final int MAX_PER_CLASS = 256;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private transient int[] lengths;      // length of the arrays in each class
+    private transient byte[][][] free;    // arrays released to each class
+    private transient int[] counts;       // number of arrays released to each class
+    private transient int numClasses;
+    private transient int last;           // class found by the last lookup
+    private long allocated;               // arrays created because their class was empty
+    private long reused;                  // arrays handed out again
+
+    public BufferPool() {
+	this.init();
+	this.allocated = 0;
+	this.reused = 0;
+    }
+
+    /**
+     * Take an array from the pool, or create one if its class is empty.
+     * Its contents are whatever the last user left in it
+     * @param length The length of the array
+     * @return An array of exactly length bytes
+     */
+    public byte[] obtain(int length) {
+	if(length == 0) {
+	    return EMPTY;
+	}
+	int c = this.find(length);
+	if(c >= 0 && this.counts[c] > 0) {
+	    this.reused++;
+	    byte[] buf = this.free[c][--this.counts[c]];
+	    this.free[c][this.counts[c]] = null;
+	    return buf;
+	}
+	this.allocated++;
+	return new byte[length];
+    }
+
+    /**
+     * Give an array back to the pool. The caller must not use it afterwards
+     * @param buf The array to give back
+     */
+    public void release(byte[] buf) {
+	if(buf.length == 0) {
+	    return;
+	}
+	int c = this.find(buf.length);
+	if(c < 0) {
+	    if(this.numClasses == MAX_CLASSES) {
+		return;
+	    }
+	    c = this.numClasses++;
+	    this.lengths[c] = buf.length;
+	    this.free[c] = new byte[MAX_PER_CLASS][];
+	    this.counts[c] = 0;
+	}
+	if(this.counts[c] < MAX_PER_CLASS) {
+	    this.free[c][this.counts[c]++] = buf;
+	}
+    }
+
+    /**
+     * @return The number of arrays created because the pool had none of the length asked for
+     */
+    public long getAllocated() {
+	return this.allocated;
+    }
+
+    /**
+     * @return The number of arrays taken from the pool rather than created
+     */
+    public long getReused() {
+	return this.reused;
+    }
+
+    /******************** Private Functions ********************/
+
+    private void init() {
+	this.lengths = new int[MAX_CLASSES];
+	this.free = new byte[MAX_CLASSES][][];
+	this.counts = new int[MAX_CLASSES];
+	this.numClasses = 0;
+	this.last = 0;
+    }
+
+    // Returns the class of arrays of the given length, or -1 if there is none
+    private int find(int length) {
+	if(this.last < this.numClasses && this.lengths[this.last] == length) {
+	    return this.last;
+	}
+	for(int c = 0; c < this.numClasses; c++) {
+	    if(this.lengths[c] == length) {
+		this.last = c;
+		return c;
+	    }
+	}
+	return -1;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+	in.defaultReadObject();
+	this.init();   // the released arrays are not saved
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * <pre>
+ * Event queue kept as a calendar queue (R. Brown, "Calendar Queues", CACM 1988).
+ *
+ * Time is divided into days of a fixed width and each day hashes to a bucket, like days
+ * of the year on a desk calendar. Each bucket is a short sorted list. Dequeuing walks
+ * forward from the current day, so insert and remove are amortized O(1) as long as the
+ * day width matches the spacing of events. The number of buckets doubles or halves as
+ * the queue grows or shrinks, and the day width is re-estimated from the earliest events
+ * each time.
+ * </pre>
+ */
+public class CalendarEventQueue extends SortedEventQueue {
+
+    private static final int MIN_BUCKETS = 16;
+    private static final int SAMPLE_SIZE = 25;          // events used to estimate the day width
+    private static final long INITIAL_WIDTH = 1000;     // microseconds
+
+    private Event[] buckets;   // each bucket is a sorted list linked through Event.next
+    private int mask;          // buckets.length - 1. buckets.length is a power of 2
+    private long width;        // width of a day in microseconds
+    private long currentDay;   // no event is scheduled before this day
+    private int size;
+
+    /**
+     * Create a new empty event queue.
+     */
+    public CalendarEventQueue() {
+	super();
+	this.buckets = new Event[MIN_BUCKETS];
+	this.mask = MIN_BUCKETS - 1;
+	this.width = INITIAL_WIDTH;
+	this.currentDay = 0;
+	this.size = 0;
+    }
+
+    protected void insert(Event event) {
+	long day = this.dayOf(event);
+	this.link(event, day);
+	this.size++;
+
+	if(day < this.currentDay) {
+	    // scheduled in the past. Rewind so that it is found next
+	    this.currentDay = day;
+	}
+
+	if(this.size > 2 * this.buckets.length) {
+	    this.resize(this.buckets.length * 2);
+	}
+    }
+
+    public Event getNextEvent() {
+	if(this.size == 0) {
+	    return null;
+	}
+	return this.buckets[this.findNext()];
+    }
+
+    public Event removeNextEvent() {
+	if(this.size == 0) {
+	    return null;
+	}
+	Event event = this.poll();
+
+	if(this.buckets.length > MIN_BUCKETS && this.size < this.buckets.length / 2) {
+	    this.resize(this.buckets.length / 2);
+	}
+	return event;
+    }
+
+    public int size() {
+	return this.size;
+    }
+
+    /******************** Private Functions ********************/
+
+    private long dayOf(Event event) {
+	return Math.max(event.timeToOccur(), 0) / this.width;
+    }
+
+    // Insert event into its bucket, keeping the bucket sorted
+    private void link(Event event, long day) {
+	int index = (int)(day & this.mask);
+	Event head = this.buckets[index];
+	if(head == null || event.before(head)) {
+	    event.next = head;
+	    this.buckets[index] = event;
+	    return;
+	}
+	Event prev = head;
+	while(prev.next != null && !event.before(prev.next)) {
+	    prev = prev.next;
+	}
+	event.next = prev.next;
+	prev.next = event;
+    }
+
+    // Returns the index of the bucket holding the earliest event. Queue must not be empty
+    private int findNext() {
+	// Walk forward one day at a time for at most one year
+	for(int i = 0; i < this.buckets.length; i++) {
+	    int index = (int)(this.currentDay & this.mask);
+	    Event head = this.buckets[index];
+	    if(head != null && this.dayOf(head) == this.currentDay) {
+		return index;
+	    }
+	    this.currentDay++;
+	}
+
+	// Nothing in the coming year. Search every bucket directly
+	int best = -1;
+	for(int i = 0; i < this.buckets.length; i++) {
+	    Event head = this.buckets[i];
+	    if(head != null && (best == -1 || head.before(this.buckets[best]))) {
+		best = i;
+	    }
+	}
+	this.currentDay = this.dayOf(this.buckets[best]);
+	return best;
+    }
+
+    private Event poll() {
+	int index = this.findNext();
+	Event event = this.buckets[index];
+	this.buckets[index] = event.next;
+	event.next = null;
+	this.size--;
+	return event;
+    }
+
+    // Rehash all events into newSize buckets, re-estimating the width of a day
+    private void resize(int newSize) {
+	// Sample the earliest events to estimate the spacing between events
+	int sampleCount = Math.min(this.size, SAMPLE_SIZE);
+	Event[] sample = new Event[sampleCount];
+	for(int i = 0; i < sampleCount; i++) {
+	    sample[i] = this.poll();
+	}
+	long newWidth = this.estimateWidth(sample);
+
+	Event[] oldBuckets = this.buckets;
+	this.buckets = new Event[newSize];
+	this.mask = newSize - 1;
+	this.width = newWidth;
+
+	for(int i = 0; i < oldBuckets.length; i++) {
+	    Event event = oldBuckets[i];
+	    while(event != null) {
+		Event next = event.next;
+		this.link(event, this.dayOf(event));
+		event = next;
+	    }
+	}
+	for(int i = 0; i < sampleCount; i++) {
+	    this.link(sample[i], this.dayOf(sample[i]));
+	}
+	this.size += sampleCount;
+	this.currentDay = (sampleCount > 0) ? this.dayOf(sample[0]) : 0;
+    }
+
+    // Three times the average separation of the sampled events, ignoring outliers
+    private long estimateWidth(Event[] sample) {
+	if(sample.length < 2) {
+	    return this.width;
+	}
+	long total = sample[sample.length - 1].timeToOccur() - sample[0].timeToOccur();
+	double average = (double)total / (sample.length - 1);
+
+	long sum = 0;
+	int count = 0;
+	for(int i = 1; i < sample.length; i++) {
+	    long separation = sample[i].timeToOccur() - sample[i - 1].timeToOccur();
+	    if(separation <= 2 * average) {
+		sum += separation;
+		count++;
+	    }
+	}
+	if(sum == 0) {
+	    // All sampled events happen at once. Keep the current width
+	    return this.width;
+	}
+	return Math.max(1, 3 * sum / count);
+    }
+}
@@ -1,5 +1,9 @@
 import java.lang.reflect.Method;
 import java.lang.reflect.InvocationTargetException;
+import java.io.Serializable;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.IOException;
 
 /**
  * <pre>   
@@ -13,13 +17,22 @@ import java.lang.reflect.InvocationTargetException;
  *
  * The above code snippet assumes that it is written inside class Test, hence the use of this.
  * The method must have public visibility.
+ *
+ * For events that are scheduled often, subclass TaskCallback instead. It avoids the reflective lookup and invocation.
  * </pre>   
  */
-public class Callback {
-    private Method method;
+public class Callback implements Serializable {
+    private transient Method method;   // saved by name, since Method is not serializable
     private Object obj;
     private Object[] params;
 
+    /**
+     * Used by subclasses that override invoke and do not need a Method
+     */
+    protected Callback() {
+	this(null, null, null);
+    }
+
     /**
      * Initializes member variables
      * @param method The method to be invoked
@@ -41,6 +54,13 @@ public class Callback {
 	this.params = params;
     }
 
+    /**
+     * @return The method this callback invokes. Null for subclasses that override invoke
+     */
+    public Method getInvokedMethod() {
+	return this.method;
+    }
+
     /**
      * Invokes the callback
      * @throws IllegalAccessException Thrown by invoke method in class Method 
@@ -67,6 +87,32 @@ public class Callback {
 	return obj.getClass().getMethod(methodName, Callback.getParameterTypes(parameterTypes));
     }
 
+    private void writeObject(ObjectOutputStream out) throws IOException {
+	out.defaultWriteObject();
+	if(this.method == null) {
+	    out.writeObject(null);
+	    return;
+	}
+	out.writeObject(this.method.getDeclaringClass());
+	out.writeObject(this.method.getName());
+	out.writeObject(this.method.getParameterTypes());
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+	in.defaultReadObject();
+	Class declaringClass = (Class)in.readObject();
+	if(declaringClass == null) {
+	    return;
+	}
+	String name = (String)in.readObject();
+	Class[] paramTypes = (Class[])in.readObject();
+	try {
+	    this.method = declaringClass.getMethod(name, paramTypes);
+	}catch(NoSuchMethodException e) {
+	    throw new ClassNotFoundException("Callback method " + name + " no longer exists in " + declaringClass.getName());
+	}
+    }
+
     private static Class[] getParameterTypes(String[] parameterTypes) throws ClassNotFoundException {
 	if ((parameterTypes == null) || (parameterTypes.length == 0)) {
 	    return null;
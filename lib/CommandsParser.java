@@ -3,6 +3,8 @@ import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.PrintStream;
 import java.io.IOException;
+import java.io.Serializable;
+import java.io.ObjectInputStream;
 
 /**
  * <pre>
@@ -34,6 +36,14 @@ import java.io.IOException;
  *	restart a [b]  -- this restarts a node or edge.  previous information about
  *		the node/edge is preserved
  *	echo text -- print the text
+ *	seed x  -- restart all random streams (packet loss, node choices) from seed x, a long.
+ *		Runs with the same seed and commands are repeated exactly
+ *	snapshot file  -- save the whole simulation to file once the events and commands due at
+ *		the current time have run, or on exit if that is sooner. Fishnet restore carries on from
+ *		there (for simulation mode only)
+ *	profile on|off|report  -- start a new profile of the events run, stop profiling, or print
+ *		the profile so far: events per second, deepest event queue, and how often and how
+ *		long each kind of event and timer ran. The profile is also printed on exit
  *	exit  -- cleanly stop the simulation/emulation run and print statistics
  *	a <msg>  -- deliver text <msg> to node a (for simulation mode only)
  *	<msg> -- deliver text <msg> to this node (for emulation mode only)
@@ -44,14 +54,25 @@ import java.io.IOException;
  * </pre>
  */
 
-public abstract class CommandsParser {
+public abstract class CommandsParser implements Serializable {
 
     private String filename;
-    private BufferedReader reader;
+    private transient BufferedReader reader;
+    private int linesRead;   // so that a restored parser can carry on from the same line
+    private Topology topology;
 
     protected CommandsParser() {
+	this(Topology.GetInstance());
+    }
+
+    /**
+     * @param topology The topology that topology commands change
+     */
+    protected CommandsParser(Topology topology) {
 	this.filename = null;
 	this. reader = null;
+	this.linesRead = 0;
+	this.topology = topology;
     }
 
     /**
@@ -68,6 +89,7 @@ public abstract class CommandsParser {
 	}
 	this.filename = filename;
 	this.reader = new BufferedReader(new FileReader(filename));
+	this.linesRead = 0;
 	return parseRemainder(now);
     }
 
@@ -78,9 +100,13 @@ public abstract class CommandsParser {
      */
     public long parseRemainder(long now){
 	long deferTill = -1;
+	if(this.reader == null) {
+	    return deferTill;
+	}
 	try {
 	    String line;
 	    while(deferTill == -1 && (line = this.reader.readLine()) != null) {
+		this.linesRead++;
 		deferTill = parseLine(line, now);
 	    }
 	}catch(IOException e) {
@@ -150,6 +176,18 @@ public abstract class CommandsParser {
 	    return -1;
 	}
 
+	if(this.parseSeed(cmd)) {
+	    return -1;
+	}
+
+	if(this.parseSnapshot(cmd)) {
+	    return -1;
+	}
+
+	if(this.parseProfile(cmd)) {
+	    return -1;
+	}
+
 	long deferTill = this.parseTime(cmd, now);
 	if(deferTill == -1 && !cmd[0].equals("time")) {
 	    this.parseNodeCmd(cmd);
@@ -159,24 +197,40 @@ public abstract class CommandsParser {
 
     // These following functions are overriden by TrawlerCommandsParser so that it can notify trawler of change
 
+    protected void setSeed(long seed) {
+	this.topology.setSeed(seed);
+    }
+
+    protected void snapshot(String filename) {
+	System.err.println("Snapshots are only supported by the simulator");
+    }
+
+    protected void setProfiling(boolean profiling) {
+	System.err.println("Profiling is not supported here");
+    }
+
+    protected void printProfile() {
+	System.err.println("Profiling is not supported here");
+    }
+
     protected void createNewEdge(int nodeA, int nodeB, EdgeOptions options) {
-	Topology.GetInstance().newEdge(nodeA, nodeB, options);
+	this.topology.newEdge(nodeA, nodeB, options);
     }
 
     protected boolean failEdge(int nodeA, int nodeB) {
-	return Topology.GetInstance().failEdge(nodeA, nodeB);
+	return this.topology.failEdge(nodeA, nodeB);
     }
 
     protected void failNode(int node) {
-	Topology.GetInstance().failNode(node);
+	this.topology.failNode(node);
     }
 
     protected boolean restartEdge(int nodeA, int nodeB) {
-	return Topology.GetInstance().restartEdge(nodeA, nodeB);
+	return this.topology.restartEdge(nodeA, nodeB);
     }
 
     protected void restartNode(int node) {
-	Topology.GetInstance().restartNode(node);
+	this.topology.restartNode(node);
     }
 
     protected void printStrArray(String[] strArray, int startIndex, int endIndex, PrintStream stream) {
@@ -250,6 +304,49 @@ public abstract class CommandsParser {
 	return false;
     }
 
+    private boolean parseSeed(String[] cmd) {
+	if(cmd[0].equals("seed")) {
+	    try {
+		this.setSeed(Long.parseLong(cmd[1]));
+	    }catch(Exception e) {
+		System.err.println("Error parsing seed command: ");
+		this.printStrArray(cmd, System.err);
+	    }
+	    return true;
+	}
+	return false;
+    }
+
+    private boolean parseSnapshot(String[] cmd) {
+	if(cmd[0].equals("snapshot")) {
+	    if(cmd.length < 2) {
+		System.err.println("Error parsing snapshot command: ");
+		this.printStrArray(cmd, System.err);
+	    }else {
+		this.snapshot(cmd[1]);
+	    }
+	    return true;
+	}
+	return false;
+    }
+
+    private boolean parseProfile(String[] cmd) {
+	if(cmd[0].equals("profile")) {
+	    if(cmd.length > 1 && cmd[1].equals("on")) {
+		this.setProfiling(true);
+	    }else if(cmd.length > 1 && cmd[1].equals("off")) {
+		this.setProfiling(false);
+	    }else if(cmd.length > 1 && cmd[1].equals("report")) {
+		this.printProfile();
+	    }else {
+		System.err.println("Error parsing profile command: ");
+		this.printStrArray(cmd, System.err);
+	    }
+	    return true;
+	}
+	return false;
+    }
+
     private boolean parseFail(String[] cmd) {
 	if(cmd[0].equals("fail")) {
 	    try {
@@ -334,4 +431,14 @@ public abstract class CommandsParser {
 	return deferTill;
     }
 
+    // Reopen the command file after a restore and skip the lines that were already parsed
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+	in.defaultReadObject();
+	if(this.filename != null) {
+	    this.reader = new BufferedReader(new FileReader(this.filename));
+	    for(int i = 0; i < this.linesRead; i++) {
+		this.reader.readLine();
+	    }
+	}
+    }
 }
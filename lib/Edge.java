@@ -1,14 +1,17 @@
+import java.io.Serializable;
+
 /**
  * <pre>
  * Edge stores the specifics about each edge in the topology.
  * Edges can be temporarily disabled and they record when the next packet can be sent along the edge
  * </pre>
  */
-public class Edge {
+public class Edge implements Serializable {
     private int a;
     private int b;
     private boolean live;
     private long[] nextPktSendTime; // When can the next packet be put onto the wire (in microseconds)
+    private RandomStream[] random;  // Decides which packets are lost, one stream for each direction
     private EdgeOptions options;
 
     /**
@@ -25,6 +28,17 @@ public class Edge {
 	this.insertSendTime(a, 0);
 	this.insertSendTime(b, 0);
 	this.options = options;
+	this.random = new RandomStream[2];
+	this.setSeed(0);
+    }
+
+    /**
+     * Restart the random streams of the edge from the given simulation seed
+     * @param seed The seed of the simulation
+     */
+    public void setSeed(long seed) {
+	this.random[this.getIndex(this.a)] = RandomStream.forLink(seed, this.a, this.b);
+	this.random[this.getIndex(this.b)] = RandomStream.forLink(seed, this.b, this.a);
     }
 
 
@@ -35,11 +49,11 @@ public class Edge {
      * @param size The size of the packet in bytes
      * @param now The current time in microseconds
      * @return The time (in microseconds) when the next packet will arrive at the destination. Returns -1 if the packet is dropped
-     * @throws IllegalArgumentException Thrown if size is greater than Packet.MAX_PACKET_SIZE
+     * @throws IllegalArgumentException Thrown if size is greater than Packet.MAX_MTU
      */
     public long schedulePkt(int src, int size, long now) throws IllegalArgumentException {
-	if (size > Packet.MAX_PACKET_SIZE) {
-	    throw new IllegalArgumentException("Packet size must be less than Packet.MAX_PACKET_SIZE. Size = " +
+	if (size > Packet.MAX_MTU) {
+	    throw new IllegalArgumentException("Packet size must be less than Packet.MAX_MTU. Size = " +
 					       String.valueOf(size));
 	}
 
@@ -56,9 +70,9 @@ public class Edge {
          *
          * unit of bandwidth now B/s
          */
-	this.insertSendTime(src, result + size * 1000000 / this.options.getBW());
+	this.insertSendTime(src, result + (long)size * 1000000 / this.options.getBW());
 
-	if(!this.live || Math.random() < this.options.getLossRate()) {
+	if(!this.live || this.random[this.getIndex(src)].nextDouble() < this.options.getLossRate()) {
 	    return -1; // pkt was dropped
 	}
 
@@ -80,11 +94,11 @@ public class Edge {
      * @param size The size of the packet in bytes
      * @param now The current time in microseconds
      * @return The time (in microseconds) when the next packet will arrive at the destination. Returns -1 if the packet is dropped/lost
-     * @throws IllegalArgumentException Thrown if size is greater than Packet.MAX_PACKET_SIZE
+     * @throws IllegalArgumentException Thrown if size is greater than Packet.MAX_MTU
      */
     public long schedulePkt(Manager manager, int src, int size, long now) throws IllegalArgumentException {
-        if (size > Packet.MAX_PACKET_SIZE) {
-            throw new IllegalArgumentException("Packet size must be less than Packet.MAX_PACKET_SIZE. Size = " +
+        if (size > Packet.MAX_MTU) {
+            throw new IllegalArgumentException("Packet size must be less than Packet.MAX_MTU. Size = " +
                                                String.valueOf(size));
         }
 
@@ -101,7 +115,7 @@ public class Edge {
          *
          * unit of bandwidth now B/s
          */
-        long finishTime = currentPktSendTime + size * 1000000 / this.options.getBW();
+        long finishTime = currentPktSendTime + (long)size * 1000000 / this.options.getBW();
         if (finishTime - now > this.options.getBT() * 1000) {
             // buffer overflow, drop packet
             manager.packetDropped();
@@ -109,7 +123,7 @@ public class Edge {
         }
         this.insertSendTime(src, finishTime);
 
-        if(!this.live || Math.random() < this.options.getLossRate()) {
+        if(!this.live || this.random[this.getIndex(src)].nextDouble() < this.options.getLossRate()) {
             // packet lost due to dead link or transmission error
             manager.packetLost();
             return -1;
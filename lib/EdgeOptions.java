@@ -1,9 +1,11 @@
+import java.io.Serializable;
+
 /**
  * <pre>
  * Class to represent the edge options: loss rate, delay and bandwidth
  * </pre>
  */
-public class EdgeOptions {
+public class EdgeOptions implements Serializable {
     double lossRate;
     long delay;
     int bw;
@@ -35,11 +35,12 @@ public class EmulatedLink {
      * Figure out when, in microseconds, a packet should be physically send out to the destination, given a link's
      * bandwidth propogation delay characteristics.
      * @param manager The manager that is scheduling the packet
+     * @param random The random stream of this direction of the link
      * @param size The size of the packet in bytes
      * @param now The current time in microseconds
      * @return The time (in microseconds) when the packet should be physically send out to the destination. Returns -1 if the packet is dropped/lost
      */
-    public long schedulePkt(Manager manager, int size, long now) {
+    public long schedulePkt(Manager manager, RandomStream random, int size, long now) {
         long currentPktSendTime = Math.max(now, this.nextPktSendTime);
         /*
          * Mar. 13, 2006
@@ -47,7 +48,7 @@ public class EmulatedLink {
          *
          * unit of bandwidth now B/s
          */
-        long finishTime = currentPktSendTime + size * 1000000 / this.options.getBW();
+        long finishTime = currentPktSendTime + (long)size * 1000000 / this.options.getBW();
         if (finishTime - now > this.options.getBT() * 1000) {
             // buffer overflow, drop packet
             manager.packetDropped();
@@ -55,7 +56,7 @@ public class EmulatedLink {
         }
         this.nextPktSendTime = finishTime;
 
-        if(Math.random() < this.options.getLossRate()) {
+        if(random.nextDouble() < this.options.getLossRate()) {
             // packet lost due to transmission error
             manager.packetLost();
             return -1;
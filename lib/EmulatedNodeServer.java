@@ -15,7 +15,9 @@ public class EmulatedNodeServer extends Thread {
 
     private DatagramSocket socket;
     private ArrayList packetsReceived;
-    private static int MAX_PACKET_LENGTH = EmulatorPacket.MAX_PACKET_SIZE;
+    private static int MAX_PACKET_LENGTH = EmulatorPacket.LARGEST_PACKET_SIZE;
+    private static final int MAX_FREE_PACKETS = 64;
+    private ArrayList freePackets;   // datagrams given back with recycle, to receive into again
     private MultiplexIO multiplexIO;
 
     /**
@@ -25,6 +27,7 @@ public class EmulatedNodeServer extends Thread {
     public EmulatedNodeServer(DatagramSocket socket, MultiplexIO multiplexIO) {
 	this.socket = socket;
 	this.packetsReceived = new ArrayList();
+	this.freePackets = new ArrayList();
 	this.multiplexIO = multiplexIO;
     }
 
@@ -33,15 +36,14 @@ public class EmulatedNodeServer extends Thread {
      */
     public void run() {
 	while(true) {
-	    byte[] buf = new byte[MAX_PACKET_LENGTH];
-
 	    // receive request
-	    DatagramPacket packet = new DatagramPacket(buf, buf.length);
+	    DatagramPacket packet = this.obtainPacket();
 	    try {
 		socket.receive(packet);
 	    }catch(IOException e) {
 		System.err.println("Encountered IOException when to recceive packet. User should kill explicitly. \nStack Trace:");
 		e.printStackTrace();
+		this.recycle(packet);
 		continue;
 	    }
 	    this.storePacket(packet);
@@ -81,6 +83,27 @@ public class EmulatedNodeServer extends Thread {
 	return (DatagramPacket)this.packetsReceived.remove(0);
     }
 
+    /**
+     * Gives back a packet returned by getPacket once it has been processed, so that it can be
+     * received into again. The packet must not be used afterwards
+     * @param packet The packet to give back
+     */
+    public synchronized void recycle(DatagramPacket packet) {
+	if(this.freePackets.size() < MAX_FREE_PACKETS) {
+	    packet.setData(packet.getData());  // receive into the whole buffer again
+	    this.freePackets.add(packet);
+	}
+    }
+
+    // A packet with room for the largest packet any MTU allows, reused if one has been given back
+    private synchronized DatagramPacket obtainPacket() {
+	if(this.freePackets.isEmpty()) {
+	    byte[] buf = new byte[MAX_PACKET_LENGTH];
+	    return new DatagramPacket(buf, buf.length);
+	}
+	return (DatagramPacket)this.freePackets.remove(this.freePackets.size() - 1);
+    }
+
     private synchronized void storePacket(DatagramPacket packet) {
 	this.packetsReceived.add(packet);
     }
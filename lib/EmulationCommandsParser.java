@@ -13,7 +13,7 @@ public class EmulationCommandsParser extends CommandsParser {
      * @param emulator The emulator that should be used to get messages to nodes
      */
     public EmulationCommandsParser(Emulator emulator) {
-	super();
+	super(emulator.getTopology());
 	this.emulator = emulator;
     }
 
@@ -44,6 +44,18 @@ public class EmulationCommandsParser extends CommandsParser {
 	this.emulator.sendNodeMsg(0, msg);
     }
 
+    protected void setSeed(long seed) {
+	emulator.setSeed(seed);
+    }
+
+    protected void setProfiling(boolean profiling) {
+	emulator.setProfiling(profiling);
+    }
+
+    protected void printProfile() {
+	emulator.printProfile(emulator.getSettings().getOut());
+    }
+
     protected void exit(String[] cmd) {
 	if(cmd[0].equals("exit")) {
 	    emulator.stop();
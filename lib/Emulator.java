@@ -30,6 +30,7 @@ public class Emulator extends Manager {
     private IOThreadEmulator io;
     private MultiplexIO multiplexIO;
     private HashMap arp;  // Address resolution protocol. Maps fish addresses to [ip address, ip port]
+    private HashMap linkRandom;  // Maps fish addresses of neighbors to the random stream of the emulated link to them
 
 
     /**
@@ -44,7 +45,26 @@ public class Emulator extends Manager {
      */
     public Emulator(String trawlerName, int trawlerPort, int localUDPPort) throws UnknownHostException, SocketException,
 										  IOException, IllegalArgumentException {
-	super(Utility.fishTime());
+	this(trawlerName, trawlerPort, localUDPPort, SortedEventQueue.DEFAULT);
+    }
+
+    /**
+     * Create a new emulator
+     * @param trawlerName Name of the machine that the Trawler is on
+     * @param trawlerPort The port that the Trawler is listening on
+     * @param localUDPPort The UDP port that this node should use to talk to its neighbors
+     * @param eventQueue The kind of event queue to schedule events with. See SortedEventQueue.newQueue
+     * @throws UnknownHostException If the trawlerName cannot be resolved
+     * @throws SocketException If there is an error in creating a TCP socket
+     * @throws IOException If there is an error in writing to the TCP socket
+     * @throws IllegalArgumentException If the local port given is already in use, or the kind of event queue
+     *                                  is not recognized
+     */
+    public Emulator(String trawlerName, int trawlerPort, int localUDPPort, String eventQueue) throws UnknownHostException,
+												     SocketException,
+												     IOException,
+												     IllegalArgumentException {
+	super(Utility.fishTime(), eventQueue);
 	super.setParser(new EmulationCommandsParser(this));
 	this.trawler = new Socket(trawlerName, trawlerPort);
 	this.trawlerWriter = new PrintWriter(trawler.getOutputStream(), true);
@@ -63,6 +83,7 @@ public class Emulator extends Manager {
 	}
 	this.node = new Node(this, this.fishAddress);
 	this.arp = new HashMap();
+	this.linkRandom = new HashMap();
 	this.multiplexIO= new MultiplexIO();
 	this.server = new EmulatedNodeServer(this.udpSocket, this.multiplexIO);
 	this.io = new IOThreadEmulator(this.multiplexIO);
@@ -107,12 +128,18 @@ public class Emulator extends Manager {
 		      (nextEvent = this.sortedEvents.getNextEvent()).timeToOccur() <= now) {
 
 		    this.sortedEvents.removeNextEvent();
+		    long startNanos = (this.profiler != null) ? System.nanoTime() : 0;
 		    try {
 			nextEvent.callback().invoke();
 		    }catch(Exception e) {
 			System.err.println("Exception while trying to invoke method in Emulator. Error: " + e);
 			e.printStackTrace();
 		    }
+		    if(this.profiler != null) {
+			this.profiler.recordEvent(nextEvent.callback(), System.nanoTime() - startNanos,
+						  this.sortedEvents.size(), this.timingWheel.size());
+		    }
+		    this.eventRun();
 		}
 
 		/*
@@ -153,7 +180,9 @@ public class Emulator extends Manager {
 		if( waitTime == -1 || (Utility.fishTime() < (waitTime)) ) {
 		    int channelID = this.getIOChannelID(waitTime);
 		    if(channelID == EmulatedNodeServer.ID) {
-			this.processPacket(this.server.getPacket());
+			DatagramPacket packet = this.server.getPacket();
+			this.processPacket(packet);
+			this.server.recycle(packet);
 		    }else if(channelID == IOThreadEmulator.ID) {
 			this.parser.parseLine(this.io.readLine(), Utility.fishTime());
 		    }
@@ -181,7 +210,30 @@ public class Emulator extends Manager {
 	if(payload == null) {
 	    return false;
 	}
-	DatagramPacket physicalPacket = new DatagramPacket(payload, payload.length);
+	return this.sendPhysical(from, to, new DatagramPacket(payload, payload.length), pkt.length, null);
+    }
+
+    /**
+     * Send a packet that was built in a PacketBuffer to the specified node. The EmulatorPacket
+     * header is written in the headroom of the buffer and the datagram is sent from it, without copying.
+     * The buffer is retained until a datagram delayed by link emulation has been sent
+     * @param from The node that is sending the packet
+     * @param to Int spefying the destination node
+     * @param buf The buffer holding the packet
+     * @return True if the packet was sent, false otherwise
+     * @throws IllegalArgumentException If the arguments are invalid
+     */
+    public boolean sendPkt(int from, int to, PacketBuffer buf) throws IllegalArgumentException {
+	this.checkPkt(from, to, buf.getData(), buf.getOffset(), buf.getLength());
+	this.refreshARP();
+	int size = buf.getLength();
+	EmulatorPacket.pushHeader(buf, to, from);
+	return this.sendPhysical(from, to, new DatagramPacket(buf.getData(), buf.getOffset(), buf.getLength()), size, buf);
+    }
+
+    // Send an emulator packet to its destination, or all neighbors, through the emulated links.
+    // buf is the PacketBuffer holding the datagram, or null if it is not in one
+    private boolean sendPhysical(int from, int to, DatagramPacket physicalPacket, int size, PacketBuffer buf) {
 	try {
             /*
              * Mar. 12, 2006
@@ -193,12 +245,12 @@ public class Emulator extends Manager {
                 /*
                  * this.broadcastPacket(physicalPacket);
                  */
-		this.broadcastPacket(physicalPacket, pkt.length);
-	    }else if(this.arp.containsKey(new Integer(to))) {
+		this.broadcastPacket(physicalPacket, size, buf);
+	    }else if(this.arp.containsKey(Integer.valueOf(to))) {
                 /*
                  * this.physicalSend(physicalPacket, to);
                  */
-                this.schedulePkt(physicalPacket, to, pkt.length);
+                this.schedulePkt(physicalPacket, to, size, buf);
 	    }else {
 		System.err.println("Node " + to + " is not a neighbor of node " + from);
 		return false;
@@ -249,8 +301,8 @@ public class Emulator extends Manager {
      *      information is overwritten by later call to schedulePkt
      * Fix: Set UDP destination information individually
      */
-    private void schedulePkt(DatagramPacket packet, int destAddr, int size) throws IOException {
-        EmulatorARPData arpData = (EmulatorARPData) this.arp.get(new Integer(destAddr));
+    private void schedulePkt(final DatagramPacket packet, int destAddr, int size, final PacketBuffer buf) throws IOException {
+        EmulatorARPData arpData = (EmulatorARPData) this.arp.get(Integer.valueOf(destAddr));
         EmulatedLink link = arpData.getEmulatedLink();
         if (link == null) {
             // no physical link emulation, send immediately
@@ -260,7 +312,7 @@ public class Emulator extends Manager {
         } else {
             // physical link emulation, schedule transmission
             long currentTime = Utility.fishTime();
-            long timeToDeliver = link.schedulePkt(this, size, currentTime);
+            long timeToDeliver = link.schedulePkt(this, this.getLinkRandom(destAddr), size, currentTime);
 
             if(timeToDeliver == -1) {
                 return;  // packet dropped/lost
@@ -278,17 +330,22 @@ public class Emulator extends Manager {
                 timeToDeliver += 1000 - usecFraction;
             }
 
-            String[] paramTypes = {
-                "java.net.DatagramPacket",
-                "java.net.InetAddress",
-                "java.lang.Integer"
-            };
-            Object[] params = {
-                packet,
-                arpData.getIPAddress(),
-                Integer.valueOf(arpData.getPort())
-            };
-            this.addEvent(timeToDeliver, "physicalSend", this, paramTypes, params);
+            final InetAddress address = arpData.getIPAddress();
+            final int port = arpData.getPort();
+            if(buf != null) {
+                buf.retain();  // released once the datagram has been sent
+            }
+            this.addEvent(timeToDeliver, new TaskCallback() {
+                    public void run() throws IOException {
+                        try {
+                            physicalSend(packet, address, port);
+                        }finally {
+                            if(buf != null) {
+                                buf.release();
+                            }
+                        }
+                    }
+                });
         }
     }
 
@@ -303,8 +360,14 @@ public class Emulator extends Manager {
     public void physicalSend(DatagramPacket packet,
                              InetAddress address,
                              Integer port) throws IOException {
+        this.physicalSend(packet, address, port.intValue());
+    }
+
+    private void physicalSend(DatagramPacket packet,
+                              InetAddress address,
+                              int port) throws IOException {
         packet.setAddress(address);
-        packet.setPort(port.intValue());
+        packet.setPort(port);
         this.udpSocket.send(packet);
     }
 
@@ -318,14 +381,34 @@ public class Emulator extends Manager {
      *
      * Use physical link emulation if necessary
      */
-    private void broadcastPacket(DatagramPacket packet, int size) throws IOException {
+    private void broadcastPacket(DatagramPacket packet, int size, PacketBuffer buf) throws IOException {
         Iterator iter = this.arp.keySet().iterator();
         while(iter.hasNext()) {
             Integer neighborAddr = (Integer)iter.next();
-            this.schedulePkt(packet, neighborAddr.intValue(), size);
+            this.schedulePkt(packet, neighborAddr.intValue(), size, buf);
         }
     }
 
+    /**
+     * Sets the seed of the random streams, including those of the emulated links
+     * @param seed The new seed
+     */
+    public void setSeed(long seed) {
+	super.setSeed(seed);
+	this.linkRandom.clear();
+    }
+
+    // The random stream of the emulated link to the given neighbor
+    private RandomStream getLinkRandom(int destAddr) {
+	Integer key = Integer.valueOf(destAddr);
+	RandomStream random = (RandomStream)this.linkRandom.get(key);
+	if(random == null) {
+	    random = RandomStream.forLink(this.getSeed(), this.fishAddress, destAddr);
+	    this.linkRandom.put(key, random);
+	}
+	return random;
+    }
+
     /**
      * RefreshArp -- Make sure our arp cache is up to date, by checking to see
      * 	if the trawler has given us any updates
@@ -362,17 +445,22 @@ public class Emulator extends Manager {
 	}
     }
 
+    // Hand the packet in a datagram to the node. The datagram is read in place, and
+    // is given back to the server afterwards, so nothing may keep a reference to its data
     private void processPacket(DatagramPacket packet) {
 	InetAddress ipAddress = packet.getAddress();
 	int port = packet.getPort();
-	EmulatorPacket emulatorPacket = EmulatorPacket.unpack(packet.getData());
-	if(emulatorPacket == null) {
+	byte[] data = packet.getData();
+	int offset = packet.getOffset();
+	int length = EmulatorPacket.lengthAt(data, offset, packet.getLength());
+	if(length < 0) {
 	    // Corrupt data.
 	    System.err.println("Was unable to extract packet received from " + ipAddress + ":" + port);
 	    return;
 	}
-	Integer srcAddr = new Integer(emulatorPacket.getSrc());
-	int destAddr = emulatorPacket.getDest();
+	int headerSize = EmulatorPacket.headerSizeAt(data, offset);
+	int destAddr = WireCodec.getUnsignedByte(data, offset);
+	int srcAddr = WireCodec.getUnsignedByte(data, offset + 1);
         /*
          * Mar. 11, 2006
          * Hao Wang
@@ -382,11 +470,12 @@ public class Emulator extends Manager {
         /*
          * this.arp.put(srcAddr, new EmulatorARPData(ipAddress, port));
          */
+        Integer srcKey = Integer.valueOf(srcAddr);  // boxed once, for every lookup below
         boolean newARPData = false;
-        if (!this.arp.containsKey(srcAddr)) {
+        if (!this.arp.containsKey(srcKey)) {
             newARPData = true;
         } else {
-            EmulatorARPData arpData = (EmulatorARPData)this.arp.get(srcAddr);
+            EmulatorARPData arpData = (EmulatorARPData)this.arp.get(srcKey);
             if (!arpData.getIPAddress().equals(ipAddress) ||
                 arpData.getPort() != port) {
                 newARPData = true;
@@ -395,10 +484,10 @@ public class Emulator extends Manager {
         if (newARPData) {
             // we don't have edge options, defer emulation until
             // we learn ARP data from trwaler
-            this.arp.put(srcAddr, new EmulatorARPData(ipAddress,port));
+            this.arp.put(srcKey, new EmulatorARPData(ipAddress,port));
         }
 	if(destAddr == this.fishAddress || destAddr == Packet.BROADCAST_ADDRESS) {
-	    this.node.onReceive(srcAddr, emulatorPacket.getPayload());
+	    this.node.onReceive(srcAddr, data, offset + headerSize, length - headerSize);
 	}
 	// drop if not for me. This can happen if we took a port that was recently occupied by another node
     }
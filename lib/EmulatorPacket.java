@@ -1,14 +1,17 @@
 import java.net.DatagramPacket;
-import java.io.ByteArrayOutputStream;
-import java.io.ByteArrayInputStream;
 
 /**
- * Packet used by emulated nodes to send data to each other via UDP
+ * Packet used by emulated nodes to send data to each other via UDP.
+ * Like Packet, a packet bigger than 255 bytes puts 0 in its 1 byte length and gives its length
+ * in 2 bytes after it.
  */
 public class EmulatorPacket {
 
     public static int HEADER_SIZE = 3; // bytes
-    public static int MAX_PACKET_SIZE = Packet.MAX_PACKET_SIZE + HEADER_SIZE;
+    public static int EXTENDED_HEADER_SIZE = 5; // bytes
+    public static int MAX_PACKET_SIZE = Packet.MAX_PACKET_SIZE + HEADER_SIZE;  // at the default MTU
+    public static int LARGEST_PACKET_SIZE = Packet.MAX_MTU + EXTENDED_HEADER_SIZE;
+    private static final int MAX_SHORT_PACKET_SIZE = 255;
 
     private int destAddr;
     private int srcAddr;
@@ -22,7 +25,7 @@ public class EmulatorPacket {
      * @throws IllegalArgumentException If the size of the payload is too big
      */
     public EmulatorPacket(int destAddr, int srcAddr, byte[] payload) throws IllegalArgumentException {
-	if((HEADER_SIZE + payload.length) > MAX_PACKET_SIZE) {
+	if(packedSize(payload.length) > LARGEST_PACKET_SIZE) {
 	    throw new IllegalArgumentException("Payload is too big");
 	}
 	this.destAddr = destAddr;
@@ -68,20 +71,108 @@ public class EmulatorPacket {
      * Format:
      *    destination address: 8 bits
      *    source address: 8 bits
-     *    packet length: 8 bits
-     *    payload: <= (MAX_PACKET_SIZE - HEADER_SIZE) bytes
+     *    packet length: 8 bits, or 0 if the packet is bigger than 255 bytes
+     *    packet length: 16 bits, only if the 8 bit length is 0
+     *    payload: <= (LARGEST_PACKET_SIZE - EXTENDED_HEADER_SIZE) bytes
      * @return A byte[] for sending over UDP
      */
     public byte[] pack() {
-	ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-	byteStream.write(this.destAddr);
-	byteStream.write(this.srcAddr);
-	byteStream.write(HEADER_SIZE + this.payload.length);
-	byteStream.write(this.payload, 0, this.payload.length);
-	
-	return byteStream.toByteArray();
+	byte[] packet = new byte[packedSize(this.payload.length)];
+	this.pack(packet, 0);
+	return packet;
+    }
+
+    /**
+     * Write the packet into a buffer in the format of pack()
+     * @param buf The buffer to write to
+     * @param offset Where in buf the packet should start
+     * @return The number of bytes written
+     * @throws IndexOutOfBoundsException If the packet does not fit in buf
+     */
+    public int pack(byte[] buf, int offset) throws IndexOutOfBoundsException {
+	int size = packedSize(this.payload.length);
+	if(offset < 0 || offset + size > buf.length) {
+	    throw new IndexOutOfBoundsException("Packet of " + size + " bytes does not fit at " + offset);
+	}
+	int headerSize = writeHeader(buf, offset, this.destAddr, this.srcAddr, size);
+	System.arraycopy(this.payload, 0, buf, offset + headerSize, this.payload.length);
+	return size;
+    }
+
+    /**
+     * @param payloadLength The length of a payload
+     * @return The size of a packet carrying that payload
+     */
+    public static int packedSize(int payloadLength) {
+	return headerSize(payloadLength) + payloadLength;
+    }
+
+    private static int headerSize(int payloadLength) {
+	return (payloadLength + HEADER_SIZE <= MAX_SHORT_PACKET_SIZE) ? HEADER_SIZE : EXTENDED_HEADER_SIZE;
+    }
+
+    // Write the header of a packet of size bytes and return its length
+    private static int writeHeader(byte[] buf, int offset, int destAddr, int srcAddr, int size) {
+	buf[offset] = (byte)destAddr;
+	buf[offset + 1] = (byte)srcAddr;
+	if(size <= MAX_SHORT_PACKET_SIZE) {
+	    buf[offset + 2] = (byte)size;
+	    return HEADER_SIZE;
+	}
+	buf[offset + 2] = 0;
+	WireCodec.putShort(buf, offset + HEADER_SIZE, size);
+	return EXTENDED_HEADER_SIZE;
     }
     
+    /**
+     * Write an EmulatorPacket header in place in front of the packet held by a buffer, in the format of pack()
+     * @param buf The buffer holding the packet, with room for the header
+     * @param destAddr The fishnet address of the destination node
+     * @param srcAddr The fishnet address of the source node
+     * @throws IllegalArgumentException If the packet is too big
+     */
+    public static void pushHeader(PacketBuffer buf, int destAddr, int srcAddr) throws IllegalArgumentException {
+	int size = packedSize(buf.getLength());
+	if(size > LARGEST_PACKET_SIZE) {
+	    throw new IllegalArgumentException("Payload is too big");
+	}
+	int offset = buf.push(headerSize(buf.getLength()));
+	writeHeader(buf.getData(), offset, destAddr, srcAddr, size);
+    }
+    
+    /**
+     * Reads the length of a packed packet from its header, checking it against the bytes available
+     * @param buf The buffer holding the packet
+     * @param offset Where in buf the packet starts
+     * @param length The number of bytes available from offset
+     * @return The length of the packet, or -1 if the header is corrupted or the packet does not fit in length
+     */
+    public static int lengthAt(byte[] buf, int offset, int length) {
+	if(length < HEADER_SIZE) {
+	    return -1;
+	}
+	int packetLength = WireCodec.getUnsignedByte(buf, offset + 2);
+	if(packetLength == 0) {
+	    if(length < EXTENDED_HEADER_SIZE) {
+		return -1;
+	    }
+	    packetLength = WireCodec.getUnsignedShort(buf, offset + HEADER_SIZE);
+	}
+	if(packetLength < headerSizeAt(buf, offset) || packetLength > length) {
+	    return -1;
+	}
+	return packetLength;
+    }
+
+    /**
+     * @param buf A buffer holding a packed packet
+     * @param offset Where in buf the packet starts
+     * @return The size of the header of the packet, judging by its 1 byte length
+     */
+    public static int headerSizeAt(byte[] buf, int offset) {
+	return (buf[offset + 2] == 0) ? EXTENDED_HEADER_SIZE : HEADER_SIZE;
+    }
+
     /**
      * Unpacks a byte array to create a EmulatorPacket object
      * Assumes the array has been formatted using pack method
@@ -89,18 +180,33 @@ public class EmulatorPacket {
      * @return EmulatorPacket object created or null if the byte[] representation was corrupted
      */
     public static EmulatorPacket unpack(byte[] packet) {
-	ByteArrayInputStream byteStream = new ByteArrayInputStream(packet);
-	
-	int destAddr = byteStream.read();
-	int srcAddr = byteStream.read();
-	int packetLength = byteStream.read();
-
-	byte[] payload = new byte[packetLength - HEADER_SIZE];
-	int numBytesRead = byteStream.read(payload, 0, payload.length);	
-	
-	if((HEADER_SIZE + numBytesRead) != packetLength) {
-	   return null;
+	return unpack(packet, 0, packet.length);
+    }
+
+    /**
+     * Unpacks part of a byte array, such as the data of a DatagramPacket, to create a EmulatorPacket object.
+     * Bytes after the length given in the header are ignored
+     * @param buf The buffer holding the packet
+     * @param offset Where in buf the packet starts
+     * @param length The number of bytes available from offset
+     * @return EmulatorPacket object created or null if the bytes are corrupted
+     */
+    public static EmulatorPacket unpack(byte[] buf, int offset, int length) {
+	int packetLength = lengthAt(buf, offset, length);
+	if(packetLength < 0) {
+	    return null;
+	}
+	int headerSize = headerSizeAt(buf, offset);
+
+	byte[] payload = new byte[packetLength - headerSize];
+	System.arraycopy(buf, offset + headerSize, payload, 0, payload.length);
+	try {
+	    return new EmulatorPacket(WireCodec.getUnsignedByte(buf, offset),
+				      WireCodec.getUnsignedByte(buf, offset + 1),
+				      payload);
+	}catch(IllegalArgumentException e) {
+	    // will return null
 	}
-	return new EmulatorPacket(destAddr, srcAddr, payload);	
+	return null;
     }
 }
@@ -1,12 +1,15 @@
 import java.lang.reflect.InvocationTargetException;
+import java.io.Serializable;
 
 /**
  * An Event is some scheduled task to be performed.
  */
-public class Event {
+public class Event implements Serializable {
 
     private long timeToOccur;
     private Callback cb;
+    private long order;   // tie-breaker among events with the same timeToOccur, assigned by the queue
+    Event next;           // link used by queues that chain events in buckets
 
     /**
      * @param timeToOccur The time at which the event should take place.
@@ -26,6 +29,14 @@ public class Event {
 	return this.timeToOccur;
     }
 
+    /**
+     * Moves this event to a new time. Only valid while the event is not in a queue
+     * @param timeToOccur The time at which the event should take place.
+     */
+    void setTimeToOccur(long timeToOccur) {
+	this.timeToOccur = timeToOccur;
+    }
+
     /**
      * Returns the callback
      * @return The callback
@@ -33,4 +44,33 @@ public class Event {
     public Callback callback() {
 	return this.cb;
     }
+
+    /**
+     * Where this event falls among events with the same time to occur.
+     * Lower values run first.
+     * @return The order of this event
+     */
+    public long order() {
+	return this.order;
+    }
+
+    /**
+     * Sets the order of this event among events with the same time to occur
+     * @param order The order. Lower values run first
+     */
+    void setOrder(long order) {
+	this.order = order;
+    }
+
+    /**
+     * Compares when this event and the given one should run
+     * @param other The event to compare against
+     * @return True if this event should run before other
+     */
+    boolean before(Event other) {
+	if(this.timeToOccur != other.timeToOccur) {
+	    return this.timeToOccur < other.timeToOccur;
+	}
+	return this.order < other.order;
+    }
 }
@@ -0,0 +1,61 @@
+import java.io.Serializable;
+
+/**
+ * <pre>
+ * Hands out the keys that order events with the same time, for managers that add their
+ * events with SortedEventQueue.addOrderedEvent.
+ *
+ * The key of an event created by a node is made of the node's address and a count of the
+ * events that node has created so far. It does not depend on the order in which events
+ * reach the queue, so the Simulator and every partition of a ParallelSimulator break ties
+ * the same way and give the same results.
+ *
+ * Events that belong to no node, such as the ticks of a timing wheel, get keys smaller
+ * than those of all nodes. Those keys are a count kept by each EventOrder, so they only
+ * order the events of one manager. Keys handed out to different partitions of a
+ * ParallelSimulator cannot be compared with each other (see ParallelSimulator).
+ * </pre>
+ */
+public class EventOrder implements Serializable {
+
+    public static final long FIRST = Long.MIN_VALUE;  // key for events that go before all others
+
+    private static final int SEQUENCE_BITS = 40;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long[] sequences; // number of events created by each node, indexed by address
+    private long managerSequence;   // number of events created by no node
+
+    /**
+     * Create the keys for a simulation
+     * @param numNodes The number of nodes in the simulation
+     */
+    public EventOrder(int numNodes) {
+	this.sequences = new long[numNodes];
+	this.managerSequence = 0;
+    }
+
+    /**
+     * @return The number of nodes keys are handed out for
+     */
+    public int numNodes() {
+	return this.sequences.length;
+    }
+
+    /**
+     * Key for the next event created by the given node
+     * @param nodeAddr Address of the node creating the event
+     * @return The key. Later events of the same node get larger keys
+     */
+    public long nextForNode(int nodeAddr) {
+	return ((long)(nodeAddr + 1) << SEQUENCE_BITS) | (this.sequences[nodeAddr]++ & SEQUENCE_MASK);
+    }
+
+    /**
+     * Key for the next event created by no node. It is smaller than the keys of all nodes
+     * @return The key
+     */
+    public long nextForManager() {
+	return this.managerSequence++;
+    }
+}
@@ -0,0 +1,214 @@
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * <pre>
+ * Profile of the events run by a Manager: how many of each kind, how long their callbacks
+ * took and how deep the event queue and timing wheel got.
+ *
+ * Events are grouped by what they call: the method of a Callback, or the class of a callback
+ * that overrides invoke (for example PacketDelivery). Timers fired by the TimingWheel are
+ * grouped the same way in a table of their own. Their time is also counted in the wheel's own
+ * event that fired them.
+ *
+ * Execution times go into histograms with one bucket per power of two nanoseconds.
+ * Managers only profile while profiling is on, see Manager.setProfiling. When it is off the
+ * only cost is a null check per event.
+ * Not thread safe. Each Manager keeps its own.
+ * </pre>
+ */
+public class EventProfiler {
+
+    private static final int BUCKETS = 64;
+
+    private HashMap events;   // key -> Entry
+    private HashMap timers;   // key -> Entry
+    private long startNanos;
+    private long startTime;   // simulated or real time profiling started at, in milliseconds
+    private int maxQueueSize;
+    private int maxWheelSize;
+
+    /**
+     * Start an empty profile
+     * @param now The current time of the Manager, in milliseconds
+     */
+    public EventProfiler(long now) {
+	this.events = new HashMap();
+	this.timers = new HashMap();
+	this.startNanos = System.nanoTime();
+	this.startTime = now;
+	this.maxQueueSize = 0;
+	this.maxWheelSize = 0;
+    }
+
+    /**
+     * Record an event that has run
+     * @param callback The callback of the event
+     * @param nanos How long the callback took to run, in nanoseconds
+     * @param queueSize The number of events left in the queue
+     * @param wheelSize The number of timers on the timing wheel
+     */
+    public void recordEvent(Callback callback, long nanos, int queueSize, int wheelSize) {
+	this.entry(this.events, callback).add(nanos);
+	this.maxQueueSize = Math.max(this.maxQueueSize, queueSize);
+	this.maxWheelSize = Math.max(this.maxWheelSize, wheelSize);
+    }
+
+    /**
+     * Record a timer fired by the timing wheel
+     * @param callback The callback of the timer
+     * @param nanos How long the callback took to run, in nanoseconds
+     */
+    public void recordTimer(Callback callback, long nanos) {
+	this.entry(this.timers, callback).add(nanos);
+    }
+
+    /**
+     * Print the profile
+     * @param out Where to print it
+     * @param now The current time of the Manager, in milliseconds
+     */
+    public void report(PrintStream out, long now) {
+	double seconds = (System.nanoTime() - this.startNanos) / 1e9;
+	long total = this.count(this.events);
+	out.println("Event profile over " + (now - this.startTime) + " msec of fishnet time and " +
+		    format(seconds) + " sec of real time");
+	out.println("Events run: " + total + " (" + format(total / Math.max(seconds, 1e-9)) + " per sec)");
+	out.println("Most events queued: " + this.maxQueueSize + ". Most timers on the timing wheel: " + this.maxWheelSize);
+	this.report(out, "Events", this.events);
+	this.report(out, "Timing wheel timers", this.timers);
+    }
+
+    /******************** Private Functions ********************/
+
+    private Entry entry(HashMap table, Callback callback) {
+	Method method = callback.getInvokedMethod();
+	Object key = (method != null) ? (Object)method : (Object)callback.getClass();
+	Entry entry = (Entry)table.get(key);
+	if(entry == null) {
+	    entry = new Entry(name(key));
+	    table.put(key, entry);
+	}
+	return entry;
+    }
+
+    private long count(HashMap table) {
+	long count = 0;
+	Iterator iter = table.values().iterator();
+	while(iter.hasNext()) {
+	    count += ((Entry)iter.next()).count;
+	}
+	return count;
+    }
+
+    private void report(PrintStream out, String title, HashMap table) {
+	if(table.isEmpty()) {
+	    return;
+	}
+	ArrayList entries = new ArrayList(table.values());
+	// Most time spent first
+	Collections.sort(entries, new Comparator() {
+		public int compare(Object a, Object b) {
+		    long diff = ((Entry)b).totalNanos - ((Entry)a).totalNanos;
+		    return (diff > 0) ? 1 : ((diff < 0) ? -1 : 0);
+		}
+	    });
+	out.println(title + ":");
+	out.println("    count      total ms   mean us    p50 us    p99 us    max us  callback");
+	for(int i = 0; i < entries.size(); i++) {
+	    Entry entry = (Entry)entries.get(i);
+	    out.println(pad(String.valueOf(entry.count), 9) +
+			pad(format(entry.totalNanos / 1e6), 14) +
+			pad(format(entry.totalNanos / 1e3 / entry.count), 10) +
+			pad(format(entry.percentile(0.5) / 1e3), 10) +
+			pad(format(entry.percentile(0.99) / 1e3), 10) +
+			pad(format(entry.maxNanos / 1e3), 10) + "  " + entry.name);
+	    out.println("        histogram: " + entry.histogram());
+	}
+    }
+
+    private static String name(Object key) {
+	if(key instanceof Method) {
+	    Method method = (Method)key;
+	    return method.getDeclaringClass().getName() + "." + method.getName();
+	}
+	return ((Class)key).getName();
+    }
+
+    private static String format(double value) {
+	return String.valueOf(Math.round(value * 100) / 100.0);
+    }
+
+    private static String pad(String str, int width) {
+	StringBuffer buffer = new StringBuffer();
+	for(int i = str.length(); i < width; i++) {
+	    buffer.append(' ');
+	}
+	return buffer.append(str).toString();
+    }
+
+    // Counts and execution times of one kind of event
+    private static class Entry {
+	String name;
+	long count;
+	long totalNanos;
+	long maxNanos;
+	long[] buckets;   // bucket i counts times in [2^i, 2^(i+1)) nanoseconds. Bucket 0 also counts 0
+
+	Entry(String name) {
+	    this.name = name;
+	    this.count = 0;
+	    this.totalNanos = 0;
+	    this.maxNanos = 0;
+	    this.buckets = new long[BUCKETS];
+	}
+
+	void add(long nanos) {
+	    nanos = Math.max(nanos, 0);
+	    this.count++;
+	    this.totalNanos += nanos;
+	    this.maxNanos = Math.max(this.maxNanos, nanos);
+	    this.buckets[Math.max(0, 63 - Long.numberOfLeadingZeros(nanos))]++;
+	}
+
+	// Upper bound of the bucket holding the given fraction of the times
+	long percentile(double fraction) {
+	    long wanted = (long)Math.ceil(this.count * fraction);
+	    long seen = 0;
+	    for(int i = 0; i < BUCKETS; i++) {
+		seen += this.buckets[i];
+		if(seen >= wanted) {
+		    return Math.min(1L << Math.min(i + 1, 62), this.maxNanos);
+		}
+	    }
+	    return this.maxNanos;
+	}
+
+	// Non empty buckets as <upper bound>:count
+	String histogram() {
+	    StringBuffer buffer = new StringBuffer();
+	    for(int i = 0; i < BUCKETS; i++) {
+		if(this.buckets[i] != 0) {
+		    buffer.append("<").append(bound(i + 1)).append(":").append(this.buckets[i]).append(" ");
+		}
+	    }
+	    return buffer.toString().trim();
+	}
+
+	private static String bound(int power) {
+	    if(power < 10) {
+		return (1L << power) + "ns";
+	    }else if(power < 20) {
+		return (1L << (power - 10)) + "us";
+	    }else if(power < 30) {
+		return (1L << (power - 20)) + "ms";
+	    }
+	    return (1L << (power - 30)) + "s";
+	}
+    }
+}
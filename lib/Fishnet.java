@@ -6,30 +6,111 @@ import java.net.SocketException;
 /**
  * <pre>   
  * Class with main method that starts up a Manager. Either an Emulator or a Simulator
- * Usage:  java Fishnet <simulate> <num nodes> <topo file> [fishnet file] [timescale]
+ * Usage:  java Fishnet [options] <simulate> <num nodes> <topo file> [fishnet file] [timescale]
  *         or
- *         java Fishnet <emulate> <trawler host name> <trawler port> <local port to use> [fishnet file]
+ *         java Fishnet [options] <emulate> <trawler host name> <trawler port> <local port to use> [fishnet file]
+ *         or
+ *         java Fishnet [options] <restore> <snapshot file> [fishnet file] [timescale]
  *         
  *         Arguments in <> are required and arguments in [] are optional. Fishnet file is a file with commands for a node
  *         Topofile is the topology file to use. It also have commands for a node.
+ *         Restore carries on a simulation saved with the snapshot command. Without a fishnet file, or with -,
+ *         it carries on reading the fishnet file of the saved simulation. With -seed, it restarts all random
+ *         streams from the new seed, so that runs forked from one snapshot differ.
+ *
+ *         Options:
+ *             -queue <list|heap|calendar>  event queue used to schedule events. Default is heap
+ *             -headless                    simulate without keyboard input, as fast as possible. Timescale
+ *                                          is ignored and the simulation stops when it has nothing left to do
+ *             -seed <long>                 seed of all random choices. Runs with the same seed repeat exactly
+ *             -partitions <n>              simulate on n threads with a ParallelSimulator. Timescale is
+ *                                          ignored and there is no keyboard input
+ *             -profile                     profile the events run and print the profile on exit.
+ *                                          Same as the command: profile on
+ *             -objects                     simulate handing transport segments to nodes as objects instead
+ *                                          of packing them into bytes. Gives the same results, faster
+ *             -mtu <bytes>                 largest packet nodes may send, up to 65000. Default is 128.
+ *                                          All emulated nodes must use the same MTU
  * </pre>   
  */
 public class Fishnet {
     
     private static void usage() {
-	System.out.println("Usage:  java Fishnet <simulate> <num nodes> <topo file> [fishnet file] [timescale]\n" + 
+	System.out.println("Usage:  java Fishnet [options] <simulate> <num nodes> <topo file> [fishnet file] [timescale]\n" + 
+			   "or\n" + 
+			   "java Fishnet [options] <emulate> <trawler host name> <trawler port> <local port to use> [fishnet file]\n" +          
 			   "or\n" + 
-			   "java Fishnet <emulate> <trawler host name> <trawler port> <local port to use> [fishnet file]\n\n" +          
+			   "java Fishnet [options] <restore> <snapshot file> [fishnet file] [timescale]\n\n" +
 			   "Arguments in <> are required and arguments in [] are optional.\n" +  
 			   "Fishnet file is a file with commands for a node\n" + 
-			   "Topofile is the topology file to use. It also have commands for a node.");
+			   "Topofile is the topology file to use. It also have commands for a node.\n" +
+			   "Restore carries on a simulation saved with the snapshot command. Without a fishnet file, or with -,\n" +
+			   "it carries on reading the fishnet file of the saved simulation. With -seed, it restarts all random\n" +
+			   "streams from the new seed, so that runs forked from one snapshot differ.\n\n" +
+			   "Options:\n" +
+			   "    -queue <list|heap|calendar>  event queue used to schedule events. Default is heap\n" +
+			   "    -headless                    simulate without keyboard input, as fast as possible. Timescale\n" +
+			   "                                 is ignored and the simulation stops when it has nothing left to do\n" +
+			   "    -seed <long>                 seed of all random choices. Runs with the same seed repeat exactly\n" +
+			   "    -partitions <n>              simulate on n threads with a ParallelSimulator. Timescale is\n" +
+			   "                                 ignored and there is no keyboard input\n" +
+			   "    -profile                     profile the events run and print the profile on exit.\n" +
+			   "                                 Same as the command: profile on\n" +
+			   "    -objects                     simulate handing transport segments to nodes as objects instead\n" +
+			   "                                 of packing them into bytes. Gives the same results, faster\n" +
+			   "    -mtu <bytes>                 largest packet nodes may send, up to " + Packet.MAX_MTU + ". Default is " +
+			   Packet.MAX_PACKET_SIZE + ".\n" +
+			   "                                 All emulated nodes must use the same MTU");
     }
 
     /**
      * The main method. Entry point to start a Manager
      */
     public static void main(String[] args) {
-	if(args.length < 3) {
+	String eventQueue = SortedEventQueue.DEFAULT;
+	boolean headless = false;
+	int partitions = 0;
+	Long seed = null;
+	boolean profile = false;
+	boolean passObjects = false;
+	int mtu = Packet.MAX_PACKET_SIZE;
+
+	// Options come before the mode
+	int numOptions = 0;
+	while(numOptions < args.length && args[numOptions].startsWith("-")) {
+	    String option = args[numOptions];
+	    if(option.equals("-queue") && numOptions + 1 < args.length) {
+		eventQueue = args[numOptions + 1];
+		numOptions += 2;
+	    }else if(option.equals("-headless")) {
+		headless = true;
+		numOptions++;
+	    }else if(option.equals("-seed") && numOptions + 1 < args.length) {
+		seed = new Long(Long.parseLong(args[numOptions + 1]));
+		numOptions += 2;
+	    }else if(option.equals("-objects")) {
+		passObjects = true;
+		numOptions++;
+	    }else if(option.equals("-profile")) {
+		profile = true;
+		numOptions++;
+	    }else if(option.equals("-mtu") && numOptions + 1 < args.length) {
+		mtu = Integer.parseInt(args[numOptions + 1]);
+		numOptions += 2;
+	    }else if(option.equals("-partitions") && numOptions + 1 < args.length) {
+		partitions = Integer.parseInt(args[numOptions + 1]);
+		numOptions += 2;
+	    }else {
+		System.err.println("Unknown option: " + option);
+		usage();
+		return;
+	    }
+	}
+	String[] rest = new String[args.length - numOptions];
+	System.arraycopy(args, numOptions, rest, 0, rest.length);
+	args = rest;
+
+	if(args.length < 2 || (args.length < 3 && !args[0].equals("restore"))) {
 	    System.err.println("Missing arguments");
 	    usage();
 	    return;
@@ -43,7 +124,11 @@ public class Fishnet {
 		int numNodes = Integer.parseInt(args[1]);
 		String topoFile = args[2];
 		try {
-		    manager = new Simulator(numNodes, topoFile);
+		    if(partitions > 0) {
+			manager = new ParallelSimulator(numNodes, topoFile, partitions, eventQueue);
+		    }else {
+			manager = new Simulator(numNodes, topoFile, eventQueue, headless);
+		    }
 		}catch(IllegalArgumentException e) {
 		    System.err.println("Illegal arguments given to Simulator. Exception: " + e);
 		    return;
@@ -62,6 +147,24 @@ public class Fishnet {
 		    }		    
 		}
 
+	    }else if(args[0].equals("restore")) {
+		try {
+		    manager = Simulator.restore(args[1], headless);
+		}catch(IOException e) {
+		    System.err.println("Could not restore the simulation. Exception: " + e);
+		    return;
+		}
+
+		switch(args.length) {
+		case 4: 
+		    double timescale = Double.parseDouble(args[3]);
+		    manager.setTimescale(timescale);
+		case 3:
+		    if(!noFile.equals(args[2])) {
+			manager.setFishnetFile(args[2]);
+		    }		    
+		}
+
 	    }else if(args[0].equals("emulate")) {
 		if(args.length < 4) {
 		    System.err.println("Missing arguments to emulator");
@@ -72,7 +175,7 @@ public class Fishnet {
 		int trawlerPort = Integer.parseInt(args[2]);
 		int localUDPPort = Integer.parseInt(args[3]);
 		try {
-		    manager = new Emulator(trawlerName, trawlerPort, localUDPPort);
+		    manager = new Emulator(trawlerName, trawlerPort, localUDPPort, eventQueue);
 		}catch(UnknownHostException e) {
 		    System.err.println("Trawler host name is unkown! Exception: " + e);
 		    return;
@@ -95,6 +198,18 @@ public class Fishnet {
 		return;
 	    }
 
+	    if(seed != null) {
+		manager.setSeed(seed.longValue());
+	    }
+	    if(profile) {
+		manager.setProfiling(true);
+	    }
+	    if(passObjects) {
+		manager.setPassObjects(true);
+	    }
+	    if(mtu != Packet.MAX_PACKET_SIZE) {
+		manager.getSettings().setMtu(mtu);
+	    }
 	    manager.start();
 	}catch(Exception e) {
 	    System.err.println("Exception occured in Fishnet!! Exception: " + e);
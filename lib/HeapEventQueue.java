@@ -0,0 +1,80 @@
+/**
+ * <pre>
+ * Event queue kept as a binary heap in an array. Insert and remove are O(log n).
+ * </pre>
+ */
+public class HeapEventQueue extends SortedEventQueue {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private Event[] heap;
+    private int size;
+
+    /**
+     * Create a new empty event queue.
+     */
+    public HeapEventQueue() {
+	super();
+	this.heap = new Event[INITIAL_CAPACITY];
+	this.size = 0;
+    }
+
+    protected void insert(Event event) {
+	if(this.size == this.heap.length) {
+	    Event[] bigger = new Event[this.heap.length * 2];
+	    System.arraycopy(this.heap, 0, bigger, 0, this.size);
+	    this.heap = bigger;
+	}
+
+	// sift up
+	int i = this.size++;
+	while(i > 0) {
+	    int parent = (i - 1) >>> 1;
+	    if(!event.before(this.heap[parent])) {
+		break;
+	    }
+	    this.heap[i] = this.heap[parent];
+	    i = parent;
+	}
+	this.heap[i] = event;
+    }
+
+    public Event getNextEvent() {
+	if(this.size == 0) {
+	    return null;
+	}
+	return this.heap[0];
+    }
+
+    public Event removeNextEvent() {
+	if(this.size == 0) {
+	    return null;
+	}
+	Event first = this.heap[0];
+	Event last = this.heap[--this.size];
+	this.heap[this.size] = null;
+
+	// sift down
+	int i = 0;
+	int half = this.size >>> 1;
+	while(i < half) {
+	    int child = (i << 1) + 1;
+	    if(child + 1 < this.size && this.heap[child + 1].before(this.heap[child])) {
+		child++;
+	    }
+	    if(!this.heap[child].before(last)) {
+		break;
+	    }
+	    this.heap[i] = this.heap[child];
+	    i = child;
+	}
+	if(this.size > 0) {
+	    this.heap[i] = last;
+	}
+	return first;
+    }
+
+    public int size() {
+	return this.size;
+    }
+}
@@ -0,0 +1,51 @@
+import java.util.LinkedList;
+import java.util.ListIterator;
+
+/**
+ * <pre>
+ * Event queue kept as a sorted linked list. Inserting walks the list from the head.
+ * </pre>
+ */
+public class ListEventQueue extends SortedEventQueue {
+
+    private LinkedList eventList;
+
+    /**
+     * Create a new empty event queue.
+     */
+    public ListEventQueue() {
+	super();
+	this.eventList = new LinkedList();
+    }
+
+    protected void insert(Event event) {
+	ListIterator sortedIterator = eventList.listIterator();
+
+	while (sortedIterator.hasNext()) {
+	    if (event.before((Event)(sortedIterator.next()))) {
+		this.eventList.add(sortedIterator.previousIndex(), event);
+		return;
+	    }
+	}
+	//If you've gotten to the end of the list, add it there.
+	this.eventList.add(event);
+    }
+
+    public Event getNextEvent() {
+	if(this.isEmpty()) {
+	    return null;
+	}
+	return (Event)(this.eventList.getFirst());
+    }
+
+    public Event removeNextEvent() {
+	if(this.isEmpty()) {
+	    return null;
+	}
+	return (Event)(this.eventList.removeFirst());
+    }
+
+    public int size() {
+	return this.eventList.size();
+    }
+}
@@ -0,0 +1,226 @@
+import java.util.ArrayList;
+
+/**
+ * <pre>
+ * One partition of a ParallelSimulator. A logical process owns a subset of the nodes and
+ * keeps its own clock, event queue and timing wheel, so it can run on its own thread.
+ *
+ * It shares the topology and settings of the ParallelSimulator, but records what its nodes
+ * print so the ParallelSimulator can print it in order (see PartitionSettings).
+ *
+ * Packets to nodes in other partitions are not added to their queues directly. They are
+ * put in an outbox and handed over by the ParallelSimulator between windows.
+ *
+ * Events with the same time are ordered by the keys of an EventOrder rather than by the
+ * order in which they reached the queue. The keys do not depend on how nodes are partitioned,
+ * so a node sees its events in the same order whatever the number of partitions.
+ * </pre>
+ */
+public class LogicalProcess extends Manager {
+
+    private final ParallelSimulator simulator;
+    private final int id;
+    private long now;               // simulated time in microseconds
+    private final EventOrder order; // keys for events with the same time
+    private final PartitionSettings partitionSettings;
+    private final ArrayList[] outboxes;  // events for other partitions, indexed by partition
+    private final PacketDeliveryPool deliveries;
+
+    /**
+     * Create a logical process
+     * @param simulator The simulator this partition belongs to
+     * @param id The index of this partition
+     * @param numNodes The number of nodes in the whole simulation
+     * @param numPartitions The number of partitions in the whole simulation
+     * @param eventQueue The kind of event queue to schedule events with. See SortedEventQueue.newQueue
+     * @throws IllegalArgumentException If the kind of event queue is not recognized
+     */
+    public LogicalProcess(ParallelSimulator simulator, int id, int numNodes, int numPartitions, String eventQueue)
+	throws IllegalArgumentException {
+	super(0, eventQueue);
+	this.simulator = simulator;
+	this.topology = simulator.getTopology();
+	this.partitionSettings = new PartitionSettings(simulator.getSettings());
+	this.settings = this.partitionSettings;
+	this.id = id;
+	this.now = 0;
+	this.order = new EventOrder(numNodes);
+	this.outboxes = new ArrayList[numPartitions];
+	for(int i = 0; i < numPartitions; i++) {
+	    this.outboxes[i] = new ArrayList();
+	}
+	this.deliveries = new PacketDeliveryPool();
+    }
+
+    /**
+     * Does nothing. The ParallelSimulator drives its partitions with runUntil
+     */
+    public void start() {
+    }
+
+    /**
+     * Stops the whole simulation
+     */
+    public void stop() {
+	this.simulator.stop();
+    }
+
+    /**
+     * Run all events scheduled before the given time, in order
+     * @param end The end of the window, in microseconds. Events at this time or later are not run
+     */
+    public void runUntil(long end) {
+	Event nextEvent;
+	while((nextEvent = this.sortedEvents.getNextEvent()) != null && nextEvent.timeToOccur() < end) {
+	    this.sortedEvents.removeNextEvent();
+	    this.now = Math.max(this.now, nextEvent.timeToOccur());
+	    this.partitionSettings.startEvent(nextEvent);
+	    long startNanos = (this.profiler != null) ? System.nanoTime() : 0;
+	    try {
+		nextEvent.callback().invoke();
+	    }catch(Exception e) {
+		System.err.println("Exception while trying to invoke method in LogicalProcess. Error: " + e);
+		e.printStackTrace();
+	    }
+	    if(this.profiler != null) {
+		this.profiler.recordEvent(nextEvent.callback(), System.nanoTime() - startNanos,
+					  this.sortedEvents.size(), this.timingWheel.size());
+	    }
+	    this.eventRun();
+	    this.deliveries.recycle(nextEvent);
+	}
+    }
+
+    /**
+     * @return The time of the next event of this partition, in microseconds. Long.MAX_VALUE if there is none
+     */
+    public long nextEventTime() {
+	Event nextEvent = this.sortedEvents.getNextEvent();
+	if(nextEvent == null) {
+	    return Long.MAX_VALUE;
+	}
+	return nextEvent.timeToOccur();
+    }
+
+    /**
+     * @return The settings of this partition, which hold what its nodes printed until it is printed
+     */
+    public PartitionSettings getPartitionSettings() {
+	return this.partitionSettings;
+    }
+
+    /**
+     * Move the clock forward. Used by the ParallelSimulator before it runs commands at the given time
+     * @param now The new time in microseconds. Ignored if it is earlier than the current time
+     */
+    public void advanceTo(long now) {
+	this.now = Math.max(this.now, now);
+    }
+
+    /**
+     * Hand the events in the outbox for the given partition over to it, and empty the outbox
+     * @param destination The partition to deliver to
+     */
+    public void flushOutbox(LogicalProcess destination) {
+	ArrayList outbox = this.outboxes[destination.id];
+	for(int i = 0; i < outbox.size(); i++) {
+	    destination.sortedEvents.addOrderedEvent((Event)outbox.get(i));
+	}
+	outbox.clear();
+    }
+
+    /**
+     * Send the pkt to the specified node
+     * @param from The node that is sending the packet
+     * @param to Int spefying the destination node
+     * @param pkt The packet to be sent, serialized to a byte array
+     * @return True if the packet was sent, false otherwise
+     * @throws IllegalArgumentException If the arguments are invalid
+     */
+    public boolean sendPkt(int from, int to, byte[] pkt) throws IllegalArgumentException {
+	super.sendPkt(from, to, pkt);  // check arguments
+	Edge edge;
+	if(to == Packet.BROADCAST_ADDRESS) {
+	    for(int i = 0; i < this.order.numNodes(); i++) {
+		edge = this.topology.getLiveEdge(from, i);
+		if(edge != null) {
+		    this.deliverPkt(i, from, pkt, edge);
+		}
+	    }
+	}else if((edge = this.topology.getLiveEdge(from, to)) != null) {
+	    this.deliverPkt(to, from, pkt, edge);
+	}else {
+	    System.err.println("Failed to send pkt from: " + from + " to: " + to);
+	    return false;
+	}
+	return true;
+    }
+
+    /**
+     * Retrieve current time in milliseconds
+     * @return Current time in milliseconds
+     */
+    public long now() {
+	return this.now / 1000;
+    }
+
+    /**
+     * Adds a timer to be fired at time t
+     * @param nodeAddr Addr of node that is registering this timer
+     * @param t The time when the timer should fire. Its in milliseconds
+     * @param callback The callback to be invoked when the timer fires
+     */
+    public void addTimerAt(int nodeAddr, long t, Callback callback) {
+	if(nodeAddr < 0 || nodeAddr >= this.order.numNodes() || callback == null) {
+	    return;
+	}
+	Event event = new Event(t * 1000, callback);
+	event.setOrder(this.order.nextForNode(nodeAddr));
+	this.sortedEvents.addOrderedEvent(event);
+    }
+
+    /**
+     * Sends the msg to the the specified node
+     * @param nodeAddr Address of the node to whom the message should be sent
+     * @param msg The msg to send to the node
+     * @return True if msg sent, false if address is not valid
+     */
+    public boolean sendNodeMsg(int nodeAddr, String msg) {
+	return this.simulator.sendNodeMsg(nodeAddr, msg);
+    }
+
+    /**
+     * Adds an event to be invoked at the given time. Only the timing wheel adds events this way.
+     * Its events go before those of the nodes at the same time
+     * @param timeToOccur The time when the event should occur. In microseconds
+     * @param callback The callback to be invoked
+     */
+    protected void addEvent(long timeToOccur, Callback callback) {
+	if(timeToOccur < 0 || callback == null) {
+	    return;
+	}
+	Event event = new Event(timeToOccur, callback);
+	event.setOrder(this.order.nextForManager());
+	this.sortedEvents.addOrderedEvent(event);
+    }
+
+    /******************** Private Functions ********************/
+
+    private void deliverPkt(int destAddr, int srcAddr, byte[] pkt, Edge edge) {
+	long timeToDeliver = edge.schedulePkt(this, srcAddr, pkt.length, this.now);
+	if(timeToDeliver == -1) {
+	    return;  // pkt dropped
+	}
+
+	PacketDelivery delivery = this.deliveries.obtain();
+	Event event = delivery.schedule(timeToDeliver, this.simulator.getNode(destAddr), srcAddr, pkt);
+	event.setOrder(this.order.nextForNode(srcAddr));
+
+	LogicalProcess destination = this.simulator.getPartition(destAddr);
+	if(destination == this) {
+	    this.sortedEvents.addOrderedEvent(event);
+	}else {
+	    this.outboxes[destination.id].add(event);
+	}
+    }
+}
@@ -2,20 +2,28 @@ import java.io.FileReader;
 import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.io.ObjectInputStream;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * <pre>
  * Abstract class defining generic routines for running network code under Fishnet
  * </pre>
  */
-public abstract class Manager {
+public abstract class Manager implements Serializable {
 
     private int pktsSent;
     private long start;
     protected SortedEventQueue sortedEvents;
+    protected TimingWheel timingWheel;
     protected CommandsParser parser;   // parser for fishnet commands file
-    protected BufferedReader reader;
+    protected transient BufferedReader reader;
+    private String fishnetFile;
+    private int fishnetLinesRead;   // so that a restored Manager can carry on from the same line
     /*
      * Mar. 12, 2006
      * Hao Wang
@@ -24,23 +32,59 @@ public abstract class Manager {
     private int pktsDropped;
     // number of packets lost due to transmission error
     private int pktsLost;
+    private long seed;
+    protected Topology topology;
+    protected Settings settings;
+    private boolean exitOnStop;
+    private volatile boolean stopped;
+    private RandomStream[] random;  // random stream of each node, created when first used
+    protected transient EventProfiler profiler;  // null unless profiling is on
+    private PacketView sendView;  // checks packets sent without unpacking them
+    private BufferPool bufferPool;  // payload and packet arrays shared by the nodes
+    private long eventsRun;
+    private ArrayList transfers;  // TransferRecord of each transfer that has completed
 
     /**
      * Initialize Manager.
      * @param time Starting time in microseconds
      */
     protected Manager(long time) {
+	this(time, SortedEventQueue.DEFAULT);
+    }
+
+    /**
+     * Initialize Manager.
+     * @param time Starting time in microseconds
+     * @param eventQueue The kind of event queue to schedule events with. See SortedEventQueue.newQueue
+     * @throws IllegalArgumentException If the kind of event queue is not recognized
+     */
+    protected Manager(long time, String eventQueue) throws IllegalArgumentException {
 	this.pktsSent = 0;
 	this.start = time / 1000;
-	this.sortedEvents = new SortedEventQueue();
+	this.sortedEvents = SortedEventQueue.newQueue(eventQueue);
+	this.timingWheel = new TimingWheel(this, this.start);
 	this.parser = null;
 	this.reader = null;
+	this.fishnetFile = null;
+	this.fishnetLinesRead = 0;
         /*
          * Mar. 11, 2006
          * Hao Wang
          */
         this.pktsDropped = 0;
         this.pktsLost = 0;
+	this.topology = new Topology(false);
+	this.settings = new Settings();
+	this.exitOnStop = true;
+	this.stopped = false;
+	this.seed = System.nanoTime();
+	this.random = new RandomStream[Packet.MAX_ADDRESS + 1];
+	this.topology.setSeed(this.seed);
+	this.profiler = null;
+	this.sendView = new PacketView();
+	this.bufferPool = new BufferPool();
+	this.eventsRun = 0;
+	this.transfers = new ArrayList();
     }
 
     /**
@@ -50,20 +94,115 @@ public abstract class Manager {
     public abstract void start();
 
     /**
-     * Stops Fishnet. Normally this method should not return
+     * Stops Fishnet and prints statistics. Normally this method should not return,
+     * unless setExitOnStop(false) has been called
      */
     public void stop() {
-	System.err.println("Fishnet exiting after time: " + String.valueOf(this.now() - this.start) + " msec." +
-			   "\nNumber of packets sent: " + String.valueOf(this.pktsSent));
+	if(this.stopped) {
+	    return;
+	}
+	this.stopped = true;
+	PrintStream err = this.settings.getErr();
+	err.println("Fishnet exiting after time: " + String.valueOf(this.now() - this.start) + " msec." +
+			   "\nNumber of packets sent: " + String.valueOf(this.getPacketsSent()));
         /*
          * Mar. 12, 2006
          * Hao Wang
          *
          * Statistics about dropped and lost packets
          */
-        System.err.println("Number of packets dropped: " + String.valueOf(this.pktsDropped));
-        System.err.println("Number of packets lost: " + String.valueOf(this.pktsLost));
-	System.exit(0);
+        err.println("Number of packets dropped: " + String.valueOf(this.getPacketsDropped()));
+        err.println("Number of packets lost: " + String.valueOf(this.getPacketsLost()));
+	err.println("Random seed: " + String.valueOf(this.seed));
+	if(this.isProfiling()) {
+	    this.printProfile(err);
+	}
+	if(this.exitOnStop) {
+	    System.exit(0);
+	}
+    }
+
+    /**
+     * Sets whether stop() should exit the JVM. When it does not, start() returns once the Manager
+     * is stopped, so several Managers can run in one JVM
+     * @param exitOnStop True to exit the JVM on stop. This is the default
+     */
+    public void setExitOnStop(boolean exitOnStop) {
+	this.exitOnStop = exitOnStop;
+    }
+
+    /**
+     * @return True once stop() has been called
+     */
+    public boolean isStopped() {
+	return this.stopped;
+    }
+
+    /**
+     * @return The topology of this Manager's network
+     */
+    public Topology getTopology() {
+	return this.topology;
+    }
+
+    /**
+     * @return The settings shared by the nodes of this Manager
+     */
+    public Settings getSettings() {
+	return this.settings;
+    }
+
+    /**
+     * @return The pool of payload and packet arrays shared by the nodes of this Manager. Only
+     *         use it from the thread that runs the nodes
+     */
+    public BufferPool getBufferPool() {
+	return this.bufferPool;
+    }
+
+    /**
+     * Runs one command as if it had been typed at the keyboard. See CommandsParser for the commands
+     * @param line The command
+     */
+    public void parseCommand(String line) {
+	this.parser.parseLine(line, this.now() * 1000);
+    }
+
+    /**
+     * Turns profiling of the events run on or off. Turning it on starts a new profile.
+     * The profile is printed when Fishnet stops and with the profile report command
+     * @param profiling True to profile events
+     */
+    public void setProfiling(boolean profiling) {
+	this.profiler = profiling ? new EventProfiler(this.now()) : null;
+    }
+
+    /**
+     * @return True if events are being profiled
+     */
+    public boolean isProfiling() {
+	return (this.profiler != null);
+    }
+
+    /**
+     * @return The profile of events run so far. Null if profiling is off
+     */
+    public EventProfiler getProfiler() {
+	return this.profiler;
+    }
+
+    /**
+     * Prints the profile of events run so far
+     * @param out Where to print it
+     */
+    public void printProfile(PrintStream out) {
+	if(this.profiler == null) {
+	    out.println("Profiling is off. Turn it on with: profile on");
+	    return;
+	}
+	this.profiler.report(out, this.now());
+	out.println("Buffer pool: " + this.bufferPool.getAllocated() + " arrays created, " +
+		    this.bufferPool.getReused() + " reused");
     }
 
     /**
@@ -74,6 +213,17 @@ public abstract class Manager {
      */
     public void setFishnetFile(String filename) throws FileNotFoundException {
 	this.reader = new BufferedReader(new FileReader(filename));
+	this.fishnetFile = filename;
+	this.fishnetLinesRead = 0;
+    }
+
+    /**
+     * Saves the whole state of the Manager to a file, so that the run can be restored from it later.
+     * Only the Simulator supports this
+     * @param filename The name of the file to save to
+     */
+    public void snapshot(String filename) {
+	System.err.println("Snapshots are only supported by the simulator");
     }
 
     /**
@@ -85,15 +235,79 @@ public abstract class Manager {
      * @throws IllegalArgumentException If the arguments are invalid
      */
     public boolean sendPkt(int from, int to, byte[] pkt) throws IllegalArgumentException {
-	if ( (pkt.length > Packet.MAX_PACKET_SIZE) ||
+	this.checkPkt(from, to, pkt, 0, pkt.length);
+	return true;
+    }
+
+    /**
+     * Send a packet that was built in a PacketBuffer to the specified node.
+     * By default the packet is copied out of the buffer and sent with sendPkt. The Simulator and
+     * Emulator send it from the buffer without copying it, and retain the buffer if they keep it
+     * after returning
+     * @param from The node that is sending the packet
+     * @param to Int spefying the destination node
+     * @param buf The buffer holding the packet
+     * @return True if the packet was sent, false otherwise
+     * @throws IllegalArgumentException If the arguments are invalid
+     */
+    public boolean sendPkt(int from, int to, PacketBuffer buf) throws IllegalArgumentException {
+	return this.sendPkt(from, to, buf.toByteArray());
+    }
+
+    /**
+     * Send a transport segment to the specified node in a packet of protocol TRANSPORT_PKT.
+     * By default the segment is packed and sent with sendPkt. A Simulator that passes objects
+     * hands the segment itself to the destination node instead, so the payload of the segment
+     * must not be changed after it has been sent
+     * @param from The node that is sending the segment
+     * @param to Int spefying the destination node
+     * @param segment The transport segment to send
+     * @return True if the packet was sent, false otherwise
+     * @throws IllegalArgumentException If the arguments are invalid
+     */
+    public boolean sendTransport(int from, int to, Transport segment) throws IllegalArgumentException {
+	PacketBuffer buf = segment.toBuffer(this.bufferPool);
+	try {
+	    Packet.pushHeader(buf, to, from, Packet.MAX_TTL, Protocol.TRANSPORT_PKT, 0);
+	    return this.sendPkt(from, to, buf);
+	}finally {
+	    buf.release();
+	}
+    }
+
+    /**
+     * Checks the arguments of sendPkt and counts the packet as sent
+     * @param from The node that is sending the packet
+     * @param to Int spefying the destination node
+     * @param buf The buffer holding the packet
+     * @param offset Where in buf the packet starts
+     * @param length The length of the packet
+     * @throws IllegalArgumentException If the arguments are invalid
+     */
+    protected void checkPkt(int from, int to, byte[] buf, int offset, int length) throws IllegalArgumentException {
+	if ( (length > this.settings.getMtu()) ||
 	     !Packet.validAddress(to)                  ||
 	     !Packet.validAddress(from) ||
-		 !Packet.unpack(pkt).isValidToSend()) {
+		 !this.sendView.wrap(buf, offset, length).isValidToSend()) {
 
 	    throw new IllegalArgumentException("Either pkt is not valid, address is not valid, or TTL is not valid");
 	}
 	this.pktsSent++;
-	return true;
+    }
+
+    /**
+     * Checks and counts a packet that is sent without being packed. Does what sendPkt does to check
+     * its arguments, for a packet that is known to be valid apart from its size and addresses
+     * @param from The node that is sending the packet
+     * @param to Int spefying the destination node
+     * @param size The size the packet would have when packed
+     * @throws IllegalArgumentException If the arguments are invalid
+     */
+    protected void objectSent(int from, int to, int size) throws IllegalArgumentException {
+	if(size > this.settings.getMtu() || !Packet.validAddress(to) || !Packet.validAddress(from)) {
+	    throw new IllegalArgumentException("Either pkt is not valid, address is not valid, or TTL is not valid");
+	}
+	this.pktsSent++;
     }
 
     /*
@@ -117,6 +331,88 @@ public abstract class Manager {
         this.pktsLost++;
     }
 
+    /**
+     * @return The number of packets sent so far
+     */
+    public int getPacketsSent() {
+        return this.pktsSent;
+    }
+
+    /**
+     * @return The number of packets dropped due to buffer overflow so far
+     */
+    public int getPacketsDropped() {
+        return this.pktsDropped;
+    }
+
+    /**
+     * @return The number of packets lost due to transmission error so far
+     */
+    public int getPacketsLost() {
+        return this.pktsLost;
+    }
+
+    /**
+     * @return The number of events run so far
+     */
+    public long getEventsRun() {
+	return this.eventsRun;
+    }
+
+    /**
+     * Called by subclasses each time they have run an event
+     */
+    protected void eventRun() {
+	this.eventsRun++;
+    }
+
+    /**
+     * Records a transfer that has completed, so that its goodput can be reported
+     * @param transfer The transfer
+     */
+    public void transferDone(TransferRecord transfer) {
+	this.transfers.add(transfer);
+    }
+
+    /**
+     * @return The TransferRecord of each transfer that has completed so far, in the order they completed
+     */
+    public List getTransfers() {
+	return this.transfers;
+    }
+
+    /**
+     * Sets the seed that all random streams of the simulation are derived from, and restarts them.
+     * Runs with the same seed and the same commands make the same random choices
+     * @param seed The new seed
+     */
+    public void setSeed(long seed) {
+	this.seed = seed;
+	for(int i = 0; i < this.random.length; i++) {
+	    this.random[i] = null;
+	}
+	this.topology.setSeed(seed);
+    }
+
+    /**
+     * @return The seed that all random streams of the simulation are derived from
+     */
+    public long getSeed() {
+	return this.seed;
+    }
+
+    /**
+     * Returns the random stream of a node. Only that node should use it
+     * @param nodeAddr Addr of the node
+     * @return The random stream of the node
+     */
+    public RandomStream getRandom(int nodeAddr) {
+	if(this.random[nodeAddr] == null) {
+	    this.random[nodeAddr] = RandomStream.forNode(this.seed, nodeAddr);
+	}
+	return this.random[nodeAddr];
+    }
+
     /**
      * Adds a timer to be fired at time t
      * @param nodeAddr Addr of node that is registering this timer
@@ -153,6 +449,15 @@ public abstract class Manager {
 	this.addTimerAt(nodeAddr, this.now() + deltaT, callback);
     }
 
+    /**
+     * Returns the timer service for timers that are rescheduled or cancelled often.
+     * Timers on it take O(1) to schedule, reschedule and cancel.
+     * @return The timing wheel of this manager
+     */
+    public TimingWheel getTimingWheel() {
+	return this.timingWheel;
+    }
+
     /**
      * Retrieve current time in milliseconds
      * @return Current time in milliseconds
@@ -176,6 +481,16 @@ public abstract class Manager {
 	// Defined here since is not valid for emulator
     }
 
+    /**
+     * Sets whether transport segments are handed to nodes as objects rather than packed into bytes.
+     * Is only valid for simulator
+     * @param passObjects True to pass objects
+     */
+    public void setPassObjects(boolean passObjects) {
+	// do nothing. Simulator will override this function.
+	// The emulator always sends bytes over the wire
+    }
+
     protected void setParser(CommandsParser parser) {
 	this.parser = parser;
     }
@@ -194,12 +509,15 @@ public abstract class Manager {
 		line = this.reader.readLine();
 		if(line == null) {
 		    this.reader = null;
+		    this.fishnetFile = null;
 		}else {
+		    this.fishnetLinesRead++;
 		    return Math.max(this.parser.parseLine(line, this.now() * 1000), 0);
 		}
 	    }catch(IOException e) {
 		System.err.println("IOException occured while trying to read fish file in Simulator!! Error: " + e);
 		this.reader = null;
+		this.fishnetFile = null;
 	    }
 	}
 	if(this.reader == null) {
@@ -208,18 +526,39 @@ public abstract class Manager {
 	return deferTill;
     }
 
+    /**
+     * Adds an event to be invoked at the given time
+     * @param timeToOccur The time when the event should occur. In microseconds
+     * @param callback The callback to be invoked
+     */
+    protected void addEvent(long timeToOccur, Callback callback) {
+	if(timeToOccur < 0 || callback == null) {
+	    return;
+	}
+	this.sortedEvents.addEvent(new Event(timeToOccur, callback));
+    }
+
     protected void addEvent(long timeToOccur, String methodName, Object obj, String[] paramTypes, Object[] params) {
 	if(timeToOccur < 0) {
 	    return;
 	}
 	try {
 	    Method method = Callback.getMethod(methodName, obj, paramTypes);
-	    Callback cb = new Callback(method, obj, params);
-	    this.sortedEvents.addEvent(new Event(timeToOccur, cb));
+	    this.addEvent(timeToOccur, new Callback(method, obj, params));
 	}catch(Exception e) {
 	    System.err.println("Failed to add event in Manager. Method Name: " + methodName + " Object: " + obj +
 			       "\nException: " + e);
 	}
     }
 
+    // Reopen the fishnet file after a restore and skip the lines that were already read
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+	in.defaultReadObject();
+	if(this.fishnetFile != null) {
+	    this.reader = new BufferedReader(new FileReader(this.fishnetFile));
+	    for(int i = 0; i < this.fishnetLinesRead; i++) {
+		this.reader.readLine();
+	    }
+	}
+    }
 }
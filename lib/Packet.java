@@ -1,10 +1,13 @@
-import java.math.BigInteger;
-import java.io.ByteArrayOutputStream;
-import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
 
 /**
  * <pre>   
  * Packet defines the Fishnet packet headers and some constants.
+ *
+ * Packets are at most MAX_PACKET_SIZE bytes unless a larger MTU is set in Settings, up to MAX_MTU.
+ * A packet of up to MAX_SHORT_PACKET_SIZE bytes gives its length in 1 byte, as it always has.
+ * A bigger packet puts 0 in that byte and gives its length in 2 bytes after the sequence number,
+ * so its header is EXTENDED_HEADER_SIZE bytes.
  * </pre>   
  */
 public class Packet {
@@ -12,8 +15,11 @@ public class Packet {
     public static final int BROADCAST_ADDRESS = 255;
     public static final int MAX_ADDRESS = 255;
     public static final int HEADER_SIZE = 9;
-    public static final int MAX_PACKET_SIZE = 128;  // bytes
+    public static final int EXTENDED_HEADER_SIZE = 11;
+    public static final int MAX_PACKET_SIZE = 128;  // bytes. The default MTU
     public static final int MAX_PAYLOAD_SIZE = MAX_PACKET_SIZE - HEADER_SIZE;  // bytes
+    public static final int MAX_SHORT_PACKET_SIZE = 255;  // largest packet with a 1 byte length
+    public static final int MAX_MTU = 65000;        // bytes. Leaves room for the emulator header in a UDP datagram
     public static final int MAX_TTL = 15;           // max hop count
 
     private int dest;
@@ -35,7 +41,7 @@ public class Packet {
      */
     public Packet(int dest, int src, int ttl, int protocol, int seq, byte[] payload) throws IllegalArgumentException {
 	
-	if(!this.isValid(dest, src, ttl, protocol, payload.length + Packet.HEADER_SIZE)) {
+	if(!isValid(dest, src, ttl, protocol, packedSize(payload.length))) {
 	    throw new IllegalArgumentException("Arguments passed to constructor of Packet are invalid");
 	}
 	
@@ -106,6 +112,49 @@ public class Packet {
 	return this.payload;
     }
 
+    /**
+     * @return The number of bytes pack writes
+     */
+    public int getPackedSize() {
+	return packedSize(this.payload.length);
+    }
+
+    /**
+     * @param payloadLength The length of a payload
+     * @return The size of the header of a packet carrying that payload
+     */
+    public static int headerSize(int payloadLength) {
+	return (payloadLength + HEADER_SIZE <= MAX_SHORT_PACKET_SIZE) ? HEADER_SIZE : EXTENDED_HEADER_SIZE;
+    }
+
+    /**
+     * @param payloadLength The length of a payload
+     * @return The size of a packet carrying that payload
+     */
+    public static int packedSize(int payloadLength) {
+	return headerSize(payloadLength) + payloadLength;
+    }
+
+    /**
+     * @param mtu The largest packet allowed, in bytes
+     * @return The largest payload a packet of at most mtu bytes can carry
+     */
+    public static int maxPayloadSize(int mtu) {
+	if(mtu <= MAX_SHORT_PACKET_SIZE) {
+	    return mtu - HEADER_SIZE;
+	}
+	return Math.max(MAX_SHORT_PACKET_SIZE - HEADER_SIZE, mtu - EXTENDED_HEADER_SIZE);
+    }
+
+    /**
+     * @param buf A buffer holding a packed packet
+     * @param offset Where in buf the packet starts
+     * @return The size of the header of the packet, judging by its 1 byte length
+     */
+    public static int headerSizeAt(byte[] buf, int offset) {
+	return (buf[offset + 4] == 0) ? EXTENDED_HEADER_SIZE : HEADER_SIZE;
+    }
+
     /**
      * Convert the Packet object into a byte array for sending over the wire.
      * Format:
@@ -113,31 +162,88 @@ public class Packet {
      *        source address: 1 byte
      *        ttl (time to live): 1 byte
      *        protocol: 1 byte
-     *        packet length: 1 byte
+     *        packet length: 1 byte, or 0 if the packet is bigger than MAX_SHORT_PACKET_SIZE
      *        packet sequence num: 4 bytes
-     *        payload: <= MAX_PAYLOAD_SIZE bytes
+     *        packet length: 2 bytes, only if the 1 byte length is 0
+     *        payload: <= MAX_PAYLOAD_SIZE bytes, or more if a larger MTU is set
      * @return A byte[] for transporting over the wire. Null if failed to pack for some reason
      */
     public byte[] pack() {	
-	
-	ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-	byteStream.write(this.dest);
-	byteStream.write(this.src);
-	byteStream.write(this.ttl);
-	byteStream.write(this.protocol);
-	byteStream.write(this.payload.length + Packet.HEADER_SIZE);
+	byte[] packedPacket = new byte[this.getPackedSize()];
+	this.pack(packedPacket, 0);
+	return packedPacket;
+    }
+
+    /**
+     * Write the packet into a buffer in the format of pack()
+     * @param buf The buffer to write to
+     * @param offset Where in buf the packet should start
+     * @return The number of bytes written
+     * @throws IndexOutOfBoundsException If the packet does not fit in buf
+     */
+    public int pack(byte[] buf, int offset) throws IndexOutOfBoundsException {
+	int size = this.getPackedSize();
+	if(offset < 0 || offset + size > buf.length) {
+	    throw new IndexOutOfBoundsException("Packet of " + size + " bytes does not fit at " + offset);
+	}
+	int headerSize = writeHeader(buf, offset, this.dest, this.src, this.ttl, this.protocol, this.seq, size);
+	System.arraycopy(this.payload, 0, buf, offset + headerSize, this.payload.length);
+	return size;
+    }
 
-	byte[] seqByteArray = (BigInteger.valueOf(this.seq)).toByteArray();
-	int paddingLength = 4 - seqByteArray.length;
-	for(int i = 0; i < paddingLength; i++) {
-	    byteStream.write(0);
+    /**
+     * Write the packet at the position of a buffer in the format of pack(), and move past it
+     * @param buf The buffer to write to
+     * @throws java.nio.BufferOverflowException If the packet does not fit in the rest of buf
+     */
+    public void pack(ByteBuffer buf) {
+	buf.put((byte)this.dest);
+	buf.put((byte)this.src);
+	buf.put((byte)this.ttl);
+	buf.put((byte)this.protocol);
+	int size = this.getPackedSize();
+	buf.put((size <= MAX_SHORT_PACKET_SIZE) ? (byte)size : 0);
+	WireCodec.putInt(buf, WireCodec.toWire(this.seq));
+	if(size > MAX_SHORT_PACKET_SIZE) {
+	    WireCodec.putShort(buf, size);
 	}
+	buf.put(this.payload);
+    }
 
-	byteStream.write(seqByteArray, 0, Math.min(seqByteArray.length, 4));
-		
-	byteStream.write(this.payload, 0, this.payload.length);
+    /**
+     * Write a Packet header in place in front of the payload held by a buffer, in the format of pack()
+     * @param buf The buffer holding the payload, with room for the header
+     * @param dest The destination fishnet address.
+     * @param src The source fishnet address.
+     * @param ttl The time-to-live value for this packet.
+     * @param protocol What type of packet this is.
+     * @param seq The sequence number of the packet.
+     * @throws IllegalArgumentException If the given arguments are invalid, as for the constructor
+     */
+    public static void pushHeader(PacketBuffer buf, int dest, int src, int ttl, int protocol, int seq)
+	throws IllegalArgumentException {
+	int size = packedSize(buf.getLength());
+	if(!isValid(dest, src, ttl, protocol, size)) {
+	    throw new IllegalArgumentException("Arguments passed to Packet.pushHeader are invalid");
+	}
+	int offset = buf.push(headerSize(buf.getLength()));
+	writeHeader(buf.getData(), offset, dest, src, ttl, protocol, seq, size);
+    }
 
-	return byteStream.toByteArray();
+    // Write the header of a packet of size bytes and return its length
+    private static int writeHeader(byte[] buf, int offset, int dest, int src, int ttl, int protocol, int seq, int size) {
+	buf[offset] = (byte)dest;
+	buf[offset + 1] = (byte)src;
+	buf[offset + 2] = (byte)ttl;
+	buf[offset + 3] = (byte)protocol;
+	WireCodec.putInt(buf, offset + 5, WireCodec.toWire(seq));
+	if(size <= MAX_SHORT_PACKET_SIZE) {
+	    buf[offset + 4] = (byte)size;
+	    return HEADER_SIZE;
+	}
+	buf[offset + 4] = 0;
+	WireCodec.putShort(buf, offset + HEADER_SIZE, size);
+	return EXTENDED_HEADER_SIZE;
     }
 
     /**
@@ -147,37 +253,97 @@ public class Packet {
      * @return Packet object created or null if the byte[] representation was corrupted
      */
     public static Packet unpack(byte[] packedPacket){
-	
-	ByteArrayInputStream byteStream = new ByteArrayInputStream(packedPacket);
-	
-	int dest = byteStream.read();
-	int src = byteStream.read();
-	int ttl = byteStream.read();
-	int protocol = byteStream.read();
-	int packetLength = byteStream.read();
-	
-	byte[] seqByteArray = new byte[4];
-	if(byteStream.read(seqByteArray, 0, 4) != 4) {
+	return unpack(packedPacket, 0, packedPacket.length);
+    }
+
+    /**
+     * Unpacks part of a byte array to create a Packet object
+     * @param buf The buffer holding the packet
+     * @param offset Where in buf the packet starts
+     * @param length The length of the packet
+     * @return Packet object created or null if the bytes are corrupted
+     */
+    public static Packet unpack(byte[] buf, int offset, int length) {
+	if(!hasLength(buf, offset, length)) {
 	    return null;
 	}
 
-	int seq = (new BigInteger(seqByteArray)).intValue();
-
-	byte[] payload = new byte[byteStream.available()];
-	byteStream.read(payload, 0, payload.length);
+	int headerSize = headerSizeAt(buf, offset);
+	byte[] payload = new byte[length - headerSize];
+	System.arraycopy(buf, offset + headerSize, payload, 0, payload.length);
+	try {
+	    return new Packet(WireCodec.getUnsignedByte(buf, offset),
+			      WireCodec.getUnsignedByte(buf, offset + 1),
+			      WireCodec.getUnsignedByte(buf, offset + 2),
+			      WireCodec.getUnsignedByte(buf, offset + 3),
+			      WireCodec.getInt(buf, offset + 5),
+			      payload);
+	}catch(IllegalArgumentException e) {
+	    // will return null
+	}
+	return null;
+    }
 
-	if((9 + payload.length) != packetLength) {
+    /**
+     * Unpacks the bytes from the position to the limit of a buffer to create a Packet object.
+     * Moves the position to the limit, or leaves it alone if the bytes are corrupted
+     * @param buf The buffer holding the packet
+     * @return Packet object created or null if the bytes are corrupted
+     */
+    public static Packet unpack(ByteBuffer buf) {
+	int start = buf.position();
+	int length = buf.remaining();
+	if(length < HEADER_SIZE) {
 	    return null;
-	}	
-	
+	}
+	boolean extended = (buf.get(start + 4) == 0);
+	int headerSize = extended ? EXTENDED_HEADER_SIZE : HEADER_SIZE;
+	if(length < headerSize) {
+	    return null;
+	}
+	int packetLength = extended ? WireCodec.getUnsignedShort(buf, start + HEADER_SIZE) : (buf.get(start + 4) & 0xff);
+	if(packetLength != length) {
+	    return null;
+	}
+
+	int dest = WireCodec.getUnsignedByte(buf);
+	int src = WireCodec.getUnsignedByte(buf);
+	int ttl = WireCodec.getUnsignedByte(buf);
+	int protocol = WireCodec.getUnsignedByte(buf);
+	buf.get();  // length, checked above
+	int seq = WireCodec.getInt(buf);
+	if(extended) {
+	    buf.getShort();  // length, checked above
+	}
+	byte[] payload = new byte[length - headerSize];
+	buf.get(payload);
 	try {
 	    return new Packet(dest, src, ttl, protocol, seq, payload);
 	}catch(IllegalArgumentException e) {
-	    // will return null
+	    buf.position(start);
 	}
 	return null;
     }
     
+    /**
+     * Tests if the length given in the header of a packed packet is the length of the packet
+     * @param buf The buffer holding the packet
+     * @param offset Where in buf the packet starts
+     * @param length The length of the packet
+     * @return True if the lengths agree, else false
+     */
+    public static boolean hasLength(byte[] buf, int offset, int length) {
+	if(length < HEADER_SIZE) {
+	    return false;
+	}
+	int shortLength = WireCodec.getUnsignedByte(buf, offset + 4);
+	if(shortLength != 0) {
+	    return (shortLength == length);
+	}
+	return (length >= EXTENDED_HEADER_SIZE &&
+		WireCodec.getUnsignedShort(buf, offset + HEADER_SIZE) == length);
+    }
+
     /**
      * Tests if the address is a valid one
      * @param addr Address to check
@@ -192,15 +358,15 @@ public class Packet {
      * @return True if packet is valid, else false
      */
     public boolean isValid() {
-	return this.isValid(this.dest, this.src, this.ttl, this.protocol, this.payload.length + HEADER_SIZE);
+	return isValid(this.dest, this.src, this.ttl, this.protocol, this.getPackedSize());
     }
 
-    private boolean isValid(int dest, int src, int ttl, int protocol, int size) {
+    private static boolean isValid(int dest, int src, int ttl, int protocol, int size) {
 	return (dest <= MAX_ADDRESS && dest >= 0   &&
 		Packet.validAddress(src)           &&
 		Protocol.isProtocolValid(protocol) &&
 		ttl <= MAX_TTL && ttl >= 0         &&
-		size <= MAX_PACKET_SIZE);
+		size <= MAX_MTU);
 
     }
 
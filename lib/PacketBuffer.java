@@ -0,0 +1,133 @@
+import java.io.Serializable;
+
+/**
+ * <pre>
+ * A packet being built for sending, in the style of the Linux sk_buff.
+ *
+ * The payload is written once into a buffer that leaves room in front of it. Each layer on the
+ * way down then pushes its header into that room, in place, instead of copying the whole packet
+ * into a bigger array: Transport, then Packet, then EmulatorPacket. HEADROOM is enough for all
+ * three headers, even in their extended form for packets bigger than 255 bytes.
+ *
+ * The packet is the bytes from getOffset() for getLength() bytes of getData(). Do not change
+ * them once the packet has been handed to the Manager.
+ *
+ * The array may come from a BufferPool. The buffer then counts references: whoever creates it
+ * holds one, anything that keeps the array past the call that handed it over, such as a
+ * scheduled delivery, takes another with retain(), and each calls release() when done. The
+ * array goes back to the pool when the last reference is released.
+ * </pre>
+ */
+public class PacketBuffer implements Serializable {
+
+    public static final int HEADROOM =
+	EmulatorPacket.EXTENDED_HEADER_SIZE + Packet.EXTENDED_HEADER_SIZE + Transport.EXTENDED_HEADER_SIZE;
+
+    private byte[] data;
+    private int offset;
+    private int length;
+    private transient BufferPool pool;   // where data goes back to once released. Null if not pooled
+    private int refCount;
+
+    /**
+     * Create a buffer holding a payload, with room for headers in front of it
+     * @param headroom The number of bytes to leave in front of the payload
+     * @param payload The payload. It is copied into the buffer
+     */
+    public PacketBuffer(int headroom, byte[] payload) {
+	this(headroom, payload, null);
+    }
+
+    /**
+     * Create a buffer holding a payload in an array taken from a pool, with room for headers in front of it.
+     * The creator holds the one reference to it
+     * @param headroom The number of bytes to leave in front of the payload
+     * @param payload The payload. It is copied into the buffer
+     * @param pool The pool to take the array from and give it back to. Null to create the array
+     */
+    public PacketBuffer(int headroom, byte[] payload, BufferPool pool) {
+	int size = headroom + payload.length;
+	this.data = (pool != null) ? pool.obtain(size) : new byte[size];
+	this.offset = headroom;
+	this.length = payload.length;
+	this.pool = pool;
+	this.refCount = 1;
+	System.arraycopy(payload, 0, this.data, headroom, payload.length);
+    }
+
+    /**
+     * Take another reference to the array, for keeping it after the call that handed it over returns
+     * @return This buffer
+     */
+    public PacketBuffer retain() {
+	this.refCount++;
+	return this;
+    }
+
+    /**
+     * Drop a reference to the array. The array goes back to its pool when none are left,
+     * and must not be used after that
+     */
+    public void release() {
+	if(--this.refCount == 0 && this.pool != null) {
+	    this.pool.release(this.data);
+	    this.pool = null;
+	}
+    }
+
+    /**
+     * Make room for a header in front of the packet
+     * @param headerSize The size of the header
+     * @return Where in getData() the header should be written
+     * @throws IllegalStateException If there is not enough headroom left
+     */
+    public int push(int headerSize) throws IllegalStateException {
+	if(headerSize > this.offset) {
+	    throw new IllegalStateException("No headroom left for a header of " + headerSize + " bytes");
+	}
+	this.offset -= headerSize;
+	this.length += headerSize;
+	return this.offset;
+    }
+
+    /**
+     * @return The number of bytes left in front of the packet for headers
+     */
+    public int getHeadroom() {
+	return this.offset;
+    }
+
+    /**
+     * @return The array holding the packet
+     */
+    public byte[] getData() {
+	return this.data;
+    }
+
+    /**
+     * @return Where in getData() the packet starts
+     */
+    public int getOffset() {
+	return this.offset;
+    }
+
+    /**
+     * @return The length of the packet
+     */
+    public int getLength() {
+	return this.length;
+    }
+
+    /**
+     * Copy the packet into an array of its own, for code that needs a byte[] holding exactly the packet
+     * @return The packet. Its own array when there is no headroom left and it is not pooled, otherwise a copy
+     */
+    public byte[] toByteArray() {
+	if(this.pool == null && this.offset == 0 && this.length == this.data.length) {
+	    return this.data;
+	}
+	byte[] packet = new byte[this.length];
+	System.arraycopy(this.data, this.offset, packet, 0, this.length);
+	return packet;
+    }
+}
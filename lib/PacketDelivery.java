@@ -0,0 +1,126 @@
+/**
+ * <pre>
+ * Event that delivers a packet to a node in the Simulator.
+ *
+ * Deliveries are the most common event by far, so the Simulator keeps the ones that have
+ * run in a PacketDeliveryPool and reuses them, together with the Event that schedules them. Each
+ * delivery owns exactly one Event. Do not keep a reference to either after the delivery
+ * has been invoked.
+ *
+ * A delivery holds a reference to the PacketBuffer or Transport it delivers from the time it
+ * is scheduled until it is cleared, so that a pooled array is not reused while it is in flight.
+ * </pre>
+ */
+public class PacketDelivery extends Callback {
+
+    private final Event event;
+    private Node destNode;
+    private int srcAddr;
+    private byte[] pkt;
+    private int offset;   // of the packet in pkt
+    private int length;
+    private PacketBuffer buffer;  // holds pkt when it was sent from a PacketBuffer
+    private Transport segment;   // set instead of pkt when the Simulator passes objects
+    transient PacketDelivery nextFree;   // link used by PacketDeliveryPool
+
+    public PacketDelivery() {
+	super();
+	this.event = new Event(0, this);
+	this.nextFree = null;
+    }
+
+    /**
+     * Set up this delivery and return the event to schedule it with
+     * @param timeToDeliver The time when the packet arrives. In microseconds
+     * @param destNode The node the packet is delivered to
+     * @param srcAddr The address of the node that sent the packet
+     * @param pkt The packet, serialized to a byte array
+     * @return The event to add to the event queue
+     */
+    public Event schedule(long timeToDeliver, Node destNode, int srcAddr, byte[] pkt) {
+	return this.schedule(timeToDeliver, destNode, srcAddr, pkt, 0, pkt.length);
+    }
+
+    /**
+     * Set up this delivery of a packet that is part of an array, and return the event to schedule it with
+     * @param timeToDeliver The time when the packet arrives. In microseconds
+     * @param destNode The node the packet is delivered to
+     * @param srcAddr The address of the node that sent the packet
+     * @param pkt The array holding the packet
+     * @param offset Where in pkt the packet starts
+     * @param length The length of the packet
+     * @return The event to add to the event queue
+     */
+    public Event schedule(long timeToDeliver, Node destNode, int srcAddr, byte[] pkt, int offset, int length) {
+	this.destNode = destNode;
+	this.srcAddr = srcAddr;
+	this.pkt = pkt;
+	this.offset = offset;
+	this.length = length;
+	this.buffer = null;
+	this.segment = null;
+	this.event.setTimeToOccur(timeToDeliver);
+	return this.event;
+    }
+
+    /**
+     * Set up this delivery of a packet held by a PacketBuffer, and return the event to schedule it with.
+     * The delivery retains the buffer until it is cleared
+     * @param timeToDeliver The time when the packet arrives. In microseconds
+     * @param destNode The node the packet is delivered to
+     * @param srcAddr The address of the node that sent the packet
+     * @param buf The buffer holding the packet
+     * @return The event to add to the event queue
+     */
+    public Event schedule(long timeToDeliver, Node destNode, int srcAddr, PacketBuffer buf) {
+	this.schedule(timeToDeliver, destNode, srcAddr, buf.getData(), buf.getOffset(), buf.getLength());
+	this.buffer = buf.retain();
+	return this.event;
+    }
+
+    /**
+     * Set up this delivery of a transport segment that is passed as an object, and return the event to schedule it with.
+     * The node is handed the segment as it would have unpacked it. The delivery retains the segment until it is cleared
+     * @param timeToDeliver The time when the segment arrives. In microseconds
+     * @param destNode The node the segment is delivered to
+     * @param srcAddr The address of the node that sent the segment
+     * @param segment The transport segment
+     * @return The event to add to the event queue
+     */
+    public Event schedule(long timeToDeliver, Node destNode, int srcAddr, Transport segment) {
+	this.destNode = destNode;
+	this.srcAddr = srcAddr;
+	this.pkt = null;
+	this.buffer = null;
+	this.segment = segment.retain();
+	this.event.setTimeToOccur(timeToDeliver);
+	return this.event;
+    }
+
+    /**
+     * Delivers the packet
+     */
+    public void invoke() {
+	if(this.segment != null) {
+	    this.destNode.onReceive(this.srcAddr, this.segment);
+	}else {
+	    this.destNode.onReceive(this.srcAddr, this.pkt, this.offset, this.length);
+	}
+    }
+
+    /**
+     * Drops the references held by this delivery so it can be reused, releasing its buffer or segment
+     */
+    public void clear() {
+	if(this.buffer != null) {
+	    this.buffer.release();
+	}
+	if(this.segment != null) {
+	    this.segment.release();
+	}
+	this.destNode = null;
+	this.pkt = null;
+	this.buffer = null;
+	this.segment = null;
+    }
+}
@@ -0,0 +1,44 @@
+import java.io.Serializable;
+
+/**
+ * <pre>
+ * Pool of PacketDelivery events that have run and can be reused.
+ * Not thread safe. Each Manager that delivers packets keeps its own.
+ * </pre>
+ */
+public class PacketDeliveryPool implements Serializable {
+
+    private transient PacketDelivery free;   // deliveries that have run, linked through nextFree
+
+    public PacketDeliveryPool() {
+	this.free = null;
+    }
+
+    /**
+     * Take a delivery from the pool, or create one if the pool is empty
+     * @return A delivery that is not scheduled
+     */
+    public PacketDelivery obtain() {
+	PacketDelivery delivery = this.free;
+	if(delivery == null) {
+	    return new PacketDelivery();
+	}
+	this.free = delivery.nextFree;
+	delivery.nextFree = null;
+	return delivery;
+    }
+
+    /**
+     * Return the delivery behind an event to the pool once the event has run.
+     * Does nothing if the event is not a delivery
+     * @param event An event that has been removed from the queue and invoked
+     */
+    public void recycle(Event event) {
+	if(event.callback() instanceof PacketDelivery) {
+	    PacketDelivery delivery = (PacketDelivery)event.callback();
+	    delivery.clear();
+	    delivery.nextFree = this.free;
+	    this.free = delivery;
+	}
+    }
+}
@@ -0,0 +1,142 @@
+import java.io.Serializable;
+
+/**
+ * <pre>
+ * Read-only view of a packed Packet that reads header fields in place, without unpacking it.
+ * One view can be pointed at packet after packet with wrap, so checking and demultiplexing
+ * packets allocates nothing. The payload is left where it is: use getPayloadOffset and
+ * getPayloadLength to look at it, for example with a TransportView.
+ *
+ * The view does not copy the bytes, so it is only good while they are not changed.
+ * Use toPacket for a Packet that can be kept.
+ * </pre>
+ */
+public class PacketView implements Serializable {
+
+    private byte[] buf;
+    private int offset;
+    private int length;
+
+    public PacketView() {
+	this.wrap(null, 0, 0);
+    }
+
+    /**
+     * Point the view at a packed packet
+     * @param packedPacket A packet in the format of Packet.pack()
+     * @return This view
+     */
+    public PacketView wrap(byte[] packedPacket) {
+	return this.wrap(packedPacket, 0, packedPacket.length);
+    }
+
+    /**
+     * Point the view at a packed packet in part of a buffer
+     * @param buf The buffer holding the packet
+     * @param offset Where in buf the packet starts
+     * @param length The length of the packet
+     * @return This view
+     */
+    public PacketView wrap(byte[] buf, int offset, int length) {
+	this.buf = buf;
+	this.offset = offset;
+	this.length = length;
+	return this;
+    }
+
+    /**
+     * Tests if the bytes hold a packet that Packet.unpack would accept
+     * @return True if the packet is valid, else false
+     */
+    public boolean isValid() {
+	return (this.length <= Packet.MAX_MTU                          &&
+		Packet.hasLength(this.buf, this.offset, this.length)   &&
+		Protocol.isProtocolValid(this.getProtocol())           &&
+		this.getTTL() <= Packet.MAX_TTL);
+    }
+
+    /**
+     * Tests if the packet is valid and has some TTL left. See Packet.isValidToSend
+     * @return True if the packet is valid to send, else false
+     */
+    public boolean isValidToSend() {
+	return (this.isValid() && this.getTTL() > 0);
+    }
+
+    /**
+     * @return The address of the destination node
+     */
+    public int getDest() {
+	return this.byteAt(0);
+    }
+
+    /**
+     * @return The address of the src node
+     */
+    public int getSrc() {
+	return this.byteAt(1);
+    }
+
+    /**
+     * @return The TTL of the packet
+     */
+    public int getTTL() {
+	return this.byteAt(2);
+    }
+
+    /**
+     * @return The protocol used for this packet
+     */
+    public int getProtocol() {
+	return this.byteAt(3);
+    }
+
+    /**
+     * @return The sequence number of this packet
+     */
+    public int getSeq() {
+	return WireCodec.getInt(this.buf, this.offset + 5);
+    }
+
+    /**
+     * @return The buffer the view reads from
+     */
+    public byte[] getBuffer() {
+	return this.buf;
+    }
+
+    /**
+     * @return Where the payload starts in the buffer
+     */
+    public int getPayloadOffset() {
+	return this.offset + Packet.headerSizeAt(this.buf, this.offset);
+    }
+
+    /**
+     * @return The length of the payload
+     */
+    public int getPayloadLength() {
+	return this.length - Packet.headerSizeAt(this.buf, this.offset);
+    }
+
+    /**
+     * @return A copy of the bytes the view reads
+     */
+    public byte[] toByteArray() {
+	byte[] packet = new byte[this.length];
+	System.arraycopy(this.buf, this.offset, packet, 0, this.length);
+	return packet;
+    }
+
+    /**
+     * Unpack the packet into an object of its own
+     * @return The Packet, or null if the bytes are not a valid packet
+     */
+    public Packet toPacket() {
+	return Packet.unpack(this.buf, this.offset, this.length);
+    }
+
+    private int byteAt(int index) {
+	return WireCodec.getUnsignedByte(this.buf, this.offset + index);
+    }
+}
@@ -0,0 +1,408 @@
+import java.io.PrintStream;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * <pre>
+ * Manages a simulation whose nodes are split into partitions that run on separate threads.
+ * Each partition is a LogicalProcess with its own event queue.
+ *
+ * Partitions are kept in step conservatively, one window at a time. A packet sent across
+ * partitions cannot arrive sooner than the smallest delay of an edge between partitions,
+ * the lookahead. So if the earliest pending event is at time t, every partition can run
+ * its events before t + lookahead without waiting for the others. At the end of each
+ * window the partitions exchange the packets they sent to each other.
+ *
+ * Commands from the topology and fishnet files run between windows, when every partition
+ * has reached their time. There is no keyboard input. The simulation runs as fast as it
+ * can and stops when no events or commands are left.
+ *
+ * Events with the same time are ordered the same way as in a Simulator, for any number of
+ * partitions (see EventOrder). What the nodes print is held back and printed in that order
+ * at the end of each window (see PartitionSettings). So a run gives the same output as a
+ * Simulator with the same seed, with one exception: timers. Each partition has a timing wheel
+ * of its own, for the timers of its nodes, and the events that drive it take their keys from
+ * a count kept by that partition alone. Those keys order nothing across partitions. So when
+ * timers of nodes in different partitions fire in the same millisecond, what the nodes print
+ * may be interleaved differently than by a Simulator, whose single wheel fires all of them
+ * from one event. Nodes share no state, so what they do and the packets they send are the
+ * same either way. The scenarios in scripts/ print exactly the same for any number of
+ * partitions.
+ *
+ * Partitions only pay off for large topologies, where each window has many events to run
+ * in parallel. See scripts/partition-scaling.fish and ScenarioBench -partitions.
+ * </pre>
+ */
+public class ParallelSimulator extends Manager {
+
+    private long now;  // simulated time in microseconds. Every partition has run all events before it
+    private Node[] nodes;
+    private LogicalProcess[] processes;
+    private LogicalProcess[] partitionOf;  // partition of each node, indexed by address
+    private SimulationCommandsParser topoFileParser;
+    private long topoDeferTill;   // when to parse the rest of the topology file. -1 if done
+    private long lookahead;       // in microseconds. 0 if some edge between partitions has no delay
+    private long windowEnd;
+    private ExecutorService executor;
+    private ArrayList tasks;      // one task per partition, running it till windowEnd
+
+    /**
+     * Creates a new simulation
+     * @param numNodes The number of nodes to simulate
+     * @param topoFile The name of the topology file to use
+     * @param numPartitions The number of partitions to split the nodes into. Capped at numNodes
+     * @param eventQueue The kind of event queue to schedule events with. See SortedEventQueue.newQueue
+     * @throws IllegalArgumentException If the number of nodes to simulate is < 0 or > Simulator.MAX_NODES_TO_SIMULATE,
+     *                                  the number of partitions is < 1, or the kind of event queue is not recognized
+     * @throws FileNotFoundException If the given topology file cannot be found
+     */
+    public ParallelSimulator(int numNodes, String topoFile, int numPartitions, String eventQueue)
+	throws IllegalArgumentException, FileNotFoundException {
+	super(0, eventQueue);
+	super.setParser(new SimulationCommandsParser(this));
+	if(numNodes <= 0 || numNodes > Simulator.MAX_NODES_TO_SIMULATE) {
+	    throw new IllegalArgumentException("Invalid number of nodes given to simulate. Nodes given: " + numNodes);
+	}
+	if(numPartitions <= 0) {
+	    throw new IllegalArgumentException("Invalid number of partitions. Partitions given: " + numPartitions);
+	}
+	numPartitions = Math.min(numPartitions, numNodes);
+
+	this.now = 0;
+
+	// Split the nodes into contiguous blocks of addresses
+	this.processes = new LogicalProcess[numPartitions];
+	for(int i = 0; i < numPartitions; i++) {
+	    this.processes[i] = new LogicalProcess(this, i, numNodes, numPartitions, eventQueue);
+	}
+	this.nodes = new Node[numNodes];
+	this.partitionOf = new LogicalProcess[numNodes];
+	for(int i = 0; i < numNodes; i++) {
+	    this.partitionOf[i] = this.processes[(int)((long)i * numPartitions / numNodes)];
+	    this.nodes[i] = new Node(this.partitionOf[i], i);
+	}
+
+	// The partitions chose seeds of their own. Give them ours
+	this.setSeed(this.getSeed());
+
+	this.tasks = new ArrayList();
+	for(int i = 0; i < numPartitions; i++) {
+	    final LogicalProcess process = this.processes[i];
+	    this.tasks.add(new Callable() {
+		    public Object call() {
+			process.runUntil(windowEnd);
+			return null;
+		    }
+		});
+	}
+	this.executor = Executors.newFixedThreadPool(Math.min(numPartitions, Runtime.getRuntime().availableProcessors()),
+						     new ThreadFactory() {
+							 public Thread newThread(Runnable r) {
+							     Thread thread = new Thread(r, "LogicalProcess");
+							     thread.setDaemon(true);
+							     return thread;
+							 }
+						     });
+
+	this.topoFileParser = new SimulationCommandsParser(this);
+	this.lookahead = -1;
+	this.topoDeferTill = this.topoFileParser.parseFile(topoFile, this.now);
+	this.lookahead = this.computeLookahead();
+    }
+
+    /**
+     * Starts the simulation
+     */
+    public void start() {
+	// Start all the nodes
+	for(int i = 0; i < this.nodes.length; i++) {
+	    this.nodes[i].start();
+	    this.printOutput();
+	}
+
+	this.setNow(1);
+
+	long deferParsingTill = 0;
+	while(!this.isStopped()) {
+	    // Run the commands that are due
+	    boolean commandsRun = false;
+	    while(this.topoDeferTill >= 0 && this.topoDeferTill <= this.now) {
+		this.topoDeferTill = this.topoFileParser.parseRemainder(this.now);
+		commandsRun = true;
+	    }
+	    while(deferParsingTill >= 0 && deferParsingTill <= this.now() * 1000) {
+		deferParsingTill = this.readFishFile(deferParsingTill);
+		commandsRun = true;
+	    }
+	    if(this.isStopped()) {
+		return;
+	    }
+	    if(commandsRun) {
+		// Commands may have changed the topology, and sent packets to other partitions
+		this.lookahead = this.computeLookahead();
+		this.exchangePackets();
+	    }
+
+	    long nextCommand = Long.MAX_VALUE;
+	    if(this.topoDeferTill >= 0) {
+		nextCommand = this.topoDeferTill;
+	    }
+	    if(deferParsingTill >= 0) {
+		nextCommand = Math.min(nextCommand, Math.max(deferParsingTill, (this.now() + 1) * 1000));
+	    }
+
+	    long nextEvent = Long.MAX_VALUE;
+	    for(int i = 0; i < this.processes.length; i++) {
+		nextEvent = Math.min(nextEvent, this.processes[i].nextEventTime());
+	    }
+
+	    if(nextEvent == Long.MAX_VALUE && nextCommand == Long.MAX_VALUE) {
+		this.stop();
+		return;
+	    }
+	    if(nextCommand <= nextEvent) {
+		this.setNow(nextCommand);
+		continue;
+	    }
+
+	    this.now = Math.max(this.now, nextEvent);
+	    long end = nextEvent + Math.max(this.lookahead, 1);
+	    if(end < nextEvent) {
+		end = Long.MAX_VALUE;  // overflow: no edges between partitions
+	    }
+	    this.runWindow(Math.min(end, nextCommand));
+	}
+    }
+
+    /**
+     * Stops the simulation and prints the statistics of all partitions
+     */
+    public void stop() {
+	this.executor.shutdownNow();
+	super.stop();
+    }
+
+    /**
+     * Sets the seed of the simulation in every partition
+     * @param seed The new seed
+     */
+    public void setSeed(long seed) {
+	super.setSeed(seed);
+	for(int i = 0; i < this.processes.length; i++) {
+	    this.processes[i].setSeed(seed);
+	}
+    }
+
+    /**
+     * Turns profiling on or off in every partition
+     * @param profiling True to profile events
+     */
+    public void setProfiling(boolean profiling) {
+	super.setProfiling(profiling);
+	for(int i = 0; i < this.processes.length; i++) {
+	    this.processes[i].setProfiling(profiling);
+	}
+    }
+
+    /**
+     * Prints the profile of each partition
+     * @param out Where to print it
+     */
+    public void printProfile(PrintStream out) {
+	if(!this.isProfiling()) {
+	    super.printProfile(out);
+	    return;
+	}
+	for(int i = 0; i < this.processes.length; i++) {
+	    out.println("Partition " + i + ":");
+	    this.processes[i].printProfile(out);
+	}
+    }
+
+    /**
+     * Retrieve current time in milliseconds
+     * @return Current time in milliseconds
+     */
+    public long now() {
+	return this.now / 1000;
+    }
+
+    /**
+     * Sends the msg to the the specified node
+     * @param nodeAddr Address of the node to whom the message should be sent
+     * @param msg The msg to send to the node
+     * @return True if msg sent, false if address is not valid
+     */
+    public boolean sendNodeMsg(int nodeAddr, String msg) {
+	if(!this.isNodeAddrValid(nodeAddr)) {
+	    return false;
+	}
+	this.nodes[nodeAddr].onCommand(msg);
+	this.printOutput();
+	return true;
+    }
+
+    /**
+     * @param nodeAddr Address of a node
+     * @return The node with the given address
+     */
+    public Node getNode(int nodeAddr) {
+	return this.nodes[nodeAddr];
+    }
+
+    /**
+     * @param nodeAddr Address of a node
+     * @return The partition that runs the node with the given address
+     */
+    public LogicalProcess getPartition(int nodeAddr) {
+	return this.partitionOf[nodeAddr];
+    }
+
+    /**
+     * @return The number of events run so far by all partitions
+     */
+    public long getEventsRun() {
+	long total = 0;
+	for(int i = 0; i < this.processes.length; i++) {
+	    total += this.processes[i].getEventsRun();
+	}
+	return total;
+    }
+
+    /**
+     * @return The transfers completed so far by all partitions, partition by partition
+     */
+    public List getTransfers() {
+	List all = new ArrayList();
+	for(int i = 0; i < this.processes.length; i++) {
+	    all.addAll(this.processes[i].getTransfers());
+	}
+	return all;
+    }
+
+    /**
+     * @return The number of packets sent so far by all partitions
+     */
+    public int getPacketsSent() {
+	int total = 0;
+	for(int i = 0; i < this.processes.length; i++) {
+	    total += this.processes[i].getPacketsSent();
+	}
+	return total;
+    }
+
+    /**
+     * @return The number of packets dropped due to buffer overflow so far by all partitions
+     */
+    public int getPacketsDropped() {
+	int total = 0;
+	for(int i = 0; i < this.processes.length; i++) {
+	    total += this.processes[i].getPacketsDropped();
+	}
+	return total;
+    }
+
+    /**
+     * @return The number of packets lost due to transmission error so far by all partitions
+     */
+    public int getPacketsLost() {
+	int total = 0;
+	for(int i = 0; i < this.processes.length; i++) {
+	    total += this.processes[i].getPacketsLost();
+	}
+	return total;
+    }
+
+    /******************** Private Functions ********************/
+
+    private boolean isNodeAddrValid(int nodeAddr) {
+	return ((nodeAddr >= 0) && (nodeAddr < this.nodes.length));
+    }
+
+    private void setNow(long now) {
+	this.now = Math.max(this.now, now);
+	for(int i = 0; i < this.processes.length; i++) {
+	    this.processes[i].advanceTo(this.now);
+	}
+    }
+
+    // Smallest delay of an edge between partitions, in microseconds. Long.MAX_VALUE if there is none
+    private long computeLookahead() {
+	long min = Long.MAX_VALUE;
+	Edge[] edges = this.topology.getEdges();
+	for(int i = 0; i < edges.length; i++) {
+	    Edge edge = edges[i];
+	    if(edge.getNodeA() >= this.nodes.length || edge.getNodeB() >= this.nodes.length ||
+	       this.partitionOf[edge.getNodeA()] == this.partitionOf[edge.getNodeB()]) {
+		continue;
+	    }
+	    min = Math.min(min, edge.getOptions().getDelay() * 1000);
+	}
+	if(min == 0 && this.lookahead != 0) {
+	    System.err.println("Warning: an edge between partitions has no delay. " +
+			       "Packets sent across it at the same time may be reordered");
+	}
+	return min;
+    }
+
+    // Run every partition up to end, then exchange the packets they sent each other
+    private void runWindow(long end) {
+	this.windowEnd = end;
+
+	int busy = 0;
+	LogicalProcess last = null;
+	for(int i = 0; i < this.processes.length; i++) {
+	    if(this.processes[i].nextEventTime() < end) {
+		busy++;
+		last = this.processes[i];
+	    }
+	}
+	if(busy == 1) {
+	    // Not worth handing over to another thread
+	    last.runUntil(end);
+	}else {
+	    try {
+		this.executor.invokeAll(this.tasks);
+	    }catch(InterruptedException e) {
+		System.err.println("Interrupted while running partitions in ParallelSimulator. Error: " + e);
+		this.stop();
+	    }
+	}
+
+	this.exchangePackets();
+	this.printOutput();
+    }
+
+    // Print what the nodes of all partitions printed, in the order a Simulator would have
+    private void printOutput() {
+	while(true) {
+	    PartitionSettings first = null;
+	    for(int i = 0; i < this.processes.length; i++) {
+		PartitionSettings output = this.processes[i].getPartitionSettings();
+		if(output.hasOutput() && (first == null || output.printsBefore(first))) {
+		    first = output;
+		}
+	    }
+	    if(first == null) {
+		return;
+	    }
+	    first.printNext();
+	}
+    }
+
+    // Hand the packets each partition sent to the others over to them
+    private void exchangePackets() {
+	for(int i = 0; i < this.processes.length; i++) {
+	    for(int j = 0; j < this.processes.length; j++) {
+		if(i != j) {
+		    this.processes[i].flushOutbox(this.processes[j]);
+		}
+	    }
+	}
+    }
+}
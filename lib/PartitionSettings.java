@@ -0,0 +1,298 @@
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+
+/**
+ * <pre>
+ * The Settings seen by the nodes of one partition of a ParallelSimulator.
+ *
+ * Everything but output is read from and written to the Settings of the ParallelSimulator.
+ * Output is not printed straight away, since partitions run side by side and would mix
+ * their lines in whatever order the threads get to them. Instead it is recorded together
+ * with the event that printed it. At the end of each window the ParallelSimulator prints
+ * the output of all partitions in the order a Simulator would have run those events.
+ *
+ * Events run by one partition are ordered by their time and key (see EventOrder), except
+ * that an event added for the current time may have a smaller key than the event that
+ * added it. A Simulator still runs it after that event. So output is merged by the time of
+ * its event and the largest key run at that time so far, which gives the Simulator's order.
+ * </pre>
+ */
+public class PartitionSettings extends Settings {
+
+    private static final int OUT = 0;
+    private static final int ERR = 1;
+    private static final int TRACING = 2;
+    private static final int END_TRACE = 3;
+
+    private final Settings shared;
+    private transient PrintStream out;
+    private transient PrintStream err;
+    private transient ArrayList records;  // output not printed yet, oldest first
+    private transient int next;           // index of the first record not printed yet
+    private long time;   // time of the event running, in microseconds
+    private long order;  // largest key of the events run at that time
+
+    /**
+     * Create the settings of a partition
+     * @param shared The settings of the ParallelSimulator
+     */
+    public PartitionSettings(Settings shared) {
+	this.shared = shared;
+	this.out = new PrintStream(new Recorder(OUT), true);
+	this.err = new PrintStream(new Recorder(ERR), true);
+	this.records = new ArrayList();
+	this.next = 0;
+	this.time = -1;
+	this.order = 0;
+    }
+
+    /**
+     * Called before each event the partition runs, so its output can be put in order
+     * @param event The event about to run
+     */
+    public void startEvent(Event event) {
+	if(event.timeToOccur() != this.time) {
+	    this.time = event.timeToOccur();
+	    this.order = event.order();
+	}else {
+	    this.order = Math.max(this.order, event.order());
+	}
+    }
+
+    /**
+     * @return True if some output has not been printed yet
+     */
+    public boolean hasOutput() {
+	return this.next < this.records.size();
+    }
+
+    /**
+     * @param other The settings of another partition, which has output
+     * @return True if the next output of this partition comes before that of the other one
+     */
+    public boolean printsBefore(PartitionSettings other) {
+	Record mine = (Record)this.records.get(this.next);
+	Record theirs = (Record)other.records.get(other.next);
+	if(mine.time != theirs.time) {
+	    return mine.time < theirs.time;
+	}
+	return mine.order < theirs.order;
+    }
+
+    /**
+     * Print the next output of this partition, and all the output that event printed after it
+     */
+    public void printNext() {
+	Record first = (Record)this.records.get(this.next);
+	while(this.next < this.records.size()) {
+	    Record record = (Record)this.records.get(this.next);
+	    if(record.time != first.time || record.order != first.order) {
+		break;
+	    }
+	    this.print(record);
+	    this.next++;
+	}
+	if(this.next == this.records.size()) {
+	    this.records.clear();
+	    this.next = 0;
+	}
+    }
+
+    public boolean isDebug() {
+	return this.shared.isDebug();
+    }
+
+    public void setDebug(boolean debug) {
+	this.shared.setDebug(debug);
+    }
+
+    public boolean isTrace() {
+	return this.shared.isTrace();
+    }
+
+    public void setTrace(boolean trace) {
+	this.shared.setTrace(trace);
+    }
+
+    public boolean isStatistics() {
+	return this.shared.isStatistics();
+    }
+
+    public void setStatistics(boolean statistics) {
+	this.shared.setStatistics(statistics);
+    }
+
+    public boolean isCongestionControl() {
+	return this.shared.isCongestionControl();
+    }
+
+    public void setCongestionControl(boolean congestionControl) {
+	this.shared.setCongestionControl(congestionControl);
+    }
+
+    public String getCongestionControlAlgorithm() {
+	return this.shared.getCongestionControlAlgorithm();
+    }
+
+    public void setCongestionControlAlgorithm(String congestionControlAlgorithm) {
+	this.shared.setCongestionControlAlgorithm(congestionControlAlgorithm);
+    }
+
+    public boolean isSelectiveAck() {
+	return this.shared.isSelectiveAck();
+    }
+
+    public void setSelectiveAck(boolean selectiveAck) {
+	this.shared.setSelectiveAck(selectiveAck);
+    }
+
+    public boolean isPacing() {
+	return this.shared.isPacing();
+    }
+
+    public void setPacing(boolean pacing) {
+	this.shared.setPacing(pacing);
+    }
+
+    public int getReadBuffSize() {
+	return this.shared.getReadBuffSize();
+    }
+
+    public void setReadBuffSize(int readBuffSize) {
+	this.shared.setReadBuffSize(readBuffSize);
+    }
+
+    public int getWriteBuffSize() {
+	return this.shared.getWriteBuffSize();
+    }
+
+    public void setWriteBuffSize(int writeBuffSize) {
+	this.shared.setWriteBuffSize(writeBuffSize);
+    }
+
+    public int getMtu() {
+	return this.shared.getMtu();
+    }
+
+    public void setMtu(int mtu) throws IllegalArgumentException {
+	this.shared.setMtu(mtu);
+    }
+
+    /**
+     * @return A stream that records output until the ParallelSimulator prints it
+     */
+    public PrintStream getOut() {
+	return this.out;
+    }
+
+    /**
+     * @return A stream that records errors and statistics until the ParallelSimulator prints them
+     */
+    public PrintStream getErr() {
+	return this.err;
+    }
+
+    public void setOutput(PrintStream out, PrintStream err) {
+	this.shared.setOutput(out, err);
+    }
+
+    /**
+     * Whether the last thing printed was a trace character depends on the other partitions too,
+     * so it is only known once output is printed. Use endTrace rather than this
+     * @return What the ParallelSimulator last printed
+     */
+    public boolean isTracing() {
+	return this.shared.isTracing();
+    }
+
+    public void setTracing(boolean tracing) {
+	this.record(TRACING).tracing = tracing;
+    }
+
+    public void endTrace() {
+	this.record(END_TRACE);
+    }
+
+    /******************** Private Functions ********************/
+
+    // The record that output of the given kind goes to for the event running
+    private Record record(int kind) {
+	if(!this.records.isEmpty()) {
+	    Record last = (Record)this.records.get(this.records.size() - 1);
+	    if(last.kind == kind && !last.flushed && last.time == this.time && last.order == this.order &&
+	       (kind == OUT || kind == ERR)) {
+		return last;
+	    }
+	}
+	Record record = new Record(this.time, this.order, kind);
+	this.records.add(record);
+	return record;
+    }
+
+    // Replay a record on the shared settings. Streams are flushed where the node flushed them
+    private void print(Record record) {
+	PrintStream stream = (record.kind == OUT) ? this.shared.getOut() : this.shared.getErr();
+	switch(record.kind) {
+	case OUT:
+	case ERR:
+	    stream.print(record.bytes.toString());
+	    if(record.flushed) {
+		stream.flush();
+	    }
+	    break;
+	case TRACING:
+	    this.shared.setTracing(record.tracing);
+	    break;
+	case END_TRACE:
+	    this.shared.endTrace();
+	    break;
+	}
+    }
+
+    // Output printed by one event, or a change to the trace state
+    private static class Record {
+	final long time;
+	final long order;
+	final int kind;
+	final ByteArrayOutputStream bytes;
+	boolean flushed;  // the stream was flushed after these bytes
+	boolean tracing;
+
+	Record(long time, long order, int kind) {
+	    this.time = time;
+	    this.order = order;
+	    this.kind = kind;
+	    this.bytes = new ByteArrayOutputStream();
+	    this.flushed = false;
+	    this.tracing = false;
+	}
+    }
+
+    // Adds what is written to it to the records
+    private class Recorder extends OutputStream {
+	private final int kind;
+
+	Recorder(int kind) {
+	    this.kind = kind;
+	}
+
+	public void write(int b) {
+	    record(this.kind).bytes.write(b);
+	}
+
+	public void write(byte[] b, int off, int len) {
+	    record(this.kind).bytes.write(b, off, len);
+	}
+
+	public void flush() {
+	    if(!records.isEmpty()) {
+		Record last = (Record)records.get(records.size() - 1);
+		if(last.kind == this.kind) {
+		    last.flushed = true;
+		}
+	    }
+	}
+    }
+}
@@ -0,0 +1,84 @@
+import java.io.Serializable;
+
+/**
+ * <pre>
+ * Small, fast pseudo random number generator (SplitMix64, as used by java.util.SplittableRandom).
+ *
+ * A simulation has one seed. Every node and every direction of every edge draws from its own
+ * stream derived from that seed, so a run can be repeated exactly by giving the same seed, and
+ * the streams are independent of the order in which nodes and edges use them. A stream is not
+ * thread safe. It should only be used by the node, or the sender on the edge, that owns it.
+ * </pre>
+ */
+public class RandomStream implements Serializable {
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final double DOUBLE_UNIT = 1.0 / (1L << 53);
+
+    private long state;
+
+    /**
+     * Create a stream
+     * @param seed The seed of the stream
+     */
+    public RandomStream(long seed) {
+	this.state = seed;
+    }
+
+    /**
+     * Create the stream with the given id derived from a simulation seed
+     * @param seed The seed of the simulation
+     * @param stream Identifies the stream. Different ids give independent streams
+     */
+    public RandomStream(long seed, long stream) {
+	this(mix(seed ^ mix(stream * GOLDEN_GAMMA)));
+    }
+
+    /**
+     * @param seed The seed of the simulation
+     * @param nodeAddr The address of the node
+     * @return The stream of the given node
+     */
+    public static RandomStream forNode(long seed, int nodeAddr) {
+	return new RandomStream(seed, nodeAddr);
+    }
+
+    /**
+     * @param seed The seed of the simulation
+     * @param src The node sending on the link
+     * @param dest The node receiving on the link
+     * @return The stream for packets sent from src to dest
+     */
+    public static RandomStream forLink(long seed, int src, int dest) {
+	return new RandomStream(seed, (1L << 32) | ((long)(src & 0xffff) << 16) | (dest & 0xffff));
+    }
+
+    /**
+     * @return A uniformly distributed long
+     */
+    public long nextLong() {
+	this.state += GOLDEN_GAMMA;
+	return mix(this.state);
+    }
+
+    /**
+     * @return A uniformly distributed double in [0, 1)
+     */
+    public double nextDouble() {
+	return (this.nextLong() >>> 11) * DOUBLE_UNIT;
+    }
+
+    /**
+     * @param bound The upper bound. Must be positive
+     * @return A uniformly distributed int in [0, bound)
+     */
+    public int nextInt(int bound) {
+	return (int)(((this.nextLong() >>> 32) * bound) >>> 32);
+    }
+
+    private static long mix(long z) {
+	z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+	z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+	return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,521 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <pre>
+ * Runs fishnet scenarios headless, several times each with fixed seeds, and reports how long they
+ * took and what they achieved.
+ * Usage:  java ScenarioBench [options] [scenario[:num nodes] ...]
+ *
+ *         A scenario is a fishnet file that also holds its topology, like the ones in scripts/. Without
+ *         any, every scripts/*.fish is run. The number of nodes is the highest address the file uses
+ *         plus one, unless it is given after a colon.
+ *
+ *         Run i of every scenario uses seed + i, so runs repeat exactly and the simulated results can be
+ *         compared from build to build. For each scenario the report has the median, minimum and maximum
+ *         over the runs of:
+ *             wall_ms          wall clock time of the run
+ *             events           events run
+ *             events_per_sec   events run per second of wall clock time
+ *             sim_ms           simulated time
+ *             packets_sent     packets sent, dropped and lost, as counted by the Manager
+ *             packets_dropped
+ *             packets_lost
+ *             bps.N            simulated goodput of the Nth transfer to complete, in bytes per second
+ *             alloc_bytes      bytes allocated by the run. Only on JVMs that count them
+ *             gc_count         garbage collections during the run, and the time they took
+ *             gc_ms
+ *
+ *         The report is tab separated, one line per scenario and metric. Given a baseline report made
+ *         the same way, each metric is compared with it. Simulated results (events, packets, goodput)
+ *         are flagged if they changed at all. Wall time, throughput, allocation and GC are flagged if
+ *         they got worse by more than the threshold, except for the wall time and throughput of scenarios
+ *         that took under 20 milliseconds, which are too short to time. The comparison is printed to
+ *         standard error and the exit status is 1 if anything was flagged.
+ *
+ *         Options:
+ *             -runs <n>                    measured runs of each scenario. Default is 5
+ *             -warmup <n>                  runs of each scenario before those measured, to warm up the JVM. Default is 1
+ *             -seed <long>                 seed of the first run. Default is 1
+ *             -queue <list|heap|calendar>  event queue used to schedule events. Default is heap
+ *             -objects                     hand transport segments to nodes as objects
+ *             -partitions <n>              simulate on n threads with a ParallelSimulator. Each partition
+ *                                          drives its own timers, and lists its own transfers, so events
+ *                                          and the numbering of bps.N differ from a Simulator's. Compare
+ *                                          with a baseline made with the same number of partitions. Only
+ *                                          the allocation of the thread that starts the simulation counts
+ *             -out <file>                  write the report to a file instead of standard output
+ *             -baseline <file>             compare with an earlier report
+ *             -threshold <percent>         how much worse a timing must be to be flagged. Default is 10
+ * </pre>
+ */
+public class ScenarioBench {
+
+    private static final String SCRIPTS = "scripts";
+    private static final String HEADER = "scenario\tmetric\tmedian\tmin\tmax";
+
+    // Metrics that are the same on every run with the same seed
+    private static final String[] SIMULATED = { "events", "sim_ms", "packets_sent", "packets_dropped", "packets_lost" };
+    // Metrics that are better when higher
+    private static final String[] HIGHER_IS_BETTER = { "events_per_sec" };
+    // Metrics of wall clock time. Not compared for scenarios that ran faster than MIN_TIMED_MS
+    private static final String[] TIMED = { "wall_ms", "events_per_sec" };
+    private static final long MIN_TIMED_MS = 20;
+
+    private static void usage() {
+	System.out.println("Usage:  java ScenarioBench [options] [scenario[:num nodes] ...]\n\n" +
+			   "Runs each scenario headless with fixed seeds and reports time, events, packets, goodput and GC.\n" +
+			   "Without scenarios, runs every " + SCRIPTS + "/*.fish.\n\n" +
+			   "Options:\n" +
+			   "    -runs <n>                    measured runs of each scenario. Default is 5\n" +
+			   "    -warmup <n>                  runs of each scenario before those measured. Default is 1\n" +
+			   "    -seed <long>                 seed of the first run. Default is 1\n" +
+			   "    -queue <list|heap|calendar>  event queue used to schedule events. Default is heap\n" +
+			   "    -objects                     hand transport segments to nodes as objects\n" +
+			   "    -partitions <n>              simulate on n threads with a ParallelSimulator\n" +
+			   "    -out <file>                  write the report to a file instead of standard output\n" +
+			   "    -baseline <file>             compare with an earlier report\n" +
+			   "    -threshold <percent>         how much worse a timing must be to be flagged. Default is 10");
+    }
+
+    /**
+     * The main method. Entry point to run the benchmark
+     */
+    public static void main(String[] args) {
+	int runs = 5;
+	int warmup = 1;
+	long seed = 1;
+	String eventQueue = SortedEventQueue.DEFAULT;
+	boolean passObjects = false;
+	int partitions = 0;
+	String outFile = null;
+	String baselineFile = null;
+	double threshold = 10;
+
+	int numOptions = 0;
+	try {
+	    while(numOptions < args.length && args[numOptions].startsWith("-")) {
+		String option = args[numOptions];
+		if(option.equals("-objects")) {
+		    passObjects = true;
+		    numOptions++;
+		    continue;
+		}
+		if(numOptions + 1 >= args.length) {
+		    System.err.println("Missing value of option: " + option);
+		    usage();
+		    System.exit(2);
+		}
+		String value = args[numOptions + 1];
+		if(option.equals("-runs")) {
+		    runs = Integer.parseInt(value);
+		}else if(option.equals("-warmup")) {
+		    warmup = Integer.parseInt(value);
+		}else if(option.equals("-seed")) {
+		    seed = Long.parseLong(value);
+		}else if(option.equals("-queue")) {
+		    eventQueue = value;
+		}else if(option.equals("-partitions")) {
+		    partitions = Integer.parseInt(value);
+		}else if(option.equals("-out")) {
+		    outFile = value;
+		}else if(option.equals("-baseline")) {
+		    baselineFile = value;
+		}else if(option.equals("-threshold")) {
+		    threshold = Double.parseDouble(value);
+		}else {
+		    System.err.println("Unknown option: " + option);
+		    usage();
+		    System.exit(2);
+		}
+		numOptions += 2;
+	    }
+	}catch(NumberFormatException e) {
+	    System.err.println("Option value is not a number. Exception: " + e);
+	    usage();
+	    System.exit(2);
+	}
+	if(runs < 1) {
+	    System.err.println("There must be at least one run");
+	    System.exit(2);
+	}
+
+	List scenarios = new ArrayList();
+	for(int i = numOptions; i < args.length; i++) {
+	    scenarios.add(args[i]);
+	}
+	if(scenarios.isEmpty()) {
+	    scenarios = defaultScenarios();
+	}
+
+	try {
+	    // scenario -> metric -> long[] with the value of each run
+	    Map results = new LinkedHashMap();
+	    for(int i = 0; i < scenarios.size(); i++) {
+		String scenario = (String)scenarios.get(i);
+		System.err.println("Running " + scenario);
+		results.put(fileOf(scenario), runScenario(scenario, runs, warmup, seed, eventQueue, passObjects, partitions));
+	    }
+
+	    PrintStream out = System.out;
+	    if(outFile != null) {
+		out = new PrintStream(outFile);
+	    }
+	    writeReport(out, results, runs, seed, partitions);
+	    if(out != System.out) {
+		out.close();
+	    }
+
+	    if(baselineFile != null) {
+		int flagged = compare(readReport(baselineFile), results, threshold);
+		System.err.println(flagged + " metric(s) flagged against " + baselineFile);
+		if(flagged > 0) {
+		    System.exit(1);
+		}
+	    }
+	}catch(Exception e) {
+	    System.err.println("Benchmark failed. Exception: " + e);
+	    e.printStackTrace();
+	    System.exit(2);
+	}
+    }
+
+    /******************** Private Functions ********************/
+
+    // Every fishnet file in the scripts directory, by name
+    private static List defaultScenarios() {
+	List scenarios = new ArrayList();
+	String[] names = new File(SCRIPTS).list();
+	if(names == null) {
+	    return scenarios;
+	}
+	Arrays.sort(names);
+	for(int i = 0; i < names.length; i++) {
+	    if(names[i].endsWith(".fish")) {
+		scenarios.add(SCRIPTS + File.separator + names[i]);
+	    }
+	}
+	return scenarios;
+    }
+
+    private static String fileOf(String scenario) {
+	int colon = scenario.lastIndexOf(':');
+	return (colon < 0) ? scenario : scenario.substring(0, colon);
+    }
+
+    private static int numNodesOf(String scenario) throws IOException {
+	int colon = scenario.lastIndexOf(':');
+	if(colon >= 0) {
+	    return Integer.parseInt(scenario.substring(colon + 1));
+	}
+	return inferNumNodes(scenario);
+    }
+
+    // The highest address used by an edge or a node command, plus one
+    private static int inferNumNodes(String filename) throws IOException {
+	int highest = 0;
+	BufferedReader reader = new BufferedReader(new FileReader(filename));
+	try {
+	    String line;
+	    while((line = reader.readLine()) != null) {
+		String[] words = line.trim().split("\\s+");
+		try {
+		    if(words[0].equals("edge") && words.length > 2) {
+			highest = Math.max(highest, Math.max(Integer.parseInt(words[1]), Integer.parseInt(words[2])));
+		    }else if(words[0].length() > 0 && Character.isDigit(words[0].charAt(0))) {
+			highest = Math.max(highest, Integer.parseInt(words[0]));
+		    }
+		}catch(NumberFormatException e) {
+		    // not a command that names a node
+		}
+	    }
+	}finally {
+	    reader.close();
+	}
+	return highest + 1;
+    }
+
+    // Runs the warm-up runs, then the measured ones. Returns metric -> long[] of the measured runs
+    private static Map runScenario(String scenario, int runs, int warmup, long seed,
+				   String eventQueue, boolean passObjects, int partitions) throws Exception {
+	String filename = fileOf(scenario);
+	int numNodes = numNodesOf(scenario);
+	for(int i = 0; i < warmup; i++) {
+	    runOnce(filename, numNodes, seed + i, eventQueue, passObjects, partitions);
+	}
+
+	Map metrics = new LinkedHashMap();
+	for(int i = 0; i < runs; i++) {
+	    Map run = runOnce(filename, numNodes, seed + i, eventQueue, passObjects, partitions);
+	    for(Iterator iter = run.entrySet().iterator(); iter.hasNext(); ) {
+		Map.Entry entry = (Map.Entry)iter.next();
+		long[] values = (long[])metrics.get(entry.getKey());
+		if(values == null) {
+		    values = new long[runs];
+		    Arrays.fill(values, -1);
+		    metrics.put(entry.getKey(), values);
+		}
+		values[i] = ((Long)entry.getValue()).longValue();
+	    }
+	}
+	return metrics;
+    }
+
+    // One headless simulation. Returns metric -> Long
+    private static Map runOnce(String filename, int numNodes, long seed, String eventQueue, boolean passObjects,
+			       int partitions) throws FileNotFoundException {
+	PrintStream discard = new PrintStream(new OutputStream() {
+		public void write(int b) {}
+		public void write(byte[] b, int off, int len) {}
+	    });
+
+	// The echo command prints straight to System.out, which the report may be going to
+	PrintStream stdout = System.out;
+	System.setOut(discard);
+	try {
+	    return runSimulation(discard, filename, numNodes, seed, eventQueue, passObjects, partitions);
+	}finally {
+	    System.setOut(stdout);
+	}
+    }
+
+    // A ParallelSimulator if partitions > 0, else a headless Simulator
+    private static Map runSimulation(PrintStream discard, String filename, int numNodes, long seed,
+				     String eventQueue, boolean passObjects, int partitions) throws FileNotFoundException {
+	Manager simulator;
+	if(partitions > 0) {
+	    simulator = new ParallelSimulator(numNodes, filename, partitions, eventQueue);
+	}else {
+	    simulator = new Simulator(numNodes, filename, eventQueue, true);
+	}
+	simulator.getSettings().setOutput(discard, discard);
+	simulator.setExitOnStop(false);
+	simulator.setSeed(seed);
+	simulator.setPassObjects(passObjects);
+
+	System.gc();
+	long gcCount = gcCount();
+	long gcMillis = gcMillis();
+	long allocated = allocatedBytes();
+	long startNanos = System.nanoTime();
+
+	simulator.start();
+	if(!simulator.isStopped()) {
+	    simulator.stop();
+	}
+
+	long wallNanos = System.nanoTime() - startNanos;
+	long allocatedAfter = allocatedBytes();
+
+	Map metrics = new LinkedHashMap();
+	metrics.put("wall_ms", new Long(wallNanos / 1000000));
+	metrics.put("events", new Long(simulator.getEventsRun()));
+	metrics.put("events_per_sec", new Long(wallNanos > 0 ? simulator.getEventsRun() * 1000000000L / wallNanos : 0));
+	metrics.put("sim_ms", new Long(simulator.now()));
+	metrics.put("packets_sent", new Long(simulator.getPacketsSent()));
+	metrics.put("packets_dropped", new Long(simulator.getPacketsDropped()));
+	metrics.put("packets_lost", new Long(simulator.getPacketsLost()));
+	List transfers = simulator.getTransfers();
+	for(int i = 0; i < transfers.size(); i++) {
+	    metrics.put("bps." + i, new Long(Math.round(((TransferRecord)transfers.get(i)).getBps())));
+	}
+	if(allocated >= 0 && allocatedAfter >= 0) {
+	    metrics.put("alloc_bytes", new Long(allocatedAfter - allocated));
+	}
+	metrics.put("gc_count", new Long(gcCount() - gcCount));
+	metrics.put("gc_ms", new Long(gcMillis() - gcMillis));
+	return metrics;
+    }
+
+    private static long gcCount() {
+	long total = 0;
+	List beans = ManagementFactory.getGarbageCollectorMXBeans();
+	for(int i = 0; i < beans.size(); i++) {
+	    total += Math.max(0, ((GarbageCollectorMXBean)beans.get(i)).getCollectionCount());
+	}
+	return total;
+    }
+
+    private static long gcMillis() {
+	long total = 0;
+	List beans = ManagementFactory.getGarbageCollectorMXBeans();
+	for(int i = 0; i < beans.size(); i++) {
+	    total += Math.max(0, ((GarbageCollectorMXBean)beans.get(i)).getCollectionTime());
+	}
+	return total;
+    }
+
+    // Bytes allocated so far by this thread, which runs the simulation. -1 if the JVM does not count them
+    private static long allocatedBytes() {
+	ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+	if(!(bean instanceof com.sun.management.ThreadMXBean)) {
+	    return -1;
+	}
+	com.sun.management.ThreadMXBean counting = (com.sun.management.ThreadMXBean)bean;
+	if(!counting.isThreadAllocatedMemorySupported() || !counting.isThreadAllocatedMemoryEnabled()) {
+	    return -1;
+	}
+	return counting.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static void writeReport(PrintStream out, Map results, int runs, long seed, int partitions) {
+	out.println("# ScenarioBench, " + runs + " run(s) of each scenario with seeds " + seed + " to " + (seed + runs - 1) +
+		    ((partitions > 0) ? ", on " + partitions + " partitions" : ""));
+	out.println(HEADER);
+	for(Iterator scenarios = results.entrySet().iterator(); scenarios.hasNext(); ) {
+	    Map.Entry scenario = (Map.Entry)scenarios.next();
+	    Map metrics = (Map)scenario.getValue();
+	    for(Iterator iter = metrics.entrySet().iterator(); iter.hasNext(); ) {
+		Map.Entry metric = (Map.Entry)iter.next();
+		long[] values = (long[])metric.getValue();
+		out.println(scenario.getKey() + "\t" + metric.getKey() + "\t" + median(values) + "\t" +
+			    min(values) + "\t" + max(values));
+	    }
+	}
+    }
+
+    // Reads a report. Returns "scenario\tmetric" -> Long median
+    private static Map readReport(String filename) throws IOException {
+	Map medians = new HashMap();
+	BufferedReader reader = new BufferedReader(new FileReader(filename));
+	try {
+	    String line;
+	    while((line = reader.readLine()) != null) {
+		if(line.startsWith("#") || line.equals(HEADER) || line.trim().length() == 0) {
+		    continue;
+		}
+		String[] fields = line.split("\t");
+		if(fields.length < 3) {
+		    throw new IOException("Malformed line in " + filename + ": " + line);
+		}
+		medians.put(fields[0] + "\t" + fields[1], new Long(Long.parseLong(fields[2])));
+	    }
+	}finally {
+	    reader.close();
+	}
+	return medians;
+    }
+
+    // Prints how each median compares with the baseline. Returns the number flagged
+    private static int compare(Map baseline, Map results, double threshold) {
+	int flagged = 0;
+	Set compared = new HashSet();
+	System.err.println(HEADER.replaceAll("\tmin\tmax", "") + "\tbaseline\tchange");
+	for(Iterator scenarios = results.entrySet().iterator(); scenarios.hasNext(); ) {
+	    Map.Entry scenario = (Map.Entry)scenarios.next();
+	    Map metrics = (Map)scenario.getValue();
+	    for(Iterator iter = metrics.entrySet().iterator(); iter.hasNext(); ) {
+		Map.Entry metric = (Map.Entry)iter.next();
+		String name = (String)metric.getKey();
+		String key = scenario.getKey() + "\t" + name;
+		long current = median((long[])metric.getValue());
+		Long base = (Long)baseline.get(key);
+		compared.add(key);
+		if(base == null) {
+		    System.err.println(key + "\t" + current + "\t-\tnew");
+		    continue;
+		}
+		long before = base.longValue();
+		String change = (before == 0) ? "" : percent(current, before);
+		String flag = "";
+		if(isSimulated(name)) {
+		    if(current != before) {
+			flag = "\tCHANGED";
+		    }
+		}else if(before > 0 && (!contains(TIMED, name) || isTimed(baseline, (String)scenario.getKey()))) {
+		    double worse = (contains(HIGHER_IS_BETTER, name) ? before - current : current - before) * 100.0 / before;
+		    if(worse > threshold) {
+			flag = "\tREGRESSION";
+		    }
+		}
+		if(flag.length() > 0) {
+		    flagged++;
+		}
+		System.err.println(key + "\t" + current + "\t" + before + "\t" + change + flag);
+	    }
+	}
+	for(Iterator iter = baseline.keySet().iterator(); iter.hasNext(); ) {
+	    Object key = iter.next();
+	    if(!compared.contains(key)) {
+		System.err.println(key + "\t-\t" + baseline.get(key) + "\tmissing\tCHANGED");
+		flagged++;
+	    }
+	}
+	return flagged;
+    }
+
+    // Whether a scenario took long enough in the baseline for its wall clock time to be meaningful
+    private static boolean isTimed(Map baseline, String scenario) {
+	Long wall = (Long)baseline.get(scenario + "\twall_ms");
+	return wall == null || wall.longValue() >= MIN_TIMED_MS;
+    }
+
+    private static boolean isSimulated(String metric) {
+	return contains(SIMULATED, metric) || metric.startsWith("bps.");
+    }
+
+    private static boolean contains(String[] names, String name) {
+	for(int i = 0; i < names.length; i++) {
+	    if(names[i].equals(name)) {
+		return true;
+	    }
+	}
+	return false;
+    }
+
+    private static String percent(long current, long before) {
+	double change = (current - before) * 100.0 / before;
+	return ((change >= 0) ? "+" : "") + Math.round(change * 10) / 10.0 + "%";
+    }
+
+    // Runs that did not report a metric, such as a transfer that did not complete, hold -1 and are left out
+    private static long[] reported(long[] values) {
+	int count = 0;
+	for(int i = 0; i < values.length; i++) {
+	    if(values[i] >= 0) {
+		count++;
+	    }
+	}
+	long[] result = new long[count];
+	count = 0;
+	for(int i = 0; i < values.length; i++) {
+	    if(values[i] >= 0) {
+		result[count++] = values[i];
+	    }
+	}
+	Arrays.sort(result);
+	return result;
+    }
+
+    private static long median(long[] values) {
+	long[] sorted = reported(values);
+	return (sorted.length == 0) ? -1 : sorted[sorted.length / 2];
+    }
+
+    private static long min(long[] values) {
+	long[] sorted = reported(values);
+	return (sorted.length == 0) ? -1 : sorted[0];
+    }
+
+    private static long max(long[] values) {
+	long[] sorted = reported(values);
+	return (sorted.length == 0) ? -1 : sorted[sorted.length - 1];
+    }
+}
@@ -0,0 +1,262 @@
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.io.ObjectInputStream;
+import java.io.IOException;
+
+/**
+ * <pre>
+ * Settings shared by all the nodes run by a Manager: what they print, whether TCP does
+ * congestion control and with which algorithm, whether new TCP sockets use selective
+ * acknowledgements and pace what they send, the default sizes of TCP buffers and the MTU.
+ *
+ * Each Manager has its own, so several simulations can run side by side in one JVM
+ * without changing each other's settings. Nodes change them with the debug, trace,
+ * statistics, congestion-control, sack and pacing commands.
+ * </pre>
+ */
+public class Settings implements Serializable {
+
+    public static final int DEFAULT_READ_BUFF_SIZE = 10000;
+    public static final int DEFAULT_WRITE_BUFF_SIZE = 10000;
+
+    private boolean debug;
+    private boolean trace;
+    private boolean statistics;
+    private boolean congestionControl;
+    private String congestionControlAlgorithm;
+    private boolean selectiveAck;
+    private boolean pacing;
+    private int readBuffSize;
+    private int writeBuffSize;
+    private int mtu;
+    private transient PrintStream out;   // System.out and System.err again after a restore
+    private transient PrintStream err;
+    private boolean tracing;   // true if the last thing printed was a trace character
+
+    /**
+     * Create settings with the defaults: no debug output, trace and statistics on,
+     * congestion control on with CongestionController.DEFAULT, go-back-N retransmission,
+     * no pacing, an MTU of Packet.MAX_PACKET_SIZE, and output to System.out and System.err
+     */
+    public Settings() {
+	this.debug = false;
+	this.trace = true;
+	this.statistics = true;
+	this.congestionControl = true;
+	this.congestionControlAlgorithm = CongestionController.DEFAULT;
+	this.selectiveAck = false;
+	this.pacing = false;
+	this.readBuffSize = DEFAULT_READ_BUFF_SIZE;
+	this.writeBuffSize = DEFAULT_WRITE_BUFF_SIZE;
+	this.mtu = Packet.MAX_PACKET_SIZE;
+	this.out = System.out;
+	this.err = System.err;
+	this.tracing = false;
+    }
+
+    /**
+     * @return True if debug messages should be printed
+     */
+    public boolean isDebug() {
+	return this.debug;
+    }
+
+    /**
+     * @param debug True if debug messages should be printed
+     */
+    public void setDebug(boolean debug) {
+	this.debug = debug;
+    }
+
+    /**
+     * @return True if one character should be printed for each segment sent and received
+     */
+    public boolean isTrace() {
+	return this.trace;
+    }
+
+    /**
+     * @param trace True if one character should be printed for each segment sent and received
+     */
+    public void setTrace(boolean trace) {
+	this.trace = trace;
+    }
+
+    /**
+     * @return True if statistics about transfers should be printed
+     */
+    public boolean isStatistics() {
+	return this.statistics;
+    }
+
+    /**
+     * @param statistics True if statistics about transfers should be printed
+     */
+    public void setStatistics(boolean statistics) {
+	this.statistics = statistics;
+    }
+
+    /**
+     * @return True if TCP should do congestion control
+     */
+    public boolean isCongestionControl() {
+	return this.congestionControl;
+    }
+
+    /**
+     * @param congestionControl True if TCP should do congestion control
+     */
+    public void setCongestionControl(boolean congestionControl) {
+	this.congestionControl = congestionControl;
+    }
+
+    /**
+     * @return The name of the congestion control algorithm new TCP sockets use, one of those in
+     *         CongestionController
+     */
+    public String getCongestionControlAlgorithm() {
+	return this.congestionControlAlgorithm;
+    }
+
+    /**
+     * @param congestionControlAlgorithm The name of the congestion control algorithm new TCP
+     *        sockets use, one of those in CongestionController
+     */
+    public void setCongestionControlAlgorithm(String congestionControlAlgorithm) {
+	this.congestionControlAlgorithm = congestionControlAlgorithm;
+    }
+
+    /**
+     * @return True if new TCP sockets should use selective acknowledgements and selective repeat
+     *         rather than go-back-N
+     */
+    public boolean isSelectiveAck() {
+	return this.selectiveAck;
+    }
+
+    /**
+     * @param selectiveAck True if new TCP sockets should use selective acknowledgements
+     */
+    public void setSelectiveAck(boolean selectiveAck) {
+	this.selectiveAck = selectiveAck;
+    }
+
+    /**
+     * @return True if new TCP sockets should spread their segments over a round trip rather than
+     *         send each window at once
+     */
+    public boolean isPacing() {
+	return this.pacing;
+    }
+
+    /**
+     * @param pacing True if new TCP sockets should pace what they send
+     */
+    public void setPacing(boolean pacing) {
+	this.pacing = pacing;
+    }
+
+    /**
+     * @return The size in bytes of the read buffer of new TCP sockets
+     */
+    public int getReadBuffSize() {
+	return this.readBuffSize;
+    }
+
+    /**
+     * @param readBuffSize The size in bytes of the read buffer of new TCP sockets
+     */
+    public void setReadBuffSize(int readBuffSize) {
+	this.readBuffSize = readBuffSize;
+    }
+
+    /**
+     * @return The size in bytes of the write buffer of new TCP sockets
+     */
+    public int getWriteBuffSize() {
+	return this.writeBuffSize;
+    }
+
+    /**
+     * @param writeBuffSize The size in bytes of the write buffer of new TCP sockets
+     */
+    public void setWriteBuffSize(int writeBuffSize) {
+	this.writeBuffSize = writeBuffSize;
+    }
+
+    /**
+     * @return The largest packet, in bytes, that nodes may send. TCP sizes its segments to fit
+     */
+    public int getMtu() {
+	return this.mtu;
+    }
+
+    /**
+     * Set the largest packet that nodes may send. Every node of a run must use the same MTU,
+     * since a node drops packets bigger than its own
+     * @param mtu The largest packet in bytes
+     * @throws IllegalArgumentException If mtu leaves no room for a TCP payload or is more than
+     *         Packet.MAX_MTU
+     */
+    public void setMtu(int mtu) throws IllegalArgumentException {
+	if(mtu < Packet.HEADER_SIZE + Transport.HEADER_SIZE + 1 || mtu > Packet.MAX_MTU) {
+	    throw new IllegalArgumentException("MTU must be from " + (Packet.HEADER_SIZE + Transport.HEADER_SIZE + 1) +
+					       " to " + Packet.MAX_MTU + ". MTU = " + mtu);
+	}
+	this.mtu = mtu;
+    }
+
+    /**
+     * @return The stream that nodes print their output to
+     */
+    public PrintStream getOut() {
+	return this.out;
+    }
+
+    /**
+     * @return The stream that nodes and the Manager print errors and statistics to
+     */
+    public PrintStream getErr() {
+	return this.err;
+    }
+
+    /**
+     * Sets the streams that output is printed to
+     * @param out The stream for output
+     * @param err The stream for errors and statistics
+     */
+    public void setOutput(PrintStream out, PrintStream err) {
+	this.out = out;
+	this.err = err;
+    }
+
+    /**
+     * @return True if the last thing printed was a trace character, so a new line is needed first
+     */
+    public boolean isTracing() {
+	return this.tracing;
+    }
+
+    /**
+     * @param tracing True if the last thing printed was a trace character
+     */
+    public void setTracing(boolean tracing) {
+	this.tracing = tracing;
+    }
+
+    /**
+     * Ends a line of trace characters, if the last thing printed was one, so a message can be printed
+     */
+    public void endTrace() {
+	if(this.tracing) {
+	    this.out.print("\n");
+	    this.tracing = false;
+	}
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+	in.defaultReadObject();
+	this.out = System.out;
+	this.err = System.err;
+    }
+}
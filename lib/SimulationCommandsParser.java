@@ -5,14 +5,14 @@
  * </pre>   
  */
 public class SimulationCommandsParser extends CommandsParser {    
-    private Simulator simulator;
+    private Manager simulator;
 
     /**
      * Create a new parser
      * @param simulator The simulator that should be used to get messages to nodes, and be informaed about topology changes
      */
-    public SimulationCommandsParser(Simulator simulator) {
-	super();
+    public SimulationCommandsParser(Manager simulator) {
+	super(simulator.getTopology());
 	this.simulator = simulator;
     }
 
@@ -37,6 +37,22 @@ public class SimulationCommandsParser extends CommandsParser {
 	}
     }
 
+    protected void setSeed(long seed) {
+	simulator.setSeed(seed);
+    }
+
+    protected void snapshot(String filename) {
+	simulator.snapshot(filename);
+    }
+
+    protected void setProfiling(boolean profiling) {
+	simulator.setProfiling(profiling);
+    }
+
+    protected void printProfile() {
+	simulator.printProfile(simulator.getSettings().getOut());
+    }
+
     protected void exit(String[] cmd) {
 	if(cmd[0].equals("exit")) {
 	    simulator.stop();
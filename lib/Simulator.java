@@ -2,11 +2,33 @@ import java.io.InputStreamReader;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.FileNotFoundException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 import java.lang.reflect.Method;
 
 /**
  * <pre>
  * Manages a simulation. All nodes are instantiated in process.
+ *
+ * A headless simulation does not read the keyboard. It runs events back to back, ignoring the
+ * timescale, reads the fishnet file as simulated time reaches each of its time commands, and
+ * stops once no events or commands are left.
+ *
+ * A simulation can be saved to a file with the snapshot command and restored from it later,
+ * so that many runs which share a long warm-up only simulate it once. The snapshot holds the
+ * event queue, the nodes and their sockets, the links and all random streams. A restored
+ * simulation carries on reading the topology file from where it was. Its fishnet file can
+ * be carried on too, or replaced with another one to fork the run.
+ *
+ * Events with the same time are ordered the way a ParallelSimulator orders them, with the
+ * keys of an EventOrder, so both give the same results. That is not the order in which
+ * they were added, which a SortedEventQueue otherwise keeps: events of different nodes go
+ * by address, and the events of one node in the order it added them. Commands from the
+ * topology and fishnet files run before the events of the time they are due at.
  * </pre>
  */
 public class Simulator extends Manager {
@@ -16,7 +38,13 @@ public class Simulator extends Manager {
     private double timescale;
     private Node[] nodes;
     private SimulationCommandsParser topoFileParser;
-    private IOThread ioThread;
+    private transient IOThread ioThread;  // null if headless
+    private PacketDeliveryPool deliveries;
+    private EventOrder order;  // keys for events with the same time
+    private boolean started;
+    private long deferParsingTill;  // fishnet file is not read again until this time, in microseconds
+    private String pendingSnapshot;  // file to save the simulation to once the current event has run
+    private boolean passObjects;  // hand transport segments to nodes without packing them
 
     /**
      * Creates a new simulation
@@ -26,7 +54,35 @@ public class Simulator extends Manager {
      * @throws FileNotFoundException If the given topology file cannot be found
      */
     public Simulator(int numNodes, String topoFile) throws IllegalArgumentException, FileNotFoundException {
-	super(0);
+	this(numNodes, topoFile, SortedEventQueue.DEFAULT);
+    }
+
+    /**
+     * Creates a new simulation
+     * @param numNodes The number of nodes to simulate
+     * @param topoFile The name of the topology file to use
+     * @param eventQueue The kind of event queue to schedule events with. See SortedEventQueue.newQueue
+     * @throws IllegalArgumentException If the number of nodes to simulate is < 0 or > MAX_NODES_TO_SIMULATE,
+     *                                  or the kind of event queue is not recognized
+     * @throws FileNotFoundException If the given topology file cannot be found
+     */
+    public Simulator(int numNodes, String topoFile, String eventQueue) throws IllegalArgumentException, FileNotFoundException {
+	this(numNodes, topoFile, eventQueue, false);
+    }
+
+    /**
+     * Creates a new simulation
+     * @param numNodes The number of nodes to simulate
+     * @param topoFile The name of the topology file to use
+     * @param eventQueue The kind of event queue to schedule events with. See SortedEventQueue.newQueue
+     * @param headless True to run without keyboard input, as fast as possible
+     * @throws IllegalArgumentException If the number of nodes to simulate is < 0 or > MAX_NODES_TO_SIMULATE,
+     *                                  or the kind of event queue is not recognized
+     * @throws FileNotFoundException If the given topology file cannot be found
+     */
+    public Simulator(int numNodes, String topoFile, String eventQueue, boolean headless)
+	throws IllegalArgumentException, FileNotFoundException {
+	super(0, eventQueue);
 	super.setParser(new SimulationCommandsParser(this));
 	if(numNodes <= 0 || numNodes > MAX_NODES_TO_SIMULATE) {
 	    throw new IllegalArgumentException("Invalid number of nodes given to simulate. Nodes given: " + numNodes);
@@ -36,6 +92,13 @@ public class Simulator extends Manager {
 
 	this.timescale = 1.0;
 
+	this.deliveries = new PacketDeliveryPool();
+	this.order = new EventOrder(numNodes);
+	this.started = false;
+	this.deferParsingTill = 0;
+	this.pendingSnapshot = null;
+	this.passObjects = false;
+
 	this.nodes = new Node[numNodes];
 	for(int i = 0; i < numNodes; i++) {
 	    this.nodes[i] = new Node(this, i);
@@ -45,28 +108,44 @@ public class Simulator extends Manager {
 
 	long deferTill = this.topoFileParser.parseFile(topoFile, this.now);
 
-	this.addEvent(deferTill, "parseRestOfTopoFile", this, null, null);
-	this.ioThread = new IOThread();
-	this.ioThread.start();
+	this.scheduleTopoFileParsing(deferTill);
+	this.ioThread = null;
+	if(!headless) {
+	    this.ioThread = new IOThread();
+	    this.ioThread.start();
+	}
     }
 
     /**
      * Starts the simulation
      */
     public void start() {
-	// Start all the nodes
-	for(int i = 0; i < this.nodes.length; i++) {
-	    this.nodes[i].start();
+	// A restored simulation has already started its nodes
+	if(!this.started) {
+	    this.started = true;
+
+	    // Start all the nodes
+	    for(int i = 0; i < this.nodes.length; i++) {
+		this.nodes[i].start();
+	    }
+
+	    this.now = 1;
 	}
 
-	this.now = 1;
+	if(this.ioThread == null) {
+	    this.runHeadless();
+	    return;
+	}
 
 	Event nextEvent;
 	long waitTime; // time in microseconds
-	long deferParsingTill = 0;
-	while(true) {
+	while(!this.isStopped()) {
 	    long deltaTime = 0;
-	    deferParsingTill = this.readFishFile(deferParsingTill);
+	    this.deferParsingTill = this.readFishFile(this.deferParsingTill);
+	    if(this.isStopped()) {
+		return;
+	    }
+	    this.writePendingSnapshot();
 
 	    nextEvent = null;
 	    waitTime = -1;  // wait indefinitely
@@ -76,8 +155,8 @@ public class Simulator extends Manager {
 
 		waitTime = 0; // Don't wait for user input. If delta time > 0 then will get reset below
 
-	    }else if(deferParsingTill >= 0) {
-		deltaTime = deferParsingTill - this.now;
+	    }else if(this.deferParsingTill >= 0) {
+		deltaTime = this.deferParsingTill - this.now;
 		waitTime = 0;
 	    }
 
@@ -99,17 +178,7 @@ public class Simulator extends Manager {
 		// Have waited appropriate amount of real time, so can fast-forward now
 		this.now = Math.max(this.now, deltaTime + this.now);
 
-		// Run all pending events
-		while((nextEvent != null) && (nextEvent.timeToOccur() <= this.now)) {
-		    this.sortedEvents.removeNextEvent();
-		    try {
-			nextEvent.callback().invoke();
-		    }catch(Exception e) {
-			System.err.println("Exception while trying to invoke method in Simulator. Error: " + e);
-			e.printStackTrace();
-		    }
-		    nextEvent = this.sortedEvents.getNextEvent();
-		}
+		this.runPendingEvents();
 	    }
 	}
     }
@@ -124,25 +193,61 @@ public class Simulator extends Manager {
      */
     public boolean sendPkt(int from, int to, byte[] pkt) throws IllegalArgumentException {
 	super.sendPkt(from, to, pkt);  // check arguments
-	Edge edge;
-	if(to == Packet.BROADCAST_ADDRESS) {
-	    for(int i = 0; i < this.nodes.length; i++) {
-		edge = Topology.GetInstance().getLiveEdge(from, i);
-		if(edge != null) {
-		    this.deliverPkt(i, this.nodes[i], from, pkt, edge);
-		}
+	return this.routePkt(from, to, null, pkt, 0, pkt.length);
+    }
 
-		//this.nodes[from].onReceive(from, pkt);  // Should the node that broadcast also receive the pkt?
-	    }
-	}else if((edge = Topology.GetInstance().getLiveEdge(from, to)) != null) {
-	    this.deliverPkt(to, this.nodes[to], from, pkt, edge);
-	}else {
+    /**
+     * Send a packet that was built in a PacketBuffer to the specified node, without copying it.
+     * Each delivery of the packet holds a reference to the buffer until it has run
+     * @param from The node that is sending the packet
+     * @param to Int spefying the destination node
+     * @param buf The buffer holding the packet
+     * @return True if the packet was sent, false otherwise
+     * @throws IllegalArgumentException If the arguments are invalid
+     */
+    public boolean sendPkt(int from, int to, PacketBuffer buf) throws IllegalArgumentException {
+	this.checkPkt(from, to, buf.getData(), buf.getOffset(), buf.getLength());
+	return this.routePkt(from, to, buf, buf.getData(), buf.getOffset(), buf.getLength());
+    }
+
+    /**
+     * Send a transport segment to the specified node. When passing objects the segment is handed to
+     * the destination node as it is, after the delay the edge gives a packet of its packed size
+     * @param from The node that is sending the segment
+     * @param to Int spefying the destination node
+     * @param segment The transport segment to send
+     * @return True if the packet was sent, false otherwise
+     * @throws IllegalArgumentException If the arguments are invalid
+     */
+    public boolean sendTransport(int from, int to, Transport segment) throws IllegalArgumentException {
+	if(!this.passObjects || to == Packet.BROADCAST_ADDRESS) {
+	    return super.sendTransport(from, to, segment);
+	}
+	int size = Packet.packedSize(segment.getPackedSize());
+	this.objectSent(from, to, size);  // check arguments
+	Edge edge = this.topology.getLiveEdge(from, to);
+	if(edge == null) {
 	    System.err.println("Failed to send pkt from: " + from + " to: " + to);
 	    return false;
 	}
+	long timeToDeliver = edge.schedulePkt(this, from, size, this.now);
+	if(timeToDeliver == -1) {
+	    return true;  // pkt dropped
+	}
+	PacketDelivery delivery = this.deliveries.obtain();
+	this.addNodeEvent(from, delivery.schedule(timeToDeliver, this.nodes[to], from, segment));
 	return true;
     }
 
+    /**
+     * Sets whether transport segments are handed to nodes as objects rather than packed into bytes.
+     * Both give the same results. Passing objects skips packing and unpacking each segment
+     * @param passObjects True to pass objects
+     */
+    public void setPassObjects(boolean passObjects) {
+	this.passObjects = passObjects;
+    }
+
     /**
      * Retrieve current time in milliseconds
      * @return Current time in milliseconds
@@ -158,12 +263,11 @@ public class Simulator extends Manager {
      * @param callback The callback to be invoked when the timer fires
      */
     public void addTimerAt(int nodeAddr, long t, Callback callback) {
-	if( (!this.isNodeAddrValid(nodeAddr)) ) {
+	if( (!this.isNodeAddrValid(nodeAddr)) || callback == null ) {
 	    return;
 	}
 
-	super.addTimerAt(nodeAddr, t, callback);
-
+	this.addNodeEvent(nodeAddr, new Event(t * 1000, callback));
     }
 
     /**
@@ -188,21 +292,209 @@ public class Simulator extends Manager {
 	this.timescale = timescale;
     }
 
+    /**
+     * Sets the fishnet file that commands should be read from. Reading starts right away,
+     * even if the previous fishnet file was waiting on a time command
+     * @param filename The name of the file that commands should be read from
+     * @throws FileNotFoundException If the named filed does not exist, is a directory rather than a regular file, or
+     *                               for some other reason cannot be opened for reading
+     */
+    public void setFishnetFile(String filename) throws FileNotFoundException {
+	super.setFishnetFile(filename);
+	this.deferParsingTill = 0;
+    }
+
+    /**
+     * Saves the simulation to a file once the event or command that is running now is done
+     * @param filename The name of the file to save to
+     */
+    public void snapshot(String filename) {
+	this.pendingSnapshot = filename;
+    }
+
+    /**
+     * Stops the simulation and prints statistics. A snapshot still pending is saved first, as
+     * the exit command or the end of the fishnet file may come before the next event
+     */
+    public void stop() {
+	this.writePendingSnapshot();
+	super.stop();
+    }
+
+    /**
+     * Restores a simulation saved with the snapshot command. Call start() to carry on running it
+     * @param filename The name of the snapshot file
+     * @param headless True to run without keyboard input, as fast as possible
+     * @return The restored simulation
+     * @throws IOException If the file cannot be read, or does not hold a simulation
+     */
+    public static Simulator restore(String filename, boolean headless) throws IOException {
+	ObjectInputStream in = new ObjectInputStream(new GZIPInputStream(new FileInputStream(filename)));
+	Simulator simulator;
+	try {
+	    simulator = (Simulator)in.readObject();
+	}catch(ClassNotFoundException e) {
+	    throw new IOException("Snapshot " + filename + " does not match this version of fishnet: " + e);
+	}catch(ClassCastException e) {
+	    throw new IOException("Snapshot " + filename + " does not hold a simulation");
+	}finally {
+	    in.close();
+	}
+	if(!headless) {
+	    simulator.ioThread = new IOThread();
+	    simulator.ioThread.start();
+	}
+	return simulator;
+    }
+
     /**
      * Parses rest of topology file. Has public accesibility since used as a callback
      */
     public void parseRestOfTopoFile() {
 	long deferTill = this.topoFileParser.parseRemainder(this.now);
-	this.addEvent(deferTill, "parseRestOfTopoFile", this, null, null);
+	this.scheduleTopoFileParsing(deferTill);
+    }
+
+    /******************** Protected Functions ********************/
+
+    /**
+     * Adds an event to be invoked at the given time. Only the timing wheel adds events this way.
+     * Its events go before those of the nodes at the same time
+     * @param timeToOccur The time when the event should occur. In microseconds
+     * @param callback The callback to be invoked
+     */
+    protected void addEvent(long timeToOccur, Callback callback) {
+	if(timeToOccur < 0 || callback == null) {
+	    return;
+	}
+	Event event = new Event(timeToOccur, callback);
+	event.setOrder(this.order.nextForManager());
+	this.sortedEvents.addOrderedEvent(event);
     }
 
     /******************** Private Functions ********************/
 
+    // Main loop without keyboard input. Jumps straight to the next event or fishnet file command
+    private void runHeadless() {
+	while(!this.isStopped()) {
+	    this.deferParsingTill = this.readFishFile(this.deferParsingTill);
+	    this.writePendingSnapshot();
+	    if(this.deferParsingTill >= 0 && this.deferParsingTill <= this.now() * 1000) {
+		continue;  // more commands to run now
+	    }
+
+	    // readFishFile works in whole milliseconds, so round the next command up to one
+	    long nextCommand = Long.MAX_VALUE;
+	    if(this.deferParsingTill >= 0) {
+		nextCommand = (this.deferParsingTill + 999) / 1000 * 1000;
+	    }
+
+	    Event nextEvent = this.sortedEvents.getNextEvent();
+	    if(nextEvent == null && nextCommand == Long.MAX_VALUE) {
+		this.stop();
+		return;
+	    }
+	    if(nextEvent == null || nextCommand <= nextEvent.timeToOccur()) {
+		this.now = Math.max(this.now, nextCommand);
+	    }else {
+		this.now = Math.max(this.now, nextEvent.timeToOccur());
+		this.runPendingEvents();
+	    }
+	}
+    }
+
+    // Parse the rest of the topology file at the given time, before any other event of that time
+    private void scheduleTopoFileParsing(long deferTill) {
+	if(deferTill < 0) {
+	    return;
+	}
+	try {
+	    Method method = Callback.getMethod("parseRestOfTopoFile", this, null);
+	    Event event = new Event(deferTill, new Callback(method, this, null));
+	    event.setOrder(EventOrder.FIRST);
+	    this.sortedEvents.addOrderedEvent(event);
+	}catch(Exception e) {
+	    System.err.println("Failed to schedule parsing of the topology file in Simulator. Error: " + e);
+	}
+    }
+
+    // Add an event created by the given node
+    private void addNodeEvent(int nodeAddr, Event event) {
+	event.setOrder(this.order.nextForNode(nodeAddr));
+	this.sortedEvents.addOrderedEvent(event);
+    }
+
+    // Run all events that are due
+    private void runPendingEvents() {
+	Event nextEvent = this.sortedEvents.getNextEvent();
+	while((nextEvent != null) && (nextEvent.timeToOccur() <= this.now)) {
+	    this.sortedEvents.removeNextEvent();
+	    long startNanos = (this.profiler != null) ? System.nanoTime() : 0;
+	    try {
+		nextEvent.callback().invoke();
+	    }catch(Exception e) {
+		System.err.println("Exception while trying to invoke method in Simulator. Error: " + e);
+		e.printStackTrace();
+	    }
+	    if(this.profiler != null) {
+		this.profiler.recordEvent(nextEvent.callback(), System.nanoTime() - startNanos,
+					  this.sortedEvents.size(), this.timingWheel.size());
+	    }
+	    this.eventRun();
+	    this.deliveries.recycle(nextEvent);
+	    this.writePendingSnapshot();
+	    nextEvent = this.sortedEvents.getNextEvent();
+	}
+    }
+
+    // Save the simulation if the snapshot command was given
+    private void writePendingSnapshot() {
+	if(this.pendingSnapshot == null) {
+	    return;
+	}
+	String filename = this.pendingSnapshot;
+	this.pendingSnapshot = null;
+	try {
+	    ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(new FileOutputStream(filename)));
+	    try {
+		out.writeObject(this);
+	    }finally {
+		out.close();
+	    }
+	    this.settings.getErr().println("Saved snapshot at time " + this.now() + " msec to " + filename);
+	}catch(IOException e) {
+	    System.err.println("Failed to save snapshot to " + filename + ". Error: " + e);
+	}
+    }
+
     private boolean isNodeAddrValid(int nodeAddr) {
 	return ((nodeAddr >= 0) && (nodeAddr < this.nodes.length));
     }
 
-    private void deliverPkt(int destAddr, Node destNode, int srcAddr, byte[] pkt, Edge edge) {
+    // Schedule delivery of a checked packet over the live edge(s) to its destination.
+    // buf is the PacketBuffer holding the packet, or null if pkt is not in one
+    private boolean routePkt(int from, int to, PacketBuffer buf, byte[] pkt, int offset, int length) {
+	Edge edge;
+	if(to == Packet.BROADCAST_ADDRESS) {
+	    for(int i = 0; i < this.nodes.length; i++) {
+		edge = this.topology.getLiveEdge(from, i);
+		if(edge != null) {
+		    this.deliverPkt(i, this.nodes[i], from, buf, pkt, offset, length, edge);
+		}
+
+		//this.nodes[from].onReceive(from, pkt);  // Should the node that broadcast also receive the pkt?
+	    }
+	}else if((edge = this.topology.getLiveEdge(from, to)) != null) {
+	    this.deliverPkt(to, this.nodes[to], from, buf, pkt, offset, length, edge);
+	}else {
+	    System.err.println("Failed to send pkt from: " + from + " to: " + to);
+	    return false;
+	}
+	return true;
+    }
+
+    private void deliverPkt(int destAddr, Node destNode, int srcAddr, PacketBuffer buf, byte[] pkt, int offset, int length,
+			    Edge edge) {
         /*
          * Mar. 12, 2006
          * Hao Wang
@@ -213,14 +505,17 @@ public class Simulator extends Manager {
 	/*
          * long timeToDeliver = edge.schedulePkt(srcAddr, pkt.length, this.now);
          */
-        long timeToDeliver = edge.schedulePkt(this,srcAddr, pkt.length, this.now);
+        long timeToDeliver = edge.schedulePkt(this,srcAddr, length, this.now);
 	if(timeToDeliver == -1) {
 	    return;  // pkt dropped
 	}
 
-	String[] paramTypes = {"java.lang.Integer", "[B"};
-	Object[] params = {new Integer(srcAddr), pkt};
-	this.addEvent(timeToDeliver, "onReceive", destNode, paramTypes, params);
+	PacketDelivery delivery = this.deliveries.obtain();
+	if(buf != null) {
+	    this.addNodeEvent(srcAddr, delivery.schedule(timeToDeliver, destNode, srcAddr, buf));
+	}else {
+	    this.addNodeEvent(srcAddr, delivery.schedule(timeToDeliver, destNode, srcAddr, pkt, offset, length));
+	}
     }
 
     private String getUserInput(long timeout) {
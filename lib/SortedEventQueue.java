@@ -1,21 +1,48 @@
-import java.util.LinkedList;
-import java.util.ListIterator;
-import java.lang.IndexOutOfBoundsException;
+import java.io.Serializable;
 
 /**
- * <pre>   
+ * <pre>
  * This is a list of Events which should kept sorted by the time at which they are to be invoked.
- * </pre>   
+ * Events with the same time are invoked in the order they were added, unless their order
+ * was set beforehand (see addOrderedEvent).
+ *
+ * Several implementations are available. Use SortedEventQueue.newQueue to get one by name:
+ *     list     -- sorted linked list. O(n) insert
+ *     heap     -- binary heap. O(log n) insert and remove
+ *     calendar -- calendar queue. Amortized O(1) insert and remove
+ * </pre>
  */
-public class SortedEventQueue {
+public abstract class SortedEventQueue implements Serializable {
 
-    private LinkedList eventList;
+    public static final String LIST = "list";
+    public static final String HEAP = "heap";
+    public static final String CALENDAR = "calendar";
+    public static final String DEFAULT = HEAP;
+
+    private long nextOrder;
 
     /**
      * Create a new empty event queue.
      */
-    public SortedEventQueue() {
-	this.eventList = new LinkedList();
+    protected SortedEventQueue() {
+	this.nextOrder = 0;
+    }
+
+    /**
+     * Create a new empty event queue of the given kind
+     * @param kind One of LIST, HEAP or CALENDAR
+     * @return The new queue
+     * @throws IllegalArgumentException If kind is not recognized
+     */
+    public static SortedEventQueue newQueue(String kind) throws IllegalArgumentException {
+	if(LIST.equals(kind)) {
+	    return new ListEventQueue();
+	}else if(HEAP.equals(kind)) {
+	    return new HeapEventQueue();
+	}else if(CALENDAR.equals(kind)) {
+	    return new CalendarEventQueue();
+	}
+	throw new IllegalArgumentException("Unknown event queue: " + kind);
     }
 
     /**
@@ -23,45 +50,48 @@ public class SortedEventQueue {
      * @param event The event to add to the queue.
      */
     public void addEvent(Event event) {
-	ListIterator sortedIterator = eventList.listIterator();
+	event.setOrder(this.nextOrder++);
+	this.insert(event);
+    }
 
-	while (sortedIterator.hasNext()) {
-	    if (event.timeToOccur() < ((Event)(sortedIterator.next())).timeToOccur()) {
-		this.eventList.add(sortedIterator.previousIndex(), event);		
-		return;
-	    }
-	}
-	//If you've gotten to the end of the list, add it there.
-	this.eventList.add(event); 
+    /**
+     * Add an event whose order among events with the same time has already been set with Event.setOrder.
+     * Use this when ties have to be broken the same way no matter in which order events are added.
+     * @param event The event to add to the queue.
+     */
+    public void addOrderedEvent(Event event) {
+	this.insert(event);
     }
 
     /**
      * Return the next Event to happen without removing it from the queue.
      * @return The next Event to happen. Returns null if the queue is empty
      */
-    public Event getNextEvent() {
-	if(this.isEmpty()) {
-	    return null;
-	}
-	return (Event)(this.eventList.getFirst());
-    }
+    public abstract Event getNextEvent();
 
     /**
      * Remove the next Event to happen and remove it from the queue.
      * @return The next Event to happen. Returns null if the queue is empty
      */
-    public Event removeNextEvent() {
-	if(this.isEmpty()) {
-	    return null;
-	}
-	return (Event)(this.eventList.removeFirst());
-    }
-    
+    public abstract Event removeNextEvent();
+
     /**
      * Checks if the event queue is empty
      * @return True if the event queue is empty
      */
     public boolean isEmpty() {
-	return (this.eventList.size() == 0);
+	return (this.size() == 0);
     }
+
+    /**
+     * Returns the number of events in the queue
+     * @return The number of events in the queue
+     */
+    public abstract int size();
+
+    /**
+     * Insert an event whose order has already been set
+     * @param event The event to insert
+     */
+    protected abstract void insert(Event event);
 }
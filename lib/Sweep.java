@@ -0,0 +1,151 @@
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * <pre>
+ * Runs a simulation once for each combination of edge options, several at a time in one JVM.
+ * Usage:  java Sweep [options] <num nodes> <topo file> <edge command>
+ *
+ *         The edge command is one argument. Any of its values can be a comma separated list, and
+ *         there is one run for each combination. For example
+ *             java Sweep 2 scripts/doubletest.fish "edge 0 1 lossRate 0,0.2 delay 0,200 bw 10000 bt 1000"
+ *         runs doubletest.fish four times. Each run is headless and applies its edge command before
+ *         it starts, overriding the same edge in the topology file. The output of each run is printed
+ *         once it is done, in the order of the combinations.
+ *
+ *         Options:
+ *             -threads <n>                 number of simulations to run at once. Default is the number of processors
+ *             -seed <long>                 seed of every run. By default each run picks its own
+ *             -queue <list|heap|calendar>  event queue used to schedule events. Default is heap
+ * </pre>
+ */
+public class Sweep {
+
+    private static void usage() {
+	System.out.println("Usage:  java Sweep [options] <num nodes> <topo file> <edge command>\n\n" +
+			   "Any value in the edge command can be a comma separated list. There is one run for each combination.\n" +
+			   "Example: java Sweep 2 scripts/doubletest.fish \"edge 0 1 lossRate 0,0.2 delay 0,200 bw 10000 bt 1000\"\n\n" +
+			   "Options:\n" +
+			   "    -threads <n>                 number of simulations to run at once. Default is the number of processors\n" +
+			   "    -seed <long>                 seed of every run. By default each run picks its own\n" +
+			   "    -queue <list|heap|calendar>  event queue used to schedule events. Default is heap");
+    }
+
+    /**
+     * The main method. Entry point to run a sweep
+     */
+    public static void main(String[] args) {
+	int threads = Runtime.getRuntime().availableProcessors();
+	Long seed = null;
+	String eventQueue = SortedEventQueue.DEFAULT;
+
+	int numOptions = 0;
+	try {
+	    while(numOptions + 1 < args.length && args[numOptions].startsWith("-")) {
+		String option = args[numOptions];
+		if(option.equals("-threads")) {
+		    threads = Integer.parseInt(args[numOptions + 1]);
+		}else if(option.equals("-seed")) {
+		    seed = new Long(Long.parseLong(args[numOptions + 1]));
+		}else if(option.equals("-queue")) {
+		    eventQueue = args[numOptions + 1];
+		}else {
+		    System.err.println("Unknown option: " + option);
+		    usage();
+		    return;
+		}
+		numOptions += 2;
+	    }
+	}catch(NumberFormatException e) {
+	    System.err.println("Option value is not a number. Exception: " + e);
+	    usage();
+	    return;
+	}
+	if(args.length - numOptions != 3) {
+	    System.err.println("Missing arguments");
+	    usage();
+	    return;
+	}
+
+	int numNodes = Integer.parseInt(args[numOptions]);
+	String topoFile = args[numOptions + 1];
+	List commands = expand(args[numOptions + 2]);
+
+	ExecutorService executor = Executors.newFixedThreadPool(Math.max(threads, 1));
+	List results = new ArrayList();
+	for(int i = 0; i < commands.size(); i++) {
+	    results.add(executor.submit(new Run(numNodes, topoFile, eventQueue, seed, (String)commands.get(i))));
+	}
+	for(int i = 0; i < commands.size(); i++) {
+	    System.out.println("== " + commands.get(i));
+	    try {
+		System.out.print((String)((Future)results.get(i)).get());
+	    }catch(Exception e) {
+		System.out.println("Run failed. Exception: " + e);
+	    }
+	}
+	executor.shutdown();
+    }
+
+    // Every combination of the comma separated values in command
+    private static List expand(String command) {
+	List combinations = new ArrayList();
+	combinations.add("");
+	String[] words = command.split(" ");
+	for(int i = 0; i < words.length; i++) {
+	    String[] values = words[i].split(",");
+	    List next = new ArrayList();
+	    for(int j = 0; j < combinations.size(); j++) {
+		String prefix = (String)combinations.get(j);
+		for(int k = 0; k < values.length; k++) {
+		    next.add(i == 0 ? values[k] : prefix + " " + values[k]);
+		}
+	    }
+	    combinations = next;
+	}
+	return combinations;
+    }
+
+    // One simulation of the sweep. Returns everything it printed
+    private static class Run implements Callable {
+	private int numNodes;
+	private String topoFile;
+	private String eventQueue;
+	private Long seed;
+	private String command;
+
+	Run(int numNodes, String topoFile, String eventQueue, Long seed, String command) {
+	    this.numNodes = numNodes;
+	    this.topoFile = topoFile;
+	    this.eventQueue = eventQueue;
+	    this.seed = seed;
+	    this.command = command;
+	}
+
+	public Object call() throws Exception {
+	    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+	    PrintStream output = new PrintStream(buffer, true);
+
+	    Simulator simulator = new Simulator(this.numNodes, this.topoFile, this.eventQueue, true);
+	    simulator.getSettings().setOutput(output, output);
+	    simulator.setExitOnStop(false);
+	    if(this.seed != null) {
+		simulator.setSeed(this.seed.longValue());
+	    }
+	    simulator.parseCommand(this.command);
+	    simulator.start();
+	    if(!simulator.isStopped()) {
+		simulator.stop();
+	    }
+
+	    output.flush();
+	    return buffer.toString();
+	}
+    }
+}
@@ -0,0 +1,44 @@
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * <pre>
+ * A Callback that runs code directly rather than looking up a method by name.
+ * Subclasses put the work to be done in run(). There is no reflection, no boxing of
+ * parameters and no parameter array, so use this for events that are scheduled often.
+ * Example:
+ *         To call foo("fooTest") when a timer fires:
+ *         Callback cb = new TaskCallback() {
+ *                 public void run() {
+ *                     foo("fooTest");
+ *                 }
+ *             };
+ *         manager.addTimer(addr, deltaT, cb);
+ *
+ * The above code snippet assumes that it is written inside class Test, which has a method foo.
+ * Unlike with Callback.getMethod, foo need not be public.
+ * </pre>
+ */
+public abstract class TaskCallback extends Callback {
+
+    protected TaskCallback() {
+	super();
+    }
+
+    /**
+     * The work to be done when the callback is invoked
+     * @throws Exception Any exception thrown is passed on by invoke wrapped in an InvocationTargetException
+     */
+    public abstract void run() throws Exception;
+
+    /**
+     * Invokes the callback
+     * @throws InvocationTargetException If run throws an exception
+     */
+    public void invoke() throws InvocationTargetException {
+	try {
+	    this.run();
+	}catch(Exception e) {
+	    throw new InvocationTargetException(e);
+	}
+    }
+}
@@ -0,0 +1,250 @@
+import java.io.Serializable;
+
+/**
+ * <pre>
+ * Hierarchical timing wheel (G. Varghese and T. Lauck, "Hashed and Hierarchical Timing
+ * Wheels", SOSP 1987) for timers that are rescheduled or cancelled much more often than
+ * they fire, such as TCP retransmission timers.
+ *
+ * The wheel ticks once a millisecond. Level 0 has one slot per tick for the next 256 ticks,
+ * level 1 has one slot per 256 ticks, and so on for 4 levels, covering about 49 days.
+ * A timer further out than that is parked in the last level and re-filed as time passes.
+ * Each slot is a doubly linked list, so schedule, reschedule and cancel are O(1), and a
+ * cancelled timer does not linger until its deadline the way a cancelled event does.
+ *
+ * The wheel drives itself from the Manager's event queue. It keeps at most one event
+ * pending for the next tick that has work to do, and skips over ticks that have none.
+ * </pre>
+ */
+public class TimingWheel implements Serializable {
+
+    private static final int LEVELS = 4;
+    private static final int SLOT_BITS = 8;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final long MAX_DELAY = (1L << (LEVELS * SLOT_BITS)) - 1;  // in milliseconds
+
+    private final Manager manager;
+    private final WheelTimer[][] slots;
+    private final int[] counts;   // number of timers on each level
+    private int size;
+    private long current;         // next tick to process, in milliseconds. All earlier ticks have been processed
+    private long driverAt;        // tick of the earliest event pending in the Manager's queue. -1 if there is none
+    private boolean advancing;    // true while firing timers
+
+    /**
+     * Create an empty timing wheel
+     * @param manager The manager whose event queue drives the wheel
+     * @param start The first tick of the wheel, in milliseconds
+     */
+    public TimingWheel(Manager manager, long start) {
+	this.manager = manager;
+	this.slots = new WheelTimer[LEVELS][SLOTS];
+	this.counts = new int[LEVELS];
+	this.size = 0;
+	this.current = start;
+	this.driverAt = -1;
+	this.advancing = false;
+    }
+
+    /**
+     * Schedule a timer to fire deltaT milliseconds from now. If the timer is already pending it is
+     * moved to the new time.
+     * @param timer The timer to schedule
+     * @param deltaT The time interval after which the timer should fire. In milliseconds
+     */
+    public void schedule(WheelTimer timer, long deltaT) {
+	this.scheduleAt(timer, this.manager.now() + Math.max(deltaT, 0));
+    }
+
+    /**
+     * Schedule a timer to fire at time t. If the timer is already pending it is moved to the new time.
+     * @param timer The timer to schedule
+     * @param t The time when the timer should fire. In milliseconds
+     */
+    public void scheduleAt(WheelTimer timer, long t) {
+	if(timer.isPending()) {
+	    this.unlink(timer);
+	}
+	timer.expires = t;
+	this.place(timer);
+	if(!this.advancing) {
+	    this.updateDriver();
+	}
+    }
+
+    /**
+     * Cancel a timer. It is removed from the wheel immediately.
+     * @param timer The timer to cancel
+     * @return True if the timer was pending
+     */
+    public boolean cancel(WheelTimer timer) {
+	if(!timer.isPending()) {
+	    return false;
+	}
+	this.unlink(timer);
+	return true;
+    }
+
+    /**
+     * Returns the number of pending timers
+     * @return The number of pending timers
+     */
+    public int size() {
+	return this.size;
+    }
+
+    /******************** Private Functions ********************/
+
+    // Fire every timer due at or before tick t
+    private void advance(long t) {
+	long tick;
+	while(this.size > 0 && (tick = this.nextTick()) <= t) {
+	    this.current = tick;
+	    if((tick & MASK) == 0) {
+		this.cascade(tick);
+	    }
+
+	    // Timers fired may schedule new ones in the same slot. Keep going until it is empty
+	    int index = (int)(tick & MASK);
+	    WheelTimer timer;
+	    while((timer = this.slots[0][index]) != null) {
+		this.unlink(timer);
+		if(timer.expires > tick) {
+		    // parked beyond the range of the wheel, file it again
+		    this.place(timer);
+		    continue;
+		}
+		EventProfiler profiler = this.manager.getProfiler();
+		long startNanos = (profiler != null) ? System.nanoTime() : 0;
+		try {
+		    timer.callback().invoke();
+		}catch(Exception e) {
+		    System.err.println("Exception while trying to invoke timer in TimingWheel. Error: " + e);
+		    e.printStackTrace();
+		}
+		if(profiler != null) {
+		    profiler.recordTimer(timer.callback(), System.nanoTime() - startNanos);
+		}
+	    }
+	    this.current = tick + 1;
+	}
+    }
+
+    // File a timer that is not on the wheel, relative to the current tick
+    private void place(WheelTimer timer) {
+	long expires = Math.max(timer.expires, this.current);
+	long delta = Math.min(expires - this.current, MAX_DELAY);
+	expires = this.current + delta;
+
+	int level = 0;
+	while(level < LEVELS - 1 && delta >= (1L << ((level + 1) * SLOT_BITS))) {
+	    level++;
+	}
+	int slot = (int)((expires >> (level * SLOT_BITS)) & MASK);
+
+	timer.level = level;
+	timer.slot = slot;
+	timer.prev = null;
+	timer.next = this.slots[level][slot];
+	if(timer.next != null) {
+	    timer.next.prev = timer;
+	}
+	this.slots[level][slot] = timer;
+	this.counts[level]++;
+	this.size++;
+    }
+
+    private void unlink(WheelTimer timer) {
+	if(timer.prev != null) {
+	    timer.prev.next = timer.next;
+	}else {
+	    this.slots[timer.level][timer.slot] = timer.next;
+	}
+	if(timer.next != null) {
+	    timer.next.prev = timer.prev;
+	}
+	this.counts[timer.level]--;
+	this.size--;
+	timer.level = -1;
+	timer.prev = null;
+	timer.next = null;
+    }
+
+    // Move the timers of the slots that come due at tick down the wheel
+    private void cascade(long tick) {
+	for(int level = 1; level < LEVELS; level++) {
+	    int index = (int)((tick >> (level * SLOT_BITS)) & MASK);
+	    WheelTimer timer;
+	    while((timer = this.slots[level][index]) != null) {
+		this.unlink(timer);
+		this.place(timer);
+	    }
+	    if(index != 0) {
+		break;
+	    }
+	}
+    }
+
+    // True if some slot cascades at tick. Tick must be a multiple of SLOTS
+    private boolean cascadePending(long tick) {
+	for(int level = 1; level < LEVELS; level++) {
+	    int index = (int)((tick >> (level * SLOT_BITS)) & MASK);
+	    if(this.slots[level][index] != null) {
+		return true;
+	    }
+	    if(index != 0) {
+		break;
+	    }
+	}
+	return false;
+    }
+
+    // The next tick that has timers to fire or cascade. -1 if the wheel is empty
+    private long nextTick() {
+	if(this.size == 0) {
+	    return -1;
+	}
+	long tick = this.current;
+	while(true) {
+	    if((tick & MASK) == 0 && this.cascadePending(tick)) {
+		return tick;
+	    }
+	    if(this.slots[0][(int)(tick & MASK)] != null) {
+		return tick;
+	    }
+
+	    // Levels below the lowest one with timers are empty, so skip to its next slot boundary
+	    int level = 0;
+	    while(this.counts[level] == 0) {
+		level++;
+	    }
+	    long span = 1L << (level * SLOT_BITS);
+	    tick = (tick / span + 1) * span;
+	}
+    }
+
+    // Make sure an event is pending in the Manager's queue for the next tick with work to do
+    private void updateDriver() {
+	final long tick = this.nextTick();
+	if(tick == -1 || (this.driverAt != -1 && this.driverAt <= tick)) {
+	    return;
+	}
+	this.driverAt = tick;
+	this.manager.addEvent(tick * 1000, new TaskCallback() {
+		public void run() {
+		    drive(tick);
+		}
+	    });
+    }
+
+    private void drive(long tick) {
+	if(tick == this.driverAt) {
+	    this.driverAt = -1;
+	}
+	this.advancing = true;
+	this.advance(Math.max(tick, this.manager.now()));
+	this.advancing = false;
+	this.updateDriver();
+    }
+}
@@ -1,18 +1,20 @@
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.ListIterator;
+import java.io.Serializable;
 
 /**
  * <pre>
  * Topology class keeps track of connections between nodes.
- * This is a Singleton object
+ * Each Manager has its own. The Trawler uses the one from GetInstance
  * </pre>
  */
-public class Topology {
+public class Topology implements Serializable {
 
     private ArrayList edges;
     private HashMap failedNodes;
     private boolean allToAll;
+    private long seed;   // seed of the random streams of the edges
     private static Topology topology = null;
 
     /**
@@ -80,10 +82,31 @@ public class Topology {
             e.setOptions(options);
 	}else {
 	    e = new Edge(a, b, options);
+	    e.setSeed(this.seed);
 	    edges.add(e);
 	}
     }
 
+    /**
+     * Restart the random streams of all edges from the given simulation seed
+     * @param seed The seed of the simulation
+     */
+    public void setSeed(long seed) {
+	this.seed = seed;
+	ListIterator iter = this.edges.listIterator();
+	while(iter.hasNext()) {
+	    ((Edge)iter.next()).setSeed(seed);
+	}
+    }
+
+    /**
+     * Returns all edges that have been created, live or not
+     * @return The edges of the topology
+     */
+    public Edge[] getEdges() {
+	return (Edge[])this.edges.toArray(new Edge[this.edges.size()]);
+    }
+
     /**
      * Mark the given edge as failed so that we don't use it
      * @param a Int specifying a node
@@ -121,14 +144,19 @@ public class Topology {
     }
 
 
-    //********** Private Functions **********
-
-    private Topology(boolean allToAll) {
+    /**
+     * Create an empty topology
+     * @param allToAll True if every pair of nodes should be treated as connected by an edge with default options
+     */
+    public Topology(boolean allToAll) {
 	this.edges = new ArrayList();
 	this.failedNodes = new HashMap();
 	this.allToAll = allToAll;
+	this.seed = 0;
     }
 
+    //********** Private Functions **********
+
     private Edge getEdge(int a, int b) {
 	ListIterator iter = this.edges.listIterator();
 	Edge e;
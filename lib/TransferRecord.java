@@ -0,0 +1,54 @@
+import java.io.Serializable;
+
+/**
+ * <pre>
+ * Outcome of one transfer, as recorded by the node that sent it. See Manager.transferDone
+ * </pre>
+ */
+public class TransferRecord implements Serializable {
+    private int node;
+    private long bytes;
+    private long elapsed;
+
+    /**
+     * @param node The address of the node that sent the data
+     * @param bytes The number of bytes sent
+     * @param elapsed The time from the start of sending to the connection being closed, in milliseconds
+     */
+    public TransferRecord(int node, long bytes, long elapsed) {
+	this.node = node;
+	this.bytes = bytes;
+	this.elapsed = elapsed;
+    }
+
+    /**
+     * @return The address of the node that sent the data
+     */
+    public int getNode() {
+	return this.node;
+    }
+
+    /**
+     * @return The number of bytes sent
+     */
+    public long getBytes() {
+	return this.bytes;
+    }
+
+    /**
+     * @return The time from the start of sending to the connection being closed, in milliseconds
+     */
+    public long getElapsed() {
+	return this.elapsed;
+    }
+
+    /**
+     * @return The goodput of the transfer in bytes per second of simulated time. 0 if no time elapsed
+     */
+    public double getBps() {
+	if(this.elapsed <= 0) {
+	    return 0;
+	}
+	return this.bytes * 1000.0 / this.elapsed;
+    }
+}
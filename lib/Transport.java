@@ -1,19 +1,28 @@
-import java.math.BigInteger;
-import java.io.ByteArrayOutputStream;
-import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.io.Serializable;
 
 /**
  * <pre>   
  * This conveys the header for reliable message transfer.
  * This is carried in the payload of a Packet, and in turn the data being
  * transferred is carried in the payload of the Transport packet.
+ *
+ * Like Packet, a transport packet bigger than MAX_SHORT_PACKET_SIZE puts 0 in its 1 byte length
+ * and gives its length in 2 bytes after it, so its header is EXTENDED_HEADER_SIZE bytes.
+ *
+ * The payload may be an array taken from a BufferPool. The transport packet then counts
+ * references to it like a PacketBuffer does, and gives it back to the pool on the last release().
+ * Retaining or releasing a transport packet whose payload is not pooled does nothing.
  * </pre>   
  */
-public class Transport {
+public class Transport implements Serializable {
     
     public static final int MAX_PACKET_SIZE = Packet.MAX_PAYLOAD_SIZE;
     public static final int HEADER_SIZE = 12;
-    public static final int MAX_PAYLOAD_SIZE = MAX_PACKET_SIZE - HEADER_SIZE;
+    public static final int EXTENDED_HEADER_SIZE = 14;
+    public static final int MAX_PAYLOAD_SIZE = MAX_PACKET_SIZE - HEADER_SIZE;  // at the default MTU
+    public static final int MAX_SHORT_PACKET_SIZE = 255;
+    public static final int LARGEST_PAYLOAD_SIZE = maxPayloadSize(Packet.MAX_MTU);
     public static final int MAX_PORT_NUM = 255;  // port numbers range from 0 to 255
 
     public static final int SYN = 0;
@@ -27,9 +36,13 @@ public class Transport {
     private int window;
     private int seqNum;
     private byte[] payload;
+    private transient BufferPool pool;   // where the payload goes back to once released. Null if not pooled
+    private transient int refCount;
 
     /**
-     * Constructing a new transport packet.
+     * Constructing a new transport packet. A small negative window or sequence number is kept as
+     * the wire format turns it (see WireCodec), so the segment reads the same whether it is handed
+     * over as an object or packed and unpacked
      * @param srcPort The source port
      * @param destPort The destination port
      * @param type The type of packet. Either SYN, ACK, FIN, or DATA
@@ -41,18 +54,58 @@ public class Transport {
 	if(srcPort < 0 || srcPort > MAX_PORT_NUM   ||
 	   destPort < 0 || destPort > MAX_PORT_NUM ||
 	   type < SYN || type > DATA               ||
-	   payload.length > MAX_PAYLOAD_SIZE) {
+	   payload.length > LARGEST_PAYLOAD_SIZE) {
 	    throw new IllegalArgumentException("Illegal arguments given to Transport packet");
 	}
 
 	this.srcPort = srcPort;
 	this.destPort = destPort;
 	this.type = type;
-	this.window = window;
-	this.seqNum = seqNum;
+	this.window = WireCodec.toWire(window);
+	this.seqNum = WireCodec.toWire(seqNum);
 	this.payload = payload;
     }
 
+    /**
+     * Constructing a new transport packet around a payload taken from a pool.
+     * The creator holds the one reference to it
+     * @param srcPort The source port
+     * @param destPort The destination port
+     * @param type The type of packet. Either SYN, ACK, FIN, or DATA
+     * @param window The window size
+     * @param seqNum The sequence number of the packet
+     * @param payload The payload of the packet, obtained from pool
+     * @param pool The pool the payload goes back to once released
+     */
+    public Transport(int srcPort, int destPort, int type, int window, int seqNum, byte[] payload, BufferPool pool)
+	throws IllegalArgumentException {
+	this(srcPort, destPort, type, window, seqNum, payload);
+	this.pool = pool;
+	this.refCount = 1;
+    }
+
+    /**
+     * Take another reference to the payload, for keeping it after the call that handed it over returns
+     * @return This transport packet
+     */
+    public Transport retain() {
+	if(this.pool != null) {
+	    this.refCount++;
+	}
+	return this;
+    }
+
+    /**
+     * Drop a reference to the payload. A pooled payload goes back to its pool when none are left,
+     * and must not be used after that
+     */
+    public void release() {
+	if(this.pool != null && --this.refCount == 0) {
+	    this.pool.release(this.payload);
+	    this.pool = null;
+	}
+    }
+
     /**
      * @return The source port
      */
@@ -94,7 +147,42 @@ public class Transport {
     public byte[] getPayload() {
 	return this.payload;
     }
-    
+
+    /**
+     * @return The number of bytes pack writes
+     */
+    public int getPackedSize() {
+	return packedSize(this.payload.length);
+    }
+
+    /**
+     * @param payloadLength The length of a payload
+     * @return The size of the header of a transport packet carrying that payload
+     */
+    public static int headerSize(int payloadLength) {
+	return (payloadLength + HEADER_SIZE <= MAX_SHORT_PACKET_SIZE) ? HEADER_SIZE : EXTENDED_HEADER_SIZE;
+    }
+
+    /**
+     * @param payloadLength The length of a payload
+     * @return The size of a transport packet carrying that payload
+     */
+    public static int packedSize(int payloadLength) {
+	return headerSize(payloadLength) + payloadLength;
+    }
+
+    /**
+     * @param mtu The largest Packet allowed, in bytes
+     * @return The largest payload a transport packet sent in a Packet of at most mtu bytes can carry
+     */
+    public static int maxPayloadSize(int mtu) {
+	int room = Packet.maxPayloadSize(mtu);
+	if(room <= MAX_SHORT_PACKET_SIZE) {
+	    return room - HEADER_SIZE;
+	}
+	return Math.max(MAX_SHORT_PACKET_SIZE - HEADER_SIZE, room - EXTENDED_HEADER_SIZE);
+    }
+
     /**
      * Convert the Transport packet object into a byte array for sending over the wire.
      * Format:
@@ -103,37 +191,120 @@ public class Transport {
      *        type = 1 byte
      *        window size = 4 bytes
      *        sequence number = 4 bytes
-     *        packet length = 1 byte
-     *        payload <= MAX_PAYLOAD_SIZE bytes
+     *        packet length = 1 byte, or 0 if the packet is bigger than MAX_SHORT_PACKET_SIZE
+     *        packet length = 2 bytes, only if the 1 byte length is 0
+     *        payload <= MAX_PAYLOAD_SIZE bytes, or more if a larger MTU is set
      * @return A byte[] for transporting over the wire. Null if failed to pack for some reason
      */
     public byte[] pack() {
-	
-	ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-	byteStream.write(this.srcPort);
-	byteStream.write(this.destPort);
-	byteStream.write(this.type);
-	
-	// write 4 bytes for window size
-	byte[] windowByteArray = (BigInteger.valueOf(this.window)).toByteArray();
-	int paddingLength = 4 - windowByteArray.length;
-	for(int i = 0; i < paddingLength; i++) {
-	    byteStream.write(0);
+	byte[] packet = new byte[this.getPackedSize()];
+	this.pack(packet, 0);
+	return packet;
+    }
+
+    /**
+     * Write the transport packet into a buffer in the format of pack()
+     * @param buf The buffer to write to
+     * @param offset Where in buf the transport packet should start
+     * @return The number of bytes written
+     * @throws IndexOutOfBoundsException If the transport packet does not fit in buf
+     */
+    public int pack(byte[] buf, int offset) throws IndexOutOfBoundsException {
+	int size = this.getPackedSize();
+	if(offset < 0 || offset + size > buf.length) {
+	    throw new IndexOutOfBoundsException("Transport packet of " + size + " bytes does not fit at " + offset);
 	}
-	byteStream.write(windowByteArray, 0, Math.min(windowByteArray.length, 4));
+	int headerSize = this.writeHeader(buf, offset, size);
+	System.arraycopy(this.payload, 0, buf, offset + headerSize, this.payload.length);
+	return size;
+    }
 
-	// write 4 bytes for sequence number
-	byte[] seqByteArray = (BigInteger.valueOf(this.seqNum)).toByteArray();
-	paddingLength = 4 - seqByteArray.length;
-	for(int i = 0; i < paddingLength; i++) {
-	    byteStream.write(0);
+    /**
+     * Write the transport packet at the position of a buffer in the format of pack(), and move past it
+     * @param buf The buffer to write to
+     * @throws java.nio.BufferOverflowException If the transport packet does not fit in the rest of buf
+     */
+    public void pack(ByteBuffer buf) {
+	buf.put((byte)this.srcPort);
+	buf.put((byte)this.destPort);
+	buf.put((byte)this.type);
+	WireCodec.putInt(buf, this.window);
+	WireCodec.putInt(buf, this.seqNum);
+	int size = this.getPackedSize();
+	if(size <= MAX_SHORT_PACKET_SIZE) {
+	    buf.put((byte)size);
+	}else {
+	    buf.put((byte)0);
+	    WireCodec.putShort(buf, size);
 	}
-	byteStream.write(seqByteArray, 0, Math.min(seqByteArray.length, 4));
+	buf.put(this.payload);
+    }
 
-	byteStream.write(HEADER_SIZE + this.payload.length);	
-	byteStream.write(this.payload, 0, this.payload.length);
+    /**
+     * Put this transport packet into a PacketBuffer with room in front for the headers of the
+     * layers below. The payload is copied once, and the header is written in front of it
+     * @return The buffer holding the transport packet
+     */
+    public PacketBuffer toBuffer() {
+	return this.toBuffer(null);
+    }
+
+    /**
+     * Put this transport packet into a PacketBuffer whose array is taken from a pool
+     * @param pool The pool to take the array from. Null to create the array
+     * @return The buffer holding the transport packet. The caller holds the one reference to it
+     */
+    public PacketBuffer toBuffer(BufferPool pool) {
+	PacketBuffer buf = new PacketBuffer(PacketBuffer.HEADROOM, this.payload, pool);
+	int offset = buf.push(headerSize(this.payload.length));
+	this.writeHeader(buf.getData(), offset, buf.getLength());
+	return buf;
+    }
+
+    // Write the header of a transport packet of size bytes and return its length
+    private int writeHeader(byte[] buf, int offset, int size) {
+	buf[offset] = (byte)this.srcPort;
+	buf[offset + 1] = (byte)this.destPort;
+	buf[offset + 2] = (byte)this.type;
+	WireCodec.putInt(buf, offset + 3, this.window);
+	WireCodec.putInt(buf, offset + 7, this.seqNum);
+	if(size <= MAX_SHORT_PACKET_SIZE) {
+	    buf[offset + 11] = (byte)size;
+	    return HEADER_SIZE;
+	}
+	buf[offset + 11] = 0;
+	WireCodec.putShort(buf, offset + HEADER_SIZE, size);
+	return EXTENDED_HEADER_SIZE;
+    }
+
+    /**
+     * Reads the length of a packed transport packet from its header
+     * @param buf The buffer holding the transport packet
+     * @param offset Where in buf the transport packet starts
+     * @param length The number of bytes available from offset
+     * @return The length of the transport packet, or -1 if there are not enough bytes to hold its header
+     */
+    public static int lengthAt(byte[] buf, int offset, int length) {
+	if(length < HEADER_SIZE) {
+	    return -1;
+	}
+	int shortLength = WireCodec.getUnsignedByte(buf, offset + 11);
+	if(shortLength != 0) {
+	    return shortLength;
+	}
+	if(length < EXTENDED_HEADER_SIZE) {
+	    return -1;
+	}
+	return WireCodec.getUnsignedShort(buf, offset + HEADER_SIZE);
+    }
 
-	return byteStream.toByteArray();
+    /**
+     * @param buf A buffer holding a packed transport packet
+     * @param offset Where in buf the transport packet starts
+     * @return The size of the header of the transport packet, judging by its 1 byte length
+     */
+    public static int headerSizeAt(byte[] buf, int offset) {
+	return (buf[offset + 11] == 0) ? EXTENDED_HEADER_SIZE : HEADER_SIZE;
     }
 
     /**
@@ -143,37 +314,90 @@ public class Transport {
      * @return Transport object created or null if the byte[] representation was corrupted
      */
     public static Transport unpack(byte[] packet) {
-	ByteArrayInputStream byteStream = new ByteArrayInputStream(packet);
-
-	int srcPort = byteStream.read();
-	int destPort = byteStream.read();
-	int type = byteStream.read();
-	
-	byte[] windowByteArray = new byte[4];
-	if(byteStream.read(windowByteArray, 0, 4) != 4) {
+	return unpack(packet, 0, packet.length);
+    }
+
+    /**
+     * Unpacks part of a byte array to create a Transport object.
+     * Bytes after the length given in the header are ignored
+     * @param buf The buffer holding the transport packet
+     * @param offset Where in buf the transport packet starts
+     * @param length The number of bytes available from offset
+     * @return Transport object created or null if the bytes are corrupted
+     */
+    public static Transport unpack(byte[] buf, int offset, int length) {
+	return unpack(buf, offset, length, null);
+    }
+
+    /**
+     * Unpacks part of a byte array to create a Transport object whose payload is taken from a pool.
+     * The caller holds the one reference to it and should release it once done with it
+     * @param buf The buffer holding the transport packet
+     * @param offset Where in buf the transport packet starts
+     * @param length The number of bytes available from offset
+     * @param pool The pool to take the payload from. Null to create it
+     * @return Transport object created or null if the bytes are corrupted
+     */
+    public static Transport unpack(byte[] buf, int offset, int length, BufferPool pool) {
+	int packetLength = lengthAt(buf, offset, length);
+	if(packetLength < 0) {
 	    return null;
 	}
-	int window = (new BigInteger(windowByteArray)).intValue();
-
-	byte[] seqByteArray = new byte[4];
-	if(byteStream.read(seqByteArray, 0, 4) != 4) {
+	int headerSize = headerSizeAt(buf, offset);
+	if(packetLength < headerSize || packetLength > length) {
 	    return null;
 	}
-	int seqNum = (new BigInteger(seqByteArray)).intValue();
 
-	int packetLength = byteStream.read();
+	int payloadLength = packetLength - headerSize;
+	if(payloadLength > LARGEST_PAYLOAD_SIZE || WireCodec.getUnsignedByte(buf, offset + 2) > DATA) {
+	    return null;
+	}
+	byte[] payload = (pool != null) ? pool.obtain(payloadLength) : new byte[payloadLength];
+	System.arraycopy(buf, offset + headerSize, payload, 0, payloadLength);
+	return new Transport(WireCodec.getUnsignedByte(buf, offset),
+			     WireCodec.getUnsignedByte(buf, offset + 1),
+			     WireCodec.getUnsignedByte(buf, offset + 2),
+			     WireCodec.getInt(buf, offset + 3),
+			     WireCodec.getInt(buf, offset + 7),
+			     payload, pool);
+    }
 
-	byte[] payload = new byte[packetLength - HEADER_SIZE];
-	int bytesRead = Math.max(0, byteStream.read(payload, 0, payload.length));
-	
-	if((HEADER_SIZE + bytesRead) != packetLength) {
+    /**
+     * Unpacks a transport packet at the position of a buffer and moves past it.
+     * Leaves the position alone if the bytes are corrupted
+     * @param buf The buffer holding the transport packet
+     * @return Transport object created or null if the bytes are corrupted
+     */
+    public static Transport unpack(ByteBuffer buf) {
+	int start = buf.position();
+	if(buf.remaining() < HEADER_SIZE) {
+	    return null;
+	}
+	boolean extended = (buf.get(start + 11) == 0);
+	int headerSize = extended ? EXTENDED_HEADER_SIZE : HEADER_SIZE;
+	if(buf.remaining() < headerSize) {
+	    return null;
+	}
+	int packetLength = extended ? WireCodec.getUnsignedShort(buf, start + HEADER_SIZE) : (buf.get(start + 11) & 0xff);
+	if(packetLength < headerSize || packetLength > buf.remaining()) {
 	    return null;
 	}
 
+	int srcPort = WireCodec.getUnsignedByte(buf);
+	int destPort = WireCodec.getUnsignedByte(buf);
+	int type = WireCodec.getUnsignedByte(buf);
+	int window = WireCodec.getInt(buf);
+	int seqNum = WireCodec.getInt(buf);
+	buf.get();  // length, checked above
+	if(extended) {
+	    buf.getShort();  // length, checked above
+	}
+	byte[] payload = new byte[packetLength - headerSize];
+	buf.get(payload);
 	try {
 	    return new Transport(srcPort, destPort, type, window, seqNum, payload);
 	}catch(IllegalArgumentException e) {
-	    // will return null
+	    buf.position(start);
 	}
 	return null;
     }
@@ -0,0 +1,135 @@
+import java.io.Serializable;
+
+/**
+ * <pre>
+ * Read-only view of a packed Transport packet that reads header fields in place, usually
+ * from the payload of a PacketView. Like PacketView, one view can be pointed at packet after
+ * packet and it does not copy the bytes. Use toTransport for a Transport that can be kept.
+ * </pre>
+ */
+public class TransportView implements Serializable {
+
+    private byte[] buf;
+    private int offset;
+    private int length;
+
+    public TransportView() {
+	this.wrap(null, 0, 0);
+    }
+
+    /**
+     * Point the view at the transport packet carried by a packet
+     * @param packet View of the packet carrying the transport packet
+     * @return This view
+     */
+    public TransportView wrap(PacketView packet) {
+	return this.wrap(packet.getBuffer(), packet.getPayloadOffset(), packet.getPayloadLength());
+    }
+
+    /**
+     * Point the view at a packed transport packet in part of a buffer
+     * @param buf The buffer holding the transport packet
+     * @param offset Where in buf the transport packet starts
+     * @param length The number of bytes available from offset
+     * @return This view
+     */
+    public TransportView wrap(byte[] buf, int offset, int length) {
+	this.buf = buf;
+	this.offset = offset;
+	this.length = length;
+	return this;
+    }
+
+    /**
+     * Tests if the bytes hold a transport packet that Transport.unpack would accept
+     * @return True if the transport packet is valid, else false
+     */
+    public boolean isValid() {
+	int packetLength = Transport.lengthAt(this.buf, this.offset, this.length);
+	if(packetLength < 0) {
+	    return false;
+	}
+	int headerSize = Transport.headerSizeAt(this.buf, this.offset);
+	return (packetLength >= headerSize                                     &&
+		packetLength <= this.length                                    &&
+		packetLength - headerSize <= Transport.LARGEST_PAYLOAD_SIZE    &&
+		this.getType() <= Transport.DATA);
+    }
+
+    /**
+     * @return The source port
+     */
+    public int getSrcPort() {
+	return this.byteAt(0);
+    }
+
+    /**
+     * @return The destination port
+     */
+    public int getDestPort() {
+	return this.byteAt(1);
+    }
+
+    /**
+     * @return The type of the packet
+     */
+    public int getType() {
+	return this.byteAt(2);
+    }
+
+    /**
+     * @return The window size
+     */
+    public int getWindow() {
+	return WireCodec.getInt(this.buf, this.offset + 3);
+    }
+
+    /**
+     * @return The sequence number
+     */
+    public int getSeqNum() {
+	return WireCodec.getInt(this.buf, this.offset + 7);
+    }
+
+    /**
+     * @return The buffer the view reads from
+     */
+    public byte[] getBuffer() {
+	return this.buf;
+    }
+
+    /**
+     * @return Where the payload starts in the buffer
+     */
+    public int getPayloadOffset() {
+	return this.offset + Transport.headerSizeAt(this.buf, this.offset);
+    }
+
+    /**
+     * @return The length of the payload
+     */
+    public int getPayloadLength() {
+	return Transport.lengthAt(this.buf, this.offset, this.length) - Transport.headerSizeAt(this.buf, this.offset);
+    }
+
+    /**
+     * Unpack the transport packet into an object of its own
+     * @return The Transport, or null if the bytes are not a valid transport packet
+     */
+    public Transport toTransport() {
+	return Transport.unpack(this.buf, this.offset, this.length);
+    }
+
+    /**
+     * Unpack the transport packet into an object of its own, with its payload taken from a pool
+     * @param pool The pool to take the payload from
+     * @return The Transport, or null if the bytes are not a valid transport packet. Release it once done with it
+     */
+    public Transport toTransport(BufferPool pool) {
+	return Transport.unpack(this.buf, this.offset, this.length, pool);
+    }
+
+    private int byteAt(int index) {
+	return WireCodec.getUnsignedByte(this.buf, this.offset + index);
+    }
+}
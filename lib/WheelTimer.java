@@ -0,0 +1,55 @@
+import java.io.Serializable;
+
+/**
+ * <pre>
+ * A timer that can be scheduled on a TimingWheel.
+ * The same timer can be scheduled, rescheduled and cancelled any number of times.
+ * Each of these is O(1), and a cancelled timer is removed from the wheel immediately.
+ * </pre>
+ */
+public class WheelTimer implements Serializable {
+
+    private final Callback callback;
+    long expires;        // time the timer fires, in milliseconds
+    int level;           // level of the wheel the timer is on. -1 if not scheduled
+    int slot;            // slot within that level
+    WheelTimer prev;     // links to the other timers in the same slot
+    WheelTimer next;
+
+    /**
+     * Create a timer that is not scheduled
+     * @param callback The callback to be invoked when the timer fires
+     */
+    public WheelTimer(Callback callback) {
+	this.callback = callback;
+	this.expires = 0;
+	this.level = -1;
+	this.slot = 0;
+	this.prev = null;
+	this.next = null;
+    }
+
+    /**
+     * Returns the callback
+     * @return The callback to be invoked when the timer fires
+     */
+    public Callback callback() {
+	return this.callback;
+    }
+
+    /**
+     * Checks if the timer is scheduled to fire
+     * @return True if the timer is scheduled and has not yet fired or been cancelled
+     */
+    public boolean isPending() {
+	return (this.level >= 0);
+    }
+
+    /**
+     * Returns when the timer fires
+     * @return The time the timer fires, in milliseconds. Only meaningful while the timer is pending
+     */
+    public long getExpires() {
+	return this.expires;
+    }
+}
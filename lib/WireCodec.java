@@ -0,0 +1,141 @@
+import java.nio.ByteBuffer;
+
+/**
+ * <pre>
+ * Reads and writes the fixed width fields of fishnet headers in place, in a byte[] at an offset
+ * or at the position of a ByteBuffer. Multi-byte fields are big endian no matter what byte
+ * order a ByteBuffer is set to.
+ *
+ * Fishnet used to write 4 byte fields with BigInteger.toByteArray(), padded in front with zeros.
+ * That is two's complement for positive numbers, but a negative number that fits in fewer bytes
+ * is padded with zeros rather than ones: -1 goes on the wire as 0x000000ff and reads back as 255.
+ * Use toWire on a value before writing it to keep that format. Reading is plain two's complement.
+ * </pre>
+ */
+public class WireCodec {
+
+    /**
+     * Returns the int whose big endian bytes are what BigInteger padding wrote for value
+     * @param value The value of a 4 byte header field
+     * @return The value to write in its place
+     */
+    public static int toWire(int value) {
+	if(value >= -0x80) {
+	    return (value >= 0) ? value : (value & 0xff);
+	}else if(value >= -0x8000) {
+	    return value & 0xffff;
+	}else if(value >= -0x800000) {
+	    return value & 0xffffff;
+	}
+	return value;
+    }
+
+    /**
+     * @param buf The buffer to read from
+     * @param offset Where the byte is
+     * @return The byte at offset as a number from 0 to 255
+     */
+    public static int getUnsignedByte(byte[] buf, int offset) {
+	return buf[offset] & 0xff;
+    }
+
+    /**
+     * Write a 2 byte big endian unsigned number
+     * @param buf The buffer to write to
+     * @param offset Where the first byte goes
+     * @param value The value to write, from 0 to 65535
+     */
+    public static void putShort(byte[] buf, int offset, int value) {
+	buf[offset] = (byte)(value >>> 8);
+	buf[offset + 1] = (byte)value;
+    }
+
+    /**
+     * Read a 2 byte big endian unsigned number
+     * @param buf The buffer to read from
+     * @param offset Where the first byte is
+     * @return The value read, from 0 to 65535
+     */
+    public static int getUnsignedShort(byte[] buf, int offset) {
+	return ((buf[offset] & 0xff) << 8) | (buf[offset + 1] & 0xff);
+    }
+
+    /**
+     * Write a 4 byte big endian int
+     * @param buf The buffer to write to
+     * @param offset Where the first byte goes
+     * @param value The value to write
+     */
+    public static void putInt(byte[] buf, int offset, int value) {
+	buf[offset] = (byte)(value >>> 24);
+	buf[offset + 1] = (byte)(value >>> 16);
+	buf[offset + 2] = (byte)(value >>> 8);
+	buf[offset + 3] = (byte)value;
+    }
+
+    /**
+     * Read a 4 byte big endian int
+     * @param buf The buffer to read from
+     * @param offset Where the first byte is
+     * @return The value read
+     */
+    public static int getInt(byte[] buf, int offset) {
+	return ((buf[offset] & 0xff) << 24) |
+	    ((buf[offset + 1] & 0xff) << 16) |
+	    ((buf[offset + 2] & 0xff) << 8) |
+	    (buf[offset + 3] & 0xff);
+    }
+
+    /**
+     * Read one byte at the position of the buffer and move past it
+     * @param buf The buffer to read from
+     * @return The byte as a number from 0 to 255
+     */
+    public static int getUnsignedByte(ByteBuffer buf) {
+	return buf.get() & 0xff;
+    }
+
+    /**
+     * Write a 2 byte big endian unsigned number at the position of the buffer and move past it
+     * @param buf The buffer to write to
+     * @param value The value to write, from 0 to 65535
+     */
+    public static void putShort(ByteBuffer buf, int value) {
+	buf.put((byte)(value >>> 8));
+	buf.put((byte)value);
+    }
+
+    /**
+     * Read a 2 byte big endian unsigned number at the given index of the buffer, without moving its position
+     * @param buf The buffer to read from
+     * @param index Where the first byte is
+     * @return The value read, from 0 to 65535
+     */
+    public static int getUnsignedShort(ByteBuffer buf, int index) {
+	return ((buf.get(index) & 0xff) << 8) | (buf.get(index + 1) & 0xff);
+    }
+
+    /**
+     * Write a 4 byte big endian int at the position of the buffer and move past it
+     * @param buf The buffer to write to
+     * @param value The value to write
+     */
+    public static void putInt(ByteBuffer buf, int value) {
+	buf.put((byte)(value >>> 24));
+	buf.put((byte)(value >>> 16));
+	buf.put((byte)(value >>> 8));
+	buf.put((byte)value);
+    }
+
+    /**
+     * Read a 4 byte big endian int at the position of the buffer and move past it
+     * @param buf The buffer to read from
+     * @return The value read
+     */
+    public static int getInt(ByteBuffer buf) {
+	return ((buf.get() & 0xff) << 24) |
+	    ((buf.get() & 0xff) << 16) |
+	    ((buf.get() & 0xff) << 8) |
+	    (buf.get() & 0xff);
+    }
+}
@@ -1,6 +1,8 @@
 import java.nio.*;
+import java.util.*;
+import java.io.Serializable;
 
-public class AsyncReceiveHelper {
+public class AsyncReceiveHelper implements Serializable {
 	private final long retryInterval = 100; // how frequently we retry to connect while pending
     private final TCPManager tcpMan;
     private final Node node;
@@ -17,6 +19,9 @@ public class AsyncReceiveHelper {
 
     private boolean isFlushing;
 
+    // Segments received beyond a hole, by sequence number
+    private TreeMap<Integer, Transport> outOfOrder;
+
     public AsyncReceiveHelper(TCPSockWrapper wrapper, Node node, TCPManager tcpMan, int seq){
     	this.foreignAddress = wrapper.getTCPSock().getForeignAddress();
     	this.foreignPort = wrapper.getTCPSock().getForeignPort();
@@ -30,6 +35,7 @@ public class AsyncReceiveHelper {
     	this.timeout = retryInterval;
 
     	this.isFlushing = false;
+        this.outOfOrder = new TreeMap<Integer, Transport>();
 
     	Debug.log(node, "AsyncReceiveHelper: Initializing a new receive helper");
     	Debug.log(node, "\tForeign address " + foreignAddress + ":" + foreignPort);
@@ -38,24 +44,31 @@ public class AsyncReceiveHelper {
     }
 
     public void processData(Transport t){
-        Debug.log("AsyncReceiveHelper: Received a sequence with length " + t.getPayload().length);
+        Debug.log(node, "AsyncReceiveHelper: Received a sequence with length " + t.getPayload().length);
     	if(t.getType() == Transport.FIN){
             node.logOutput("time = " + tcpMan.getManager().now() + " msec");
             node.logOutput("\treceived FIN from " + wrapper.getTCPSock().getForeignAddress());
-            Debug.trace("F");
+            Debug.trace(node, "F");
             processTermination();
             return;
+        }else if(t.getSeqNum() > highestSeqReceived){
+            Debug.log(node, "AsyncReceiveHelper: Keeping sequence number " 
+                + t.getSeqNum() + " received beyond a hole at " + highestSeqReceived);
+            Debug.trace(node, "?");
+            keepOutOfOrder(t);
+            sendAck(highestSeqReceived);
+            return;
         }else if(t.getSeqNum() != highestSeqReceived){
-            Debug.log("AsyncReceiveHelper: Received sequence number " 
+            Debug.log(node, "AsyncReceiveHelper: Received sequence number " 
                 + t.getSeqNum() + ", expected " + (highestSeqReceived));
-            Debug.trace("!");
-            Debug.trace("?");
+            Debug.trace(node, "!");
+            Debug.trace(node, "?");
             sendAck(highestSeqReceived);
             return;
         }
 
-        Debug.trace(".");
-        Debug.log("AsyncReceiveHelper: Received sequence number " 
+        Debug.trace(node, ".");
+        Debug.log(node, "AsyncReceiveHelper: Received sequence number " 
             + t.getSeqNum() + ", expected " + highestSeqReceived + 1);
 
         // abort if not enough space remaining
@@ -69,6 +82,9 @@ public class AsyncReceiveHelper {
         // send ACK
     	try{
     		wrapper.writeToReadBuff(t.getPayload());
+            if(!outOfOrder.isEmpty()){
+                deliverOutOfOrder();
+            }
     		sendAck(highestSeqReceived);
     	}catch (BufferOverflowException boe){
     		Debug.log(node, "AsyncReceiveHelper: Read buffer overflowed");
@@ -82,11 +98,10 @@ public class AsyncReceiveHelper {
     		// Make a transport to send the data
     		Transport t = new Transport(localPort, foreignPort, 
     			Transport.ACK, wrapper.getReadBuffSpaceRemaining(), seqToAcknowledge, 
-                new byte[0]);
+                wrapper.isSelectiveAck() ? sackBlocks() : new byte[0]);
 
     		// Send the packet over the wire
-    		node.sendSegment(localAddress, foreignAddress, 
-    			Protocol.TRANSPORT_PKT, t.pack());
+    		node.sendSegment(localAddress, foreignAddress, t);
 
     	}catch(IllegalArgumentException iae){
             System.err.println("AsyncReceiveHelper: Shouldn't be here" 
@@ -104,5 +119,66 @@ public class AsyncReceiveHelper {
 
     private void processTermination(){
         wrapper.close();
+        for(Transport t : outOfOrder.values()){
+            t.release();
+        }
+        outOfOrder.clear();
+    }
+
+    /**
+     * Keep a segment that arrived beyond a hole until
+     * the hole is filled, if it will fit in the read
+     * buffer by then.
+     */
+    private void keepOutOfOrder(Transport t){
+        int end = t.getSeqNum() + t.getPayload().length;
+        if(outOfOrder.containsKey(t.getSeqNum())
+            || end - highestSeqReceived > wrapper.getReadBuffSpaceRemaining()){
+            return;
+        }
+        outOfOrder.put(t.getSeqNum(), t.retain());
+    }
+
+    /**
+     * Move the segments kept out of order that now
+     * follow on from what has been received into the
+     * read buffer.
+     */
+    private void deliverOutOfOrder(){
+        while(!outOfOrder.isEmpty() && outOfOrder.firstKey() <= highestSeqReceived){
+            Transport t = outOfOrder.pollFirstEntry().getValue();
+            byte[] payload = t.getPayload();
+            int skip = highestSeqReceived - t.getSeqNum(); // already received
+            if(skip < payload.length){
+                wrapper.writeToReadBuff(payload, skip, payload.length - skip);
+                highestSeqReceived += payload.length - skip;
+            }
+            t.release();
+        }
+    }
+
+    /**
+     * The ranges of segments kept out of order, lowest
+     * first, as the payload of an ACK.
+     */
+    private byte[] sackBlocks(){
+        int maxBlocks = SackOption.maxBlocks(node.getSettings().getMtu());
+        int[] starts = new int[maxBlocks];
+        int[] ends = new int[maxBlocks];
+        int count = 0;
+        for(Transport t : outOfOrder.values()){
+            int start = t.getSeqNum();
+            int end = start + t.getPayload().length;
+            if(count > 0 && start <= ends[count - 1]){
+                ends[count - 1] = Math.max(ends[count - 1], end);
+            }else if(count < maxBlocks){
+                starts[count] = start;
+                ends[count] = end;
+                count++;
+            }else{
+                break;
+            }
+        }
+        return SackOption.pack(starts, ends, count);
     }
 }
\ No newline at end of file
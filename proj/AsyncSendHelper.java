@@ -1,13 +1,14 @@
-import java.lang.reflect.Method;
 import java.util.*;
+import java.io.Serializable;
 
-public class AsyncSendHelper{
-    public static boolean CONGESTION_CONTROL = true;        // should account for congestion?
-    
-    private final int INITIAL_RETRY_INTERVAL = 1000;        // how frequently we retry a packet (ms)
-    private final int DEFAULT_WINDOW = Integer.MAX_VALUE;   // how large should default window be (bytes)
+public class AsyncSendHelper implements Serializable {
+    private final int INITIAL_RETRY_INTERVAL = 1000;        // how frequently we retry a packet before an RTT is measured (ms)
+    private final int MIN_RETRY_INTERVAL = 200;             // floor of the timeout, so delayed ACKs and jitter don't fire it (ms)
+    private final int MAX_RETRY_INTERVAL = 60000;           // ceiling of the timeout as it backs off (ms)
+    private final int DEFAULT_WINDOW = 0;                   // window until the receiver advertises one; a timeout probes it (bytes)
     private final double ALPHA = .125;                      // meta-var for RTT prediction (ms)
     private final double BETA = .25;                        // meta-var for RTT std. dev prediction (ms)
+    private final int DUP_ACK_THRESHOLD = 3;                // duplicate ACKs before a fast retransmit
 
     private final TCPManager tcpMan;
     private final Node node;
@@ -22,18 +23,30 @@ public class AsyncSendHelper{
 
     private int highestSeqSent;
     private int highestSeqConfirmed;
-    private int cwnd;
+    private int flowWindow; // the receiver's advertised window
     private int timeout;
     
     private boolean isFlushing;
 
     private int rttEst; // round trip time estimate
     private int rttDev; // round trip std. dev estimate
+    private boolean hasRttSample;
 
-    /* Congestion control */
-    private int ssThresh;
+    /* Congestion control, null if off */
+    private CongestionController congestion;
     private int lastSeqAckd;
     private int numAckRepeats;
+    private boolean inFastRecovery;
+    private int recover;        // highest seq sent when fast recovery began
+
+    /* Seqs still to resend after a timeout or SACK loss: resendNext up to resendEnd */
+    private int resendNext;
+    private int resendEnd;
+    private int highestSacked;  // seq after the highest block the receiver holds
+
+    /* Pacing: when the next new segment may go, in microseconds, if the socket paces */
+    private WheelTimer paceTimer;
+    private long nextSendTime;
 
     public AsyncSendHelper(TCPSockWrapper wrapper, Node node, TCPManager tcpMan, int seq){
     	this.foreignAddress = wrapper.getTCPSock().getForeignAddress();
@@ -46,25 +59,39 @@ public class AsyncSendHelper{
     	this.tcpMan = tcpMan;
     	this.highestSeqConfirmed = seq;
     	this.highestSeqSent = seq;
-        this.cwnd = DEFAULT_WINDOW;
+        this.flowWindow = DEFAULT_WINDOW;
     	this.timeout = INITIAL_RETRY_INTERVAL;
 
-        this.ssThresh = Integer.MAX_VALUE;
+        if(wrapper.getCongestionControl() != null){
+            this.congestion = CongestionControllers.newController(
+                wrapper.getCongestionControl(), maxSegmentSize());
+        }
         this.lastSeqAckd = -1;
         this.numAckRepeats = 0;
-
-        try{
-            this.transportBuffer = new TransportBuffer(Callback.getMethod("goBackN", this, null), 
-                this, null, tcpMan.getManager(), node);
-        }catch (Exception e){
-            System.err.println("AsyncSendHelper: ERROR; couldn't get goBackN method");
-            e.printStackTrace();
-        }
+        this.inFastRecovery = false;
+        this.recover = seq;
+        this.resendNext = seq;
+        this.resendEnd = seq;
+        this.highestSacked = seq;
+
+        this.transportBuffer = new TransportBuffer(new TaskCallback(){
+                public void run(){
+                    handleTimeout();
+                }
+            }, tcpMan.getManager(), node);
+
+        this.paceTimer = new WheelTimer(new TaskCallback(){
+                public void run(){
+                    flush();
+                }
+            });
+        this.nextSendTime = 0;
 
     	this.isFlushing = false;
 
         this.rttEst = INITIAL_RETRY_INTERVAL;
         this.rttDev = 0;
+        this.hasRttSample = false;
     }
 
     /**
@@ -84,41 +111,36 @@ public class AsyncSendHelper{
             return;
         }
 
-        // We may want to adjust window for congestion control
-        if(CONGESTION_CONTROL){
-            checkForTripleAck(transport.getSeqNum());
+        // duplicate ACKs carry SACK blocks too
+        if(wrapper.isSelectiveAck()){
+            recordSackBlocks(transport);
         }
 
+        // a third duplicate means a lost segment, whether or not
+        // congestion control is on
+        checkForTripleAck(transport.getSeqNum());
+
         // make sure that we're not receiving a stale ack
         if(transport.getSeqNum() <= highestSeqConfirmed){
-            Debug.log("AsyncSendHelper: Received seqNum = " + transport.getSeqNum() 
+            Debug.log(node, "AsyncSendHelper: Received seqNum = " + transport.getSeqNum() 
                 + ", expected " + highestSeqConfirmed);
-            Debug.trace("?");
+            Debug.trace(node, "?");
             return;
         }else{
-            Debug.trace(":");
+            Debug.trace(node, ":");
         }
 
         // advance window 
+        int newlyAcked = transport.getSeqNum() - 1 - highestSeqConfirmed;
         highestSeqConfirmed = transport.getSeqNum() - 1;
-
-        // update window size
-        if(CONGESTION_CONTROL){
-            if(cwnd < ssThresh){
-                cwnd += Transport.MAX_PAYLOAD_SIZE;
-            }else{
-                cwnd += (int)((double) Transport.MAX_PAYLOAD_SIZE / cwnd);
-            }
-
-            // either congestion or flow may limit window
-            cwnd = Math.min(cwnd, transport.getWindow());
-        }else{
-            // use vanilla flow control
-            cwnd = transport.getWindow();
-        }
+        boolean partialAck = false;
+        long now = tcpMan.getManager().now();
 
         // remove outdated transports
         Queue<TransportWrapper> bufferedTransports = transportBuffer.getAllTransports();
+        TransportWrapper sampled = null;
+        long lastResent = -1;
+        boolean sentOnce = false;
         while(!bufferedTransports.isEmpty()){
             TransportWrapper tw = bufferedTransports.peek();
             Transport t = tw.getTransport();
@@ -126,16 +148,74 @@ public class AsyncSendHelper{
             // check if this Transport is old (stale)
             if(t.getSeqNum() < highestSeqConfirmed){
                 bufferedTransports.poll();
-
-                // adjust our RTT estimate/timeout
-                adjustRTT(tcpMan.getManager().now() - tw.getTimeSent());
+                t.release(); // its payload can be reused
+
+                if(tw.isRetransmitted()){
+                    lastResent = Math.max(lastResent, tw.getTimeSent());
+                }else{
+                    sentOnce = true;
+                    if(!tw.isSacked()){
+                        sampled = tw;
+                    }
+                }
             }else{
                 break;
             }
         }
 
-        // pause timer while we flush
-        transportBuffer.stopTimer();
+        // adjust our RTT estimate/timeout from the newest transport
+        // acknowledged that was sent only once (Karn's algorithm) and
+        // not held by the receiver, since the ACK of a resent one may
+        // be for either copy and that of a held one comes long after
+        // it arrived. SACK blocks get lost or run out, so only one sent
+        // after the resend that filled the gap is sure not to be held
+        if(sampled != null && sampled.getTimeSent() > lastResent){
+            long rtt = now - sampled.getTimeSent();
+            adjustRTT(rtt);
+            if(congestion != null){
+                congestion.onRttSample(rtt, now);
+            }
+        }else if(sentOnce){
+            // still an ACK of a segment sent only once, which is
+            // all Karn's algorithm asks to end the backoff
+            resetTimeout();
+        }
+
+        // update window size
+        if(newlyAcked == 0){
+            // a duplicate; any inflation is done already
+        }else if(inFastRecovery && highestSeqConfirmed < recover){
+            // partial ACK: the next hole was lost too
+            partialAck = congestion == null || congestion.onPartialAck(newlyAcked);
+            inFastRecovery = partialAck;
+        }else if(inFastRecovery){
+            // everything outstanding at the loss is acknowledged
+            inFastRecovery = false;
+            if(congestion != null){
+                congestion.onRecovered(now);
+            }
+        }else if(congestion != null){
+            congestion.onAck(newlyAcked, highestSeqSent - highestSeqConfirmed, now);
+        }
+
+        // either congestion or flow may limit window
+        if(congestion != null){
+            congestion.onWindowUpdate(transport.getWindow());
+        }
+        flowWindow = transport.getWindow();
+
+        if(partialAck && wrapper.isSelectiveAck()){
+            markSackHoles();
+        }else if(partialAck){
+            retransmitFirstUnacked();
+        }
+
+        // restart the timer only when new data is acknowledged,
+        // so duplicates can't keep putting off the timeout
+        // (RFC 6298 5.3); flush starts it again if need be
+        if(newlyAcked > 0){
+            transportBuffer.stopTimer();
+        }
 
         // send new packets via flush
         flush();
@@ -154,6 +234,10 @@ public class AsyncSendHelper{
         Debug.log(node, "\tAsyncSendHelper: Highest seq sent = " + highestSeqSent);
         Debug.log(node, "\tAsyncSendHelper: Highest seq ackd = " + highestSeqConfirmed);
 
+        if(resendNext < resendEnd){
+            resendLost();
+        }
+
         // check if we're done flushing
     	if(wrapper.getWriteBuffSize() == 0){
             handleDoneFlushing();
@@ -163,7 +247,8 @@ public class AsyncSendHelper{
         }
 
         /* Send full window */
-        while(highestSeqSent < highestSeqConfirmed + cwnd){
+        int window = sendWindow();
+        while(highestSeqSent - highestSeqConfirmed < window){
 
             // are we done sending?
             if(wrapper.getWriteBuffSize() == 0){
@@ -171,59 +256,50 @@ public class AsyncSendHelper{
                 return;
             }
 
+            // wait for our turn if pacing
+            if(wrapper.isPacing() && !mayPace()){
+                break;
+            }
+
             // Determine num bytes to send
+            int mss = maxSegmentSize();
+            long windowLeft = (long) window - (highestSeqSent - highestSeqConfirmed) + 1;
             int numBytesToSend = 0;
-            if(Transport.MAX_PAYLOAD_SIZE <= wrapper.getWriteBuffSize() 
-                && Transport.MAX_PAYLOAD_SIZE <= highestSeqConfirmed + cwnd - highestSeqSent + 1){
-                numBytesToSend = Transport.MAX_PAYLOAD_SIZE;
-            }else if(wrapper.getWriteBuffSize() <= Transport.MAX_PAYLOAD_SIZE
-                && wrapper.getWriteBuffSize() <= highestSeqConfirmed + cwnd - highestSeqSent + 1){
+            if(mss <= wrapper.getWriteBuffSize() 
+                && mss <= windowLeft){
+                numBytesToSend = mss;
+            }else if(wrapper.getWriteBuffSize() <= mss
+                && wrapper.getWriteBuffSize() <= windowLeft){
                 numBytesToSend = wrapper.getWriteBuffSize();
             }else {
-                numBytesToSend = highestSeqConfirmed + cwnd - highestSeqSent + 1;
+                numBytesToSend = (int) windowLeft;
             }
 
-            byte[] payload = wrapper.readFromWriteBuff(numBytesToSend);
+            byte[] payload = wrapper.readFromWriteBuff(numBytesToSend, node.getBufferPool());
             tryToSendBytes(payload, highestSeqSent + 1);
 
-            Debug.trace(".");
+            Debug.trace(node, ".");
 
             // advance window
             highestSeqSent += payload.length;
+
+            if(wrapper.isPacing()){
+                pace(payload.length);
+            }
         }
 
-        transportBuffer.startTimer(timeout);
+        startRetransmitTimer();
     }
 
     /**
-     * Resend all buffered Transports, as the timer
-     * has run out.
+     * Resend the buffered Transports, as the timer has
+     * run out. With SACK, the ones the receiver reported
+     * holding are left out (see resendLost).
      */
-    public void goBackN(){
-        Debug.log(node, "AsyncSendHelper: Firing goBackN with " 
+    public void handleTimeout(){
+        Debug.log(node, "AsyncSendHelper: Timeout with " 
             + transportBuffer.getAllTransports().size() + " remaining transports in buffer");
-        
-        if(CONGESTION_CONTROL){
-            ssThresh = (int)(cwnd / 2.0);
-            cwnd = Transport.MAX_PAYLOAD_SIZE;
-        }
-
-        if(transportBuffer.getAllTransports().size() == 1){
-            Debug.log(node, "\tBytes in single transport = " 
-                + transportBuffer.peekTransport().getTransport().getPayload().length);
-            Debug.log(node, "\tSeqNum of single transport = " 
-                + transportBuffer.peekTransport().getTransport().getSeqNum());
-        }
-
-        for(TransportWrapper tw : transportBuffer.getAllTransports()){
-            tw.setTimeSent(tcpMan.getManager().now());
-            Debug.trace("!");
-            node.sendSegment(localAddress, foreignAddress, 
-                Protocol.TRANSPORT_PKT, tw.getTransport().pack());
-        }
-
-        transportBuffer.startTimer(timeout);
-        flush();
+        resendBuffered();
     }
 
     /**
@@ -261,6 +337,186 @@ public class AsyncSendHelper{
      * ###############################
      */
 
+    /**
+     * The most data bytes one segment can carry
+     * at the MTU the node is configured with.
+     *
+     * @return int The maximum segment size
+     */
+    private int maxSegmentSize(){
+        return Transport.maxPayloadSize(node.getSettings().getMtu());
+    }
+
+    /**
+     * How many bytes may be unacknowledged at once.
+     *
+     * @return int The smaller of the congestion window
+     *      and the receiver's window
+     */
+    private int sendWindow(){
+        if(congestion == null){
+            return flowWindow;
+        }
+        return Math.min(congestion.getWindow(), flowWindow);
+    }
+
+    /**
+     * Resend buffered Transports and carry on flushing.
+     * Only as many go at once as the window allows; the
+     * rest follow as ACKs open it (see resendLost).
+     */
+    private void resendBuffered(){
+        // the receiver only reports a reopened window in an ACK,
+        // so let a segment through a closed one to probe it
+        flowWindow = Math.max(flowWindow, maxSegmentSize());
+
+        if(congestion != null){
+            congestion.onTimeout(highestSeqSent - highestSeqConfirmed, tcpMan.getManager().now());
+        }
+
+        // duplicate ACKs for what is resent here must not
+        // start a fast retransmit
+        inFastRecovery = false;
+        recover = highestSeqSent;
+
+        if(transportBuffer.getAllTransports().size() == 1){
+            Debug.log(node, "\tBytes in single transport = " 
+                + transportBuffer.peekTransport().getTransport().getPayload().length);
+            Debug.log(node, "\tSeqNum of single transport = " 
+                + transportBuffer.peekTransport().getTransport().getSeqNum());
+        }
+
+        resendNext = highestSeqConfirmed + 1;
+        resendEnd = highestSeqSent + 1;
+
+        // back off until an ACK of a segment sent only once
+        // gives a new estimate (Karn's algorithm)
+        timeout = Math.min(timeout * 2, MAX_RETRY_INTERVAL);
+
+        transportBuffer.startTimer(timeout);
+        flush();
+    }
+
+    /**
+     * Resend the first Transport not yet acknowledged,
+     * which the receiver is missing.
+     */
+    private void retransmitFirstUnacked(){
+        TransportWrapper tw = transportBuffer.peekTransport();
+        if(tw == null){
+            return;
+        }
+        Debug.log(node, "AsyncSendHelper: Fast retransmit of sequence number " 
+            + tw.getTransport().getSeqNum());
+        resend(tw);
+    }
+
+    /**
+     * Start the retransmission timer once a flush is done,
+     * unless it is running already; restarting it would
+     * hold off the timeout of the oldest segment. Stop it
+     * once everything sent is acknowledged and nothing is
+     * left to send (RFC 6298 5.2). While data waits on a
+     * closed window it keeps running, to probe the window.
+     */
+    private void startRetransmitTimer(){
+        if(highestSeqSent == highestSeqConfirmed && wrapper.getWriteBuffSize() == 0){
+            transportBuffer.stopTimer();
+        }else if(!transportBuffer.isTimerRunning()){
+            transportBuffer.startTimer(timeout);
+        }
+    }
+
+    /**
+     * Put off the next new segment until the one just
+     * sent has gone at the pacing rate, so a window goes
+     * out over a round trip rather than in one burst
+     * that overflows the queue at the bottleneck.
+     *
+     * @param bytes int The size of the segment just sent
+     */
+    private void pace(int bytes){
+        double rate = pacingRate();
+        if(rate <= 0){
+            // no round trip measured yet
+            return;
+        }
+        long now = tcpMan.getManager().now() * 1000;
+        nextSendTime = Math.max(nextSendTime, now) + Math.round(bytes * 1000 / rate);
+    }
+
+    /**
+     * Timers only fire on whole milliseconds, so every
+     * segment whose turn comes within the current one goes
+     * now. The rate holds on average, with bursts of at
+     * most a millisecond's worth of segments; keeping the
+     * send time in microseconds carries the remainder over
+     * rather than rounding each gap up to a millisecond.
+     * Otherwise wake up on the millisecond of our turn,
+     * leaving the timer alone if it is already set for it.
+     *
+     * @return boolean True if a new segment may go now
+     */
+    private boolean mayPace(){
+        long now = tcpMan.getManager().now();
+        if(nextSendTime < (now + 1) * 1000){
+            return true;
+        }
+        long wakeUp = nextSendTime / 1000;
+        if(!paceTimer.isPending() || paceTimer.getExpires() != wakeUp){
+            tcpMan.getManager().getTimingWheel().scheduleAt(paceTimer, wakeUp);
+        }
+        return false;
+    }
+
+    /**
+     * @return double How fast to send new segments when
+     *      pacing (bytes/ms), or 0 if not known yet
+     */
+    private double pacingRate(){
+        if(!hasRttSample){
+            return 0;
+        }else if(congestion == null){
+            return (double) flowWindow / Math.max(rttEst, 1);
+        }
+        return congestion.getPacingRate(rttEst);
+    }
+
+    /**
+     * Resend the Transports a timeout or SACK left marked
+     * lost that now fit in the window, in order, leaving
+     * out any the receiver reported holding. Sending them
+     * all at once would overflow the queue that most likely
+     * caused the loss.
+     */
+    private void resendLost(){
+        resendNext = Math.max(resendNext, highestSeqConfirmed + 1);
+        int window = sendWindow();
+        for(TransportWrapper tw : transportBuffer.getAllTransports()){
+            Transport t = tw.getTransport();
+            if(t.getSeqNum() < resendNext){
+                continue;
+            }else if(t.getSeqNum() >= resendEnd || t.getSeqNum() - highestSeqConfirmed > window){
+                break;
+            }
+
+            if(!(wrapper.isSelectiveAck() && tw.isSacked())){
+                resend(tw);
+            }
+            resendNext = t.getSeqNum() + t.getPayload().length;
+        }
+    }
+
+    /**
+     * Send a buffered Transport again.
+     */
+    private void resend(TransportWrapper tw){
+        tw.setTimeSent(tcpMan.getManager().now());
+        tw.setRetransmitted(true);
+        Debug.trace(node, "!");
+        node.sendSegment(localAddress, foreignAddress, tw.getTransport());
+    }
+
     /**
      * Try to send some bytes down the wire.
      * it assumes that the payload is data, so
@@ -274,15 +530,15 @@ public class AsyncSendHelper{
         Debug.log(node, "AsyncSendHelper: Sending " + payload.length 
             + " bytes over network: sequence number " + seqNum);
         try{
-            // Make a transport to send the data
+            // Make a transport to send the data. The payload goes
+            // back to the pool once the transport is acknowledged
             Transport t = new Transport(localPort, foreignPort, 
-                Transport.DATA, -1, seqNum, payload);
+                Transport.DATA, -1, seqNum, payload, node.getBufferPool());
 
             transportBuffer.addTransport(t, tcpMan.getManager().now());
 
             // Send the packet over the wire
-            node.sendSegment(localAddress, foreignAddress, 
-                Protocol.TRANSPORT_PKT, t.pack());
+            node.sendSegment(localAddress, foreignAddress, t);
 
         }catch(IllegalArgumentException iae){
             System.err.println("AsyncSendHelper: Shouldn't be here " 
@@ -302,7 +558,7 @@ public class AsyncSendHelper{
     private void handleDoneFlushing(){
         isFlushing = false;
 
-        transportBuffer.startTimer(timeout);
+        startRetransmitTimer();
 
         // node.logOutput("time = " + tcpMan.getManager().now() + " msec");
         // node.logOutput("\tDone flushing, still " + transportBuffer.getAllTransports().size() 
@@ -339,6 +595,7 @@ public class AsyncSendHelper{
         // node.logOutput("\tsent FIN to " + wrapper.getTCPSock().getForeignAddress());
 
         transportBuffer.stopTimer();
+        tcpMan.getManager().getTimingWheel().cancel(paceTimer);
 
         try{
             // Make a transport to send the data
@@ -346,10 +603,9 @@ public class AsyncSendHelper{
                 Transport.FIN, -1, seqNum, new byte[0]);
 
             // Send the packet over the wire
-            node.sendSegment(localAddress, foreignAddress, 
-                Protocol.TRANSPORT_PKT, t.pack());
+            node.sendSegment(localAddress, foreignAddress, t);
 
-            Debug.trace("F");
+            Debug.trace(node, "F");
 
         }catch(IllegalArgumentException iae){
             System.err.println("AsyncSendHelper: Shouldn't be here " 
@@ -359,41 +615,116 @@ public class AsyncSendHelper{
         }
     }
 
+    /**
+     * Mark the buffered Transports that lie wholly
+     * inside a SACK block of an incoming ACK, so that
+     * they are not resent.
+     *
+     * @param ack The incoming ACK
+     */
+    private void recordSackBlocks(Transport ack){
+        int numBlocks = SackOption.numBlocks(ack);
+        for(int i = 0; i < numBlocks; i++){
+            int start = SackOption.getStart(ack, i);
+            int end = SackOption.getEnd(ack, i);
+            highestSacked = Math.max(highestSacked, end);
+            for(TransportWrapper tw : transportBuffer.getAllTransports()){
+                Transport t = tw.getTransport();
+                if(t.getSeqNum() >= start && t.getSeqNum() + t.getPayload().length <= end){
+                    tw.setSacked(true);
+                }
+            }
+        }
+    }
+
+    /**
+     * Mark every segment below the highest one the
+     * receiver holds, and not held itself, as lost,
+     * so that flush resends each hole once (as in
+     * RFC 6675) rather than one per partial ACK.
+     */
+    private void markSackHoles(){
+        resendEnd = Math.max(resendEnd, Math.max(highestSacked, highestSeqConfirmed + 2));
+    }
+
     /**
      * Adjust the last sequence ACK'ed and its
-     * count, based off of an incoming ACK. If this
-     * is a triple ACK, then we adjust for congestion
-     * control.
+     * count, based off of an incoming ACK. On the
+     * third duplicate, resend the missing segment,
+     * or with SACK every hole, and enter fast
+     * recovery, telling the congestion controller,
+     * if any, of the loss and of each further
+     * duplicate.
      *
      * @param seq The incoming packet sequence number
      */
     private void checkForTripleAck(int seq){
-        if(lastSeqAckd == seq){
+        if(lastSeqAckd == seq && highestSeqSent > highestSeqConfirmed){
             numAckRepeats++;
         }else{
             lastSeqAckd = seq;
-            numAckRepeats = 1;
+            numAckRepeats = 0;
+            return;
         }
 
-        if(numAckRepeats == 3){
-            cwnd = (int)(cwnd / 2.0);
-            ssThresh = cwnd;
+        if(inFastRecovery){
+            if(wrapper.isSelectiveAck()){
+                markSackHoles();
+            }
+            if(congestion != null){
+                congestion.onDupAck();
+            }
+        }else if(numAckRepeats == DUP_ACK_THRESHOLD && highestSeqConfirmed >= recover){
+            recover = highestSeqSent;
+            inFastRecovery = true;
+            if(wrapper.isSelectiveAck()){
+                resendNext = highestSeqConfirmed + 1;
+                markSackHoles();
+            }else{
+                retransmitFirstUnacked();
+            }
+            if(congestion != null){
+                congestion.onLoss(highestSeqSent - highestSeqConfirmed, tcpMan.getManager().now());
+            }
         }
 
-        Debug.log("AsyncSendHelper: CWND = " + cwnd);
-        Debug.log("AsyncSendHelper: ssThresh = " + ssThresh);
+        if(congestion != null){
+            Debug.log(node, "AsyncSendHelper: CWND = " + congestion.getWindow());
+        }
     }
 
     /**
      * Adjust the RTT estimate and std. dev, along
-     * with the timeout.
+     * with the timeout, as in RFC 6298. The first
+     * measurement replaces the initial guess outright.
+     * This also ends any backoff of the timeout.
      *
      * @param rttMeasured long The measured RTT
      *      of a given ack.
      */
     private void adjustRTT(long rttMeasured){
-        rttEst = (int)((1.0 - ALPHA)*rttEst + ALPHA * rttMeasured);
-        rttDev = (int)((1.0 - BETA)*rttDev + BETA * Math.abs(rttEst - rttMeasured));
-        timeout = rttEst + 4*rttDev;
+        if(!hasRttSample){
+            rttEst = (int) rttMeasured;
+            rttDev = (int) rttMeasured / 2;
+            hasRttSample = true;
+        }else{
+            rttDev = (int)((1.0 - BETA)*rttDev + BETA * Math.abs(rttEst - rttMeasured));
+            rttEst = (int)((1.0 - ALPHA)*rttEst + ALPHA * rttMeasured);
+        }
+        resetTimeout();
+    }
+
+    /**
+     * Set the timeout from the RTT estimate and std. dev,
+     * ending any backoff. Before the first measurement
+     * there is nothing to go on, so a backoff stays: the
+     * initial guess was too short for this path.
+     */
+    private void resetTimeout(){
+        if(!hasRttSample){
+            return;
+        }
+        timeout = rttEst + Math.max(1, 4*rttDev);
+        timeout = Math.min(Math.max(timeout, MIN_RETRY_INTERVAL), MAX_RETRY_INTERVAL);
     }
 }
\ No newline at end of file
@@ -0,0 +1,176 @@
+/**
+ * A model-based congestion controller in the style of BBR. Rather
+ * than reacting to losses, it measures the path: the bottleneck
+ * bandwidth, as the highest delivery rate over the last BW_ROUNDS
+ * round trips, and the propagation delay, as the lowest RTT over the
+ * last MIN_RTT_WINDOW ms. The window is a multiple of their product,
+ * the bandwidth-delay product.
+ *
+ * While the bandwidth estimate keeps growing (startup) the multiple
+ * is HIGH_GAIN, so the window doubles each round trip like slow
+ * start. Once it stops growing, the multiple drops to CWND_GAIN.
+ *
+ * A sender that paces sends at the bandwidth estimate times a gain:
+ * HIGH_GAIN in startup, then cycling through PROBE_GAINS one round
+ * trip each, which probes for more bandwidth and then drains the
+ * queue that made.
+ *
+ * A loss leaves the window alone: on a lossy link, losses say little
+ * about congestion. After a timeout the window starts again from one
+ * segment and grows back to the model.
+ */
+public class BbrController implements CongestionController {
+    private static final double HIGH_GAIN = 2.885;    // 2 / ln 2
+    private static final double CWND_GAIN = 2.0;
+    private static final double STARTUP_GROWTH = 1.25; // bandwidth growth that keeps startup going
+    private static final int STARTUP_ROUNDS = 3;       // round trips without it before startup ends
+    private static final int BW_ROUNDS = 10;
+    private static final long MIN_RTT_WINDOW = 10000;  // ms
+    private static final double[] PROBE_GAINS = { 1.25, 0.75, 1, 1, 1, 1, 1, 1 };
+
+    private final int mss;
+    private int cwnd;
+
+    private double[] bwSamples;   // delivery rate of recent round trips (bytes/ms)
+    private int nextSample;
+    private int delivered;        // bytes acknowledged this round trip
+    private long roundStart;
+
+    private long minRtt;          // or 0 before any sample
+    private long minRttStamp;
+
+    private boolean startup;
+    private double startupBw;     // bandwidth when it last grew enough
+    private int roundsWithoutGrowth;
+    private int probePhase;       // index into PROBE_GAINS once startup is over. Only the pacing rate reads it
+
+    private boolean timedOut;     // growing back after a timeout
+
+    public BbrController(int mss){
+        this.mss = mss;
+        this.cwnd = Integer.MAX_VALUE;
+        this.bwSamples = new double[BW_ROUNDS];
+        this.nextSample = 0;
+        this.delivered = 0;
+        this.roundStart = -1;
+        this.minRtt = 0;
+        this.minRttStamp = 0;
+        this.startup = true;
+        this.startupBw = 0;
+        this.roundsWithoutGrowth = 0;
+        this.probePhase = 0;
+        this.timedOut = false;
+    }
+
+    public int getWindow(){
+        return cwnd;
+    }
+
+    public void onAck(int bytesAcked, int bytesInFlight, long now){
+        if(roundStart < 0){
+            roundStart = now;
+        }
+        delivered += bytesAcked;
+
+        if(minRtt > 0 && now - roundStart >= minRtt){
+            endRound(now);
+        }
+
+        if(timedOut){
+            // slow start back up to the model
+            int target = modelWindow();
+            cwnd = (int) Math.min((long) cwnd + bytesAcked, target);
+            timedOut = cwnd < target;
+        }
+    }
+
+    public void onWindowUpdate(int window){
+        // the sender takes the smaller of the two windows
+    }
+
+    public void onRttSample(long rtt, long now){
+        if(minRtt == 0 || rtt <= minRtt || now - minRttStamp > MIN_RTT_WINDOW){
+            minRtt = rtt;
+            minRttStamp = now;
+        }
+    }
+
+    public void onLoss(int bytesInFlight, long now){
+    }
+
+    public void onDupAck(){
+    }
+
+    public boolean onPartialAck(int bytesAcked){
+        return true;
+    }
+
+    public void onRecovered(long now){
+    }
+
+    public void onTimeout(int bytesInFlight, long now){
+        cwnd = mss;
+        timedOut = true;
+    }
+
+    public double getPacingRate(long srtt){
+        double bw = maxBandwidth();
+        if(bw == 0){
+            // nothing delivered yet: go by the window, as in startup
+            return HIGH_GAIN * cwnd / Math.max(srtt, 1);
+        }
+        return (startup ? HIGH_GAIN : PROBE_GAINS[probePhase]) * bw;
+    }
+
+    /**
+     * Take a bandwidth sample from the round trip that has
+     * just ended, and size the window from the model.
+     */
+    private void endRound(long now){
+        bwSamples[nextSample] = (double) delivered / (now - roundStart);
+        nextSample = (nextSample + 1) % BW_ROUNDS;
+        delivered = 0;
+        roundStart = now;
+
+        if(startup){
+            double bw = maxBandwidth();
+            if(bw >= startupBw * STARTUP_GROWTH){
+                startupBw = bw;
+                roundsWithoutGrowth = 0;
+            }else if(++roundsWithoutGrowth >= STARTUP_ROUNDS){
+                startup = false;
+
+                // start by draining what startup queued
+                probePhase = 1;
+            }
+        }else{
+            // the window does not depend on the phase, so without
+            // pacing this just cycles unread
+            probePhase = (probePhase + 1) % PROBE_GAINS.length;
+        }
+
+        if(!timedOut){
+            cwnd = modelWindow();
+        }
+    }
+
+    /**
+     * @return int The window the model calls for
+     */
+    private int modelWindow(){
+        double gain = startup ? HIGH_GAIN : CWND_GAIN;
+        double bdp = maxBandwidth() * minRtt;
+        return (int) Math.max(4 * mss, Math.min(gain * bdp, Integer.MAX_VALUE));
+    }
+
+    /**
+     * @return double The highest delivery rate sampled (bytes/ms)
+     */
+    private double maxBandwidth(){
+        double max = 0;
+        for(int i = 0; i < BW_ROUNDS; i++){
+            max = Math.max(max, bwSamples[i]);
+        }
+        return max;
+    }
+}
@@ -6,11 +6,24 @@ import java.lang.reflect.Method;
 import java.lang.reflect.InvocationTargetException;
 
 public class CancelableCallback extends Callback{
+	private final Callback callback;
 	private boolean canceled;
 	
 	public CancelableCallback(Method method, Object obj, Object[] params){
-		super(method, obj, params);
-		
+		this(new Callback(method, obj, params));
+	}
+
+	/**
+	 * Wrap an existing callback so that it
+	 * can be canceled.
+	 *
+	 * @param callback The callback to invoke
+	 * 		unless canceled.
+	 */
+	public CancelableCallback(Callback callback){
+		super();
+
+		this.callback = callback;
 		canceled = false;
 	}
 
@@ -27,7 +40,7 @@ public class CancelableCallback extends Callback{
 	@Override
     public void invoke() throws IllegalAccessException, InvocationTargetException {
     	if(!canceled){
-			super.invoke();
+			callback.invoke();
 		}
     }
 
@@ -0,0 +1,105 @@
+import java.io.Serializable;
+
+/**
+ * A congestion control algorithm for one TCP connection. It keeps
+ * the congestion window, and AsyncSendHelper tells it what happens
+ * to the data it sends. All sizes are in bytes and all times in ms.
+ *
+ * The sender does the loss recovery itself: on the third duplicate
+ * ACK it resends the missing segment and calls onLoss, then calls
+ * onDupAck and onPartialAck until every segment outstanding at the
+ * loss is acknowledged, when it calls onRecovered. Outside recovery
+ * it calls onAck for each ACK that acknowledges new data.
+ *
+ * Use CongestionControllers.newController to get one by name.
+ */
+public interface CongestionController extends Serializable {
+    public static final String RENO = "reno";
+    public static final String NEWRENO = "newreno";
+    public static final String CUBIC = "cubic";
+    public static final String VEGAS = "vegas";
+    public static final String BBR = "bbr";
+    public static final String DEFAULT = NEWRENO;
+
+    /**
+     * @return int The congestion window: how many bytes may be
+     *      unacknowledged at once
+     */
+    public int getWindow();
+
+    /**
+     * New data has been acknowledged, outside fast recovery.
+     *
+     * @param bytesAcked int How many bytes it acknowledges
+     * @param bytesInFlight int How many are still unacknowledged
+     * @param now long The current time
+     */
+    public void onAck(int bytesAcked, int bytesInFlight, long now);
+
+    /**
+     * The receiver advertised its window. Sending more than it
+     * is of no use, so the congestion window need not grow past it.
+     *
+     * @param window int The receiver's window
+     */
+    public void onWindowUpdate(int window);
+
+    /**
+     * A round trip was measured, from a segment sent only once.
+     *
+     * @param rtt long The round trip time
+     * @param now long The current time
+     */
+    public void onRttSample(long rtt, long now);
+
+    /**
+     * The third duplicate ACK arrived, so a segment was lost. The
+     * sender has resent it and is entering fast recovery.
+     *
+     * @param bytesInFlight int How many bytes were unacknowledged
+     * @param now long The current time
+     */
+    public void onLoss(int bytesInFlight, long now);
+
+    /**
+     * Another duplicate ACK arrived during fast recovery, so
+     * another segment has left the network.
+     */
+    public void onDupAck();
+
+    /**
+     * An ACK during fast recovery acknowledged some, but not all,
+     * of what was outstanding at the loss.
+     *
+     * @param bytesAcked int How many bytes it acknowledges
+     * @return boolean True to resend the next missing segment and
+     *      stay in fast recovery, false to leave it
+     */
+    public boolean onPartialAck(int bytesAcked);
+
+    /**
+     * Everything outstanding at the loss has been acknowledged,
+     * so fast recovery is over.
+     *
+     * @param now long The current time
+     */
+    public void onRecovered(long now);
+
+    /**
+     * The retransmission timer ran out. The sender resends what
+     * is unacknowledged.
+     *
+     * @param bytesInFlight int How many bytes were unacknowledged
+     * @param now long The current time
+     */
+    public void onTimeout(int bytesInFlight, long now);
+
+    /**
+     * How fast a sender that paces its segments should send
+     * new ones.
+     *
+     * @param srtt long The smoothed round trip time
+     * @return double The rate in bytes per ms
+     */
+    public double getPacingRate(long srtt);
+}
@@ -0,0 +1,53 @@
+/**
+ * Makes congestion controllers by name.
+ *
+ *     reno    -- slow start, congestion avoidance and fast recovery,
+ *                which ends on the first new ACK
+ *     newreno -- Reno that stays in fast recovery through partial
+ *                ACKs, resending each hole in turn. The default
+ *     cubic   -- grows the window as a cubic function of the time
+ *                since the last loss, and backs off less
+ *     vegas   -- keeps a few segments queued in the network, judged
+ *                by how far the RTT is above the lowest seen
+ *     bbr     -- sizes the window from the measured bottleneck
+ *                bandwidth and lowest RTT, and ignores single losses
+ */
+public final class CongestionControllers {
+
+    private CongestionControllers(){}
+
+    /**
+     * Make a congestion controller
+     *
+     * @param name One of the names in CongestionController
+     * @param mss The maximum segment size of the connection
+     * @return CongestionController The new controller
+     * @throws IllegalArgumentException If name is not recognized
+     */
+    public static CongestionController newController(String name, int mss) throws IllegalArgumentException {
+        if(CongestionController.RENO.equals(name)){
+            return new RenoController(mss);
+        }else if(CongestionController.NEWRENO.equals(name)){
+            return new NewRenoController(mss);
+        }else if(CongestionController.CUBIC.equals(name)){
+            return new CubicController(mss);
+        }else if(CongestionController.VEGAS.equals(name)){
+            return new VegasController(mss);
+        }else if(CongestionController.BBR.equals(name)){
+            return new BbrController(mss);
+        }
+        throw new IllegalArgumentException("Unknown congestion control algorithm: " + name);
+    }
+
+    /**
+     * @param name The name of an algorithm
+     * @return boolean True if newController knows it
+     */
+    public static boolean isKnown(String name){
+        return CongestionController.RENO.equals(name)
+            || CongestionController.NEWRENO.equals(name)
+            || CongestionController.CUBIC.equals(name)
+            || CongestionController.VEGAS.equals(name)
+            || CongestionController.BBR.equals(name);
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * CUBIC congestion control (RFC 8312). After a loss the window grows
+ * as a cubic function of the time since: quickly back towards the
+ * window at the loss, slowly around it, then quickly again beyond it.
+ * Growth depends on time rather than on ACKs, so long round trips
+ * are not slower to recover. A loss keeps 70% of the window rather
+ * than half, and the window never grows more slowly than Reno's would.
+ */
+public class CubicController extends NewRenoController {
+    private static final double C = 0.4;      // growth, in segments per second cubed
+    private static final double BETA = 0.7;   // share of the window kept after a loss
+
+    private double wMax;       // window at the last loss (bytes)
+    private double origin;     // window the cubic is centred on (bytes)
+    private double k;          // seconds from the epoch start until the window reaches origin
+    private double wEst;       // what Reno would have grown to in the epoch (bytes)
+    private long epochStart;   // when growth since the last loss began, or -1
+    private long minRtt;       // lowest RTT seen, or 0 before any sample
+
+    public CubicController(int mss){
+        super(mss);
+        this.wMax = 0;
+        this.epochStart = -1;
+        this.minRtt = 0;
+    }
+
+    public void onRttSample(long rtt, long now){
+        if(minRtt == 0 || rtt < minRtt){
+            minRtt = rtt;
+        }
+    }
+
+    public void onLoss(int bytesInFlight, long now){
+        backOff(bytesInFlight);
+        cwnd = ssThresh + 3 * mss;
+    }
+
+    public void onTimeout(int bytesInFlight, long now){
+        backOff(bytesInFlight);
+        cwnd = mss;
+    }
+
+    protected void congestionAvoidance(int bytesAcked, long now){
+        if(epochStart < 0){
+            epochStart = now;
+            wEst = cwnd;
+            if(cwnd < wMax){
+                origin = wMax;
+                k = Math.cbrt((wMax - cwnd) / (C * mss));
+            }else{
+                origin = cwnd;
+                k = 0;
+            }
+        }
+
+        // where the cubic will be a round trip from now
+        double t = (now - epochStart + minRtt) / 1000.0;
+        double target = origin + C * mss * Math.pow(t - k, 3);
+
+        // never grow more slowly than Reno
+        wEst += 3 * (1 - BETA) / (1 + BETA) * mss * bytesAcked / cwnd;
+        target = Math.max(target, wEst);
+
+        // at most half a segment per segment acknowledged
+        double increase = 0;
+        if(target > cwnd){
+            increase = Math.min((target - cwnd) * bytesAcked / cwnd, bytesAcked / 2.0);
+        }
+        cwnd = (int) Math.min((long) cwnd + Math.max(1, (long) increase), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Remember the window at a loss and keep BETA of it.
+     * If it is below the window at the loss before, other
+     * flows are taking a share, so give some of it up.
+     */
+    private void backOff(int bytesInFlight){
+        if(bytesInFlight < wMax){
+            wMax = bytesInFlight * (1 + BETA) / 2;
+        }else{
+            wMax = bytesInFlight;
+        }
+        ssThresh = Math.max((int)(bytesInFlight * BETA), 2 * mss);
+        epochStart = -1;
+    }
+}
@@ -1,31 +1,11 @@
 /**
- * A utility debug class
+ * A utility debug class. Whether anything is printed, and where,
+ * depends on the Settings of the node's Manager
  */
 public final class Debug {
-	public static boolean DEBUG = false;
-	public static boolean TRACE = true;
-	public static boolean STATISTICS = true;
-	
-	private static boolean tracing = false;
 
 	private Debug (){}
 
-	/** 
-	 * Log if debug enabled
-	 *
-	 * @param msg  The message to print out
-	 */
-	public static void log(String msg){
-		
-		if(DEBUG){
-			if(tracing){
-				System.out.print("\n");
-				tracing = false;
-			}
-			System.out.println("\t" + msg);
-		}
-	}
-
 	/** 
 	 * Log to node if debug enabled
 	 *
@@ -33,13 +13,11 @@ public final class Debug {
 	 * @param msg  The message to print out
 	 */
 	public static void log(Node node, String msg){
+		Settings settings = node.getSettings();
 
-		if(DEBUG){
-			if(tracing){
-				System.out.print("\n");
-				tracing = false;
-			}
-			System.out.println("\t" + node.getAddr() + ": " + msg);
+		if(settings.isDebug()){
+			settings.endTrace();
+			settings.getOut().println("\t" + node.getAddr() + ": " + msg);
 		}
 	}
 
@@ -51,12 +29,11 @@ public final class Debug {
 	 * @param msg  The message to print out
 	 */
 	public static void stat(Node node, String msg){
-		if(STATISTICS){
-			if(tracing){
-				System.out.print("\n");
-				tracing = false;
-			}
-			System.out.println(node.getAddr() + ": " + msg);
+		Settings settings = node.getSettings();
+
+		if(settings.isStatistics()){
+			settings.endTrace();
+			settings.getOut().println(node.getAddr() + ": " + msg);
 		}
 	}	
 
@@ -64,13 +41,16 @@ public final class Debug {
 	 * Trace a single character if tracing
 	 * is enabled.
 	 *
+	 * @param node The node that is tracing
 	 * @param s The character to print, represented
 	 * 			as a string.
 	 */
-	public static void trace(String s){
-		if(TRACE){
-			tracing = true;
-			System.out.print(s);
+	public static void trace(Node node, String s){
+		Settings settings = node.getSettings();
+
+		if(settings.isTrace()){
+			settings.setTracing(true);
+			settings.getOut().print(s);
 		}
 	}
 }
@@ -9,12 +9,12 @@
  * @version 1.0
  */
 
-import java.lang.reflect.Method;
+import java.io.Serializable;
 
 /**
  * <p> A utility class for multi-threading in Fishnet </p>
  */
-public class FishThread {
+public class FishThread implements Serializable {
     protected Manager manager;
     protected Node node;
     protected int addr;
@@ -47,14 +47,11 @@ public class FishThread {
         this.addr = node.getAddr();
         this.interval = interval;
 
-        try {
-            Method method = Callback.getMethod("run", this, null);
-            this.cb = new Callback(method, this, null);
-        } catch (Exception e) {
-            // This should not happen
-            this.node.logError("failed to initialize a FishThread");
-            System.exit(1);
-        }
+        this.cb = new TaskCallback() {
+                public void run() {
+                    FishThread.this.run();
+                }
+            };
     }
 
     /**
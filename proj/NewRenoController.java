@@ -0,0 +1,18 @@
+/**
+ * NewReno congestion control (RFC 6582): Reno, except that a partial
+ * ACK during fast recovery means the next segment was lost too. The
+ * sender resends it and stays in recovery, so several losses in one
+ * window cost a round trip each rather than a timeout.
+ */
+public class NewRenoController extends RenoController {
+
+    public NewRenoController(int mss){
+        super(mss);
+    }
+
+    public boolean onPartialAck(int bytesAcked){
+        // deflate by what was acknowledged, and let one new segment out
+        cwnd = Math.max(cwnd - bytesAcked, 0) + mss;
+        return true;
+    }
+}
@@ -1,6 +1,7 @@
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.io.PrintStream;
+import java.io.Serializable;
 import java.lang.reflect.Method;
 
 /**
@@ -23,7 +24,7 @@ import java.lang.reflect.Method;
  * other upcalls can be delivered
  * </pre>
  */
-public class Node {
+public class Node implements Serializable {
     private final long PingTimeout = 10000;  // Timeout pings in 10 seconds
 
     private Manager manager;
@@ -34,6 +35,14 @@ public class Node {
     // TCP manager
     private TCPManager tcpMan;
 
+    // TCP choices made by command for this node's new sockets,
+    // null until made; until then the Settings apply
+    private Boolean congestionControl;
+    private String congestionControlAlgorithm;
+    private Boolean selectiveAck;
+    private Boolean pacing;
+
+    private PacketView receiveView; // reads packets received in place
     /**
      * Create a new node
      * @param manager The manager that is managing Fishnet
@@ -46,6 +55,7 @@ public class Node {
 
         // Fishnet reliable data transfer
         this.tcpMan = new TCPManager(this, addr, manager);
+        this.receiveView = new PacketView();
     }
 
     /**
@@ -66,14 +76,49 @@ public class Node {
      * @param msg The serialized form of the packet.
      */
     public void onReceive(Integer from, byte[] msg) {
-	Packet packet = Packet.unpack(msg);
+	this.onReceive(from.intValue(), msg);
+    }
+
+    /**
+     * Called by the manager when a packet has arrived for this node
+     * @param from The address of the node that has sent this packet
+     * @param msg The serialized form of the packet.
+     */
+    public void onReceive(int from, byte[] msg) {
+	this.onReceive(from, msg, 0, msg.length);
+    }
+
+    /**
+     * Called by the manager when a packet has arrived for this node in part of an array
+     * @param from The address of the node that has sent this packet
+     * @param buf The array holding the serialized form of the packet
+     * @param offset Where in buf the packet starts
+     * @param length The length of the packet
+     */
+    public void onReceive(int from, byte[] buf, int offset, int length) {
+	PacketView packet = this.receiveView.wrap(buf, offset, length);
 	//logOutput("received packet from " + from);
-	if(packet == null) {
-	    logError("Unable to unpack message: " + Utility.byteArrayToString(msg) + " Received from " + from);
+	if(!packet.isValid()) {
+	    logError("Unable to unpack message: " + Utility.byteArrayToString(packet.toByteArray()) + " Received from " + from);
 	    return;
 	}
 
-	this.receivePacket(from.intValue(), packet);
+	if(packet.getProtocol() == Protocol.TRANSPORT_PKT) {
+	    // the common case: hand it to TCP without unpacking it here
+	    this.tcpMan.receivePacket(from, packet);
+	    return;
+	}
+	this.receivePacket(from, packet.toPacket());
+    }
+
+    /**
+     * Called by the manager when a transport segment has arrived for this node as an object
+     * rather than in a packet
+     * @param from The address of the node that has sent this segment
+     * @param segment The transport segment
+     */
+    public void onReceive(int from, Transport segment) {
+        this.tcpMan.receiveTransport(from, this.addr, segment);
     }
 
     /**
@@ -99,6 +144,14 @@ public class Node {
             return;
         }
 
+        if(this.matchSackCommand(command)){
+            return;
+        }
+
+        if(this.matchPacingCommand(command)){
+            return;
+        }
+
         if(this.matchDebugCommand(command)){
             return;
         }
@@ -235,21 +288,89 @@ public class Node {
         this.send(destAddr, packet);
     }
 
+    /**
+     * Send a transport segment to the specified node. The manager may pass the
+     * segment on as it is, so its payload must not be changed afterwards
+     *
+     * @param srcAddr int Source node address
+     * @param destAddr int Sestination node address
+     * @param segment Transport Segment to be sent
+     */
+    public void sendSegment(int srcAddr, int destAddr, Transport segment) {
+        try {
+            this.manager.sendTransport(srcAddr, destAddr, segment);
+        }catch(IllegalArgumentException e) {
+            logError("Exception: " + e);
+        }
+    }
+
+    public Settings getSettings() {
+        return this.manager.getSettings();
+    }
+
+    /**
+     * @return True if new TCP sockets on this node do congestion control
+     */
+    public boolean isCongestionControl() {
+        if (this.congestionControl == null) {
+            return this.getSettings().isCongestionControl();
+        }
+        return this.congestionControl.booleanValue();
+    }
+
+    /**
+     * @return The name of the congestion control algorithm new TCP sockets on this node use
+     */
+    public String getCongestionControlAlgorithm() {
+        if (this.congestionControlAlgorithm == null) {
+            return this.getSettings().getCongestionControlAlgorithm();
+        }
+        return this.congestionControlAlgorithm;
+    }
+
+    /**
+     * @return True if new TCP sockets on this node use selective acknowledgements
+     */
+    public boolean isSelectiveAck() {
+        if (this.selectiveAck == null) {
+            return this.getSettings().isSelectiveAck();
+        }
+        return this.selectiveAck.booleanValue();
+    }
+
+    /**
+     * @return True if new TCP sockets on this node pace what they send
+     */
+    public boolean isPacing() {
+        if (this.pacing == null) {
+            return this.getSettings().isPacing();
+        }
+        return this.pacing.booleanValue();
+    }
+
+    public BufferPool getBufferPool() {
+        return this.manager.getBufferPool();
+    }
+
+    public RandomStream getRandom() {
+        return this.manager.getRandom(this.addr);
+    }
+
     public int getAddr() {
         return this.addr;
     }
 
     public void logError(String output) {
         Debug.log(this, "ERROR: " + output);
-	this.log(output, System.err);
+	this.log(output, this.getSettings().getErr());
     }
 
     public void logOutput(String output) {
-	this.log(output, System.out);
+	this.log(output, this.getSettings().getOut());
     }
 
     private void log(String output, PrintStream stream) {
-        if(Debug.DEBUG){
+        if(this.getSettings().isDebug()){
     	   stream.println("Node " + this.addr + ": " + output);
         }
     }
@@ -355,10 +476,11 @@ public class Node {
 
     private boolean matchCongestionControlCommand(String command){
         // congestion-control command syntax:
-        //     congestion-control [on, off]
+        //     congestion-control [on, off, reno, newreno, cubic, vegas, bbr]
         // Synopsis:
         //     Enable or disable congestion control for testing
-        //     purposes
+        //     purposes, or enable it with the given algorithm.
+        //     Sockets this node creates from now on use the setting
 
         String[] args = command.split(" ");
         if (args.length != 2 || !args[0].equals("congestion-control")) {
@@ -367,10 +489,62 @@ public class Node {
 
         switch (args[1]) {
             case "ON":
-            case "on":  AsyncSendHelper.CONGESTION_CONTROL = true;
+            case "on":  this.congestionControl = Boolean.TRUE;
+                        return true;
+            case "OFF":
+            case "off": this.congestionControl = Boolean.FALSE;
+                        return true;
+            default:    if (!CongestionControllers.isKnown(args[1])) {
+                            return false;
+                        }
+                        this.congestionControl = Boolean.TRUE;
+                        this.congestionControlAlgorithm = args[1];
+                        return true;
+        }
+    }
+
+    private boolean matchSackCommand(String command){
+        // sack command syntax:
+        //     sack [on, off]
+        // Synopsis:
+        //     Make sockets this node creates from now on use selective
+        //     acknowledgements (on) or go-back-N (off, the default)
+
+        String[] args = command.split(" ");
+        if (args.length != 2 || !args[0].equals("sack")) {
+            return false;
+        }
+
+        switch (args[1]) {
+            case "ON":
+            case "on":  this.selectiveAck = Boolean.TRUE;
+                        return true;
+            case "OFF":
+            case "off": this.selectiveAck = Boolean.FALSE;
+                        return true;
+            default:    return false;
+        }
+    }
+
+    private boolean matchPacingCommand(String command){
+        // pacing command syntax:
+        //     pacing [on, off]
+        // Synopsis:
+        //     Make sockets this node creates from now on spread
+        //     their segments over a round trip (on) or send each
+        //     window at once (off, the default)
+
+        String[] args = command.split(" ");
+        if (args.length != 2 || !args[0].equals("pacing")) {
+            return false;
+        }
+
+        switch (args[1]) {
+            case "ON":
+            case "on":  this.pacing = Boolean.TRUE;
                         return true;
             case "OFF":
-            case "off": AsyncSendHelper.CONGESTION_CONTROL = false;
+            case "off": this.pacing = Boolean.FALSE;
                         return true;
             default:    return false;
         }
@@ -401,11 +575,11 @@ public class Node {
         }
 
         if(args[0].equals("debug")){
-            Debug.DEBUG = newVal;
+            this.getSettings().setDebug(newVal);
         }else if(args[0].equals("trace")){
-            Debug.TRACE = newVal;
+            this.getSettings().setTrace(newVal);
         }else if(args[0].equals("statistics")){
-            Debug.STATISTICS = newVal;
+            this.getSettings().setStatistics(newVal);
         }else{
             System.err.println("Command parser shouldn't reach here");
             return false;
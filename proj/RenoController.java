@@ -0,0 +1,83 @@
+/**
+ * Reno congestion control: slow start up to ssThresh, then about one
+ * segment more per round trip. A loss halves the window, and fast
+ * recovery ends on the first ACK of new data.
+ *
+ * The window starts unbounded, so until the first loss only the
+ * receiver's window limits the sender.
+ */
+public class RenoController implements CongestionController {
+    private static final double SLOW_START_PACING_GAIN = 2.0;  // the window doubles each round trip
+    private static final double PACING_GAIN = 1.2;             // a little ahead of the window
+
+    protected final int mss;
+    protected int cwnd;
+    protected int ssThresh;
+
+    public RenoController(int mss){
+        this.mss = mss;
+        this.cwnd = Integer.MAX_VALUE;
+        this.ssThresh = Integer.MAX_VALUE;
+    }
+
+    public int getWindow(){
+        return cwnd;
+    }
+
+    public void onAck(int bytesAcked, int bytesInFlight, long now){
+        if(cwnd < ssThresh){
+            cwnd += mss;
+        }else{
+            congestionAvoidance(bytesAcked, now);
+        }
+    }
+
+    public void onWindowUpdate(int window){
+        cwnd = Math.min(cwnd, window);
+    }
+
+    public void onRttSample(long rtt, long now){
+    }
+
+    public void onLoss(int bytesInFlight, long now){
+        ssThresh = Math.max(bytesInFlight / 2, 2 * mss);
+
+        // the three duplicates each stand for a segment that has left
+        cwnd = ssThresh + 3 * mss;
+    }
+
+    public void onDupAck(){
+        cwnd += mss;
+    }
+
+    public boolean onPartialAck(int bytesAcked){
+        cwnd = ssThresh;
+        return false;
+    }
+
+    public void onRecovered(long now){
+        cwnd = ssThresh;
+    }
+
+    public void onTimeout(int bytesInFlight, long now){
+        ssThresh = Math.max(bytesInFlight / 2, 2 * mss);
+        cwnd = mss;
+    }
+
+    public double getPacingRate(long srtt){
+        double gain = cwnd < ssThresh ? SLOW_START_PACING_GAIN : PACING_GAIN;
+        return gain * cwnd / Math.max(srtt, 1);
+    }
+
+    /**
+     * Grow the window past ssThresh, by about one
+     * segment per window's worth of ACKs.
+     *
+     * @param bytesAcked int How many bytes the ACK acknowledges
+     * @param now long The current time
+     */
+    protected void congestionAvoidance(int bytesAcked, long now){
+        int increase = Math.max(1, (int)((double) mss * mss / cwnd));
+        cwnd = (int) Math.min((long) cwnd + increase, Integer.MAX_VALUE);
+    }
+}
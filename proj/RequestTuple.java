@@ -6,8 +6,9 @@
  */ 
 import java.util.*;
 import java.nio.*;
+import java.io.Serializable;
 
-public class RequestTuple {
+public class RequestTuple implements Serializable {
     public final int foreignAddress;
     public final int foreignPort;
     public final int localAddress;
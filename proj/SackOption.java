@@ -0,0 +1,68 @@
+/**
+ * Selective acknowledgement (SACK) blocks, carried in ACK segments.
+ *
+ * The blocks ride in the payload of the ACK, not in an option of the
+ * Transport header, which has no option area and whose format emulation
+ * shares with the trawler. ACKs carry no data, so the payload is free.
+ * A sender that does not use SACK ignores it and sees a plain
+ * cumulative acknowledgement, so sockets with and without SACK still
+ * work together.
+ *
+ * Each block is a range [start, end) of sequence numbers the receiver
+ * holds beyond the cumulative acknowledgement, packed as two 4 byte ints.
+ */
+public final class SackOption {
+    public static final int BLOCK_SIZE = 8;   // bytes
+    public static final int MAX_BLOCKS = 4;
+
+    private SackOption(){}
+
+    /**
+     * The most blocks an ACK can carry at the given MTU
+     *
+     * @param mtu The MTU of the node
+     * @return int The number of blocks, at most MAX_BLOCKS
+     */
+    public static int maxBlocks(int mtu){
+        return Math.min(MAX_BLOCKS, Transport.maxPayloadSize(mtu) / BLOCK_SIZE);
+    }
+
+    /**
+     * Pack blocks into the payload of an ACK
+     *
+     * @param starts The first sequence number of each block
+     * @param ends The sequence number after each block
+     * @param count The number of blocks to pack
+     * @return byte[] The payload
+     */
+    public static byte[] pack(int[] starts, int[] ends, int count){
+        byte[] payload = new byte[count * BLOCK_SIZE];
+        for(int i = 0; i < count; i++){
+            WireCodec.putInt(payload, i * BLOCK_SIZE, starts[i]);
+            WireCodec.putInt(payload, i * BLOCK_SIZE + 4, ends[i]);
+        }
+        return payload;
+    }
+
+    /**
+     * @param ack The ACK received
+     * @return int The number of blocks it carries
+     */
+    public static int numBlocks(Transport ack){
+        return ack.getPayload().length / BLOCK_SIZE;
+    }
+
+    /**
+     * @return int The first sequence number of block i of an ACK
+     */
+    public static int getStart(Transport ack, int i){
+        return WireCodec.getInt(ack.getPayload(), i * BLOCK_SIZE);
+    }
+
+    /**
+     * @return int The sequence number after block i of an ACK
+     */
+    public static int getEnd(Transport ack, int i){
+        return WireCodec.getInt(ack.getPayload(), i * BLOCK_SIZE + 4);
+    }
+}
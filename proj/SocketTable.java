@@ -0,0 +1,194 @@
+import java.io.Serializable;
+
+/**
+ * Table of the sockets of a TCPManager, keyed by request tuple.
+ *
+ * A tuple is packed into a single long, 16 bits per field so that the
+ * -1 of a wildcard stays distinct from port and address 255. Connected
+ * sockets are kept in an open addressing table with linear probing;
+ * sockets listening on this node, whose foreign address and port are
+ * wildcards, are kept in an array indexed by local port. Demultiplexing
+ * a segment therefore allocates nothing and takes one probe of each in
+ * the common case.
+ */
+public class SocketTable implements Serializable {
+    private static final int INITIAL_CAPACITY = 16;   // must be a power of 2
+
+    private final int localAddress;
+    private TCPSockWrapper[] listeners;   // indexed by local port
+    private int numListeners;
+    private long[] keys;
+    private TCPSockWrapper[] values;      // null where the slot is free
+    private int mask;                     // keys.length - 1
+    private int size;                     // number of entries in keys/values
+
+    /**
+     * @param localAddress The address of the node the sockets belong to
+     */
+    public SocketTable(int localAddress) {
+        this.localAddress = localAddress;
+        this.listeners = new TCPSockWrapper[Transport.MAX_PORT_NUM + 1];
+        this.numListeners = 0;
+        this.keys = new long[INITIAL_CAPACITY];
+        this.values = new TCPSockWrapper[INITIAL_CAPACITY];
+        this.mask = INITIAL_CAPACITY - 1;
+        this.size = 0;
+    }
+
+    /**
+     * Find the socket a segment belongs to: the connected socket if there
+     * is one, else the socket listening on the destination port
+     *
+     * @return The socket, or null if there is none
+     */
+    public TCPSockWrapper lookup(int from, int srcPort, int dest, int destPort) {
+        TCPSockWrapper match = get(from, srcPort, dest, destPort);
+        if(match == null){
+            match = get(-1, -1, dest, destPort);
+        }
+        return match;
+    }
+
+    /**
+     * @return The socket with exactly this tuple, or null if there is none
+     */
+    public TCPSockWrapper get(int foreignAddress, int foreignPort, int localAddress, int localPort) {
+        if(isListener(foreignAddress, foreignPort, localAddress, localPort)){
+            return listeners[localPort];
+        }
+        long key = pack(foreignAddress, foreignPort, localAddress, localPort);
+        for(int i = slot(key); values[i] != null; i = (i + 1) & mask){
+            if(keys[i] == key){
+                return values[i];
+            }
+        }
+        return null;
+    }
+
+    public boolean containsKey(int foreignAddress, int foreignPort, int localAddress, int localPort) {
+        return get(foreignAddress, foreignPort, localAddress, localPort) != null;
+    }
+
+    /**
+     * Add a socket, replacing any with the same tuple
+     *
+     * @return The socket that was replaced, or null
+     */
+    public TCPSockWrapper put(int foreignAddress, int foreignPort, int localAddress, int localPort,
+                              TCPSockWrapper wrapper) {
+        TCPSockWrapper old;
+        if(isListener(foreignAddress, foreignPort, localAddress, localPort)){
+            old = listeners[localPort];
+            listeners[localPort] = wrapper;
+            if(old == null){
+                numListeners++;
+            }
+            return old;
+        }
+        long key = pack(foreignAddress, foreignPort, localAddress, localPort);
+        int i = slot(key);
+        while(values[i] != null){
+            if(keys[i] == key){
+                old = values[i];
+                values[i] = wrapper;
+                return old;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = wrapper;
+        if(++size > keys.length / 2){
+            resize(keys.length * 2);
+        }
+        return null;
+    }
+
+    /**
+     * Remove the socket with this tuple
+     *
+     * @return The socket removed, or null if there was none
+     */
+    public TCPSockWrapper remove(int foreignAddress, int foreignPort, int localAddress, int localPort) {
+        TCPSockWrapper old;
+        if(isListener(foreignAddress, foreignPort, localAddress, localPort)){
+            old = listeners[localPort];
+            listeners[localPort] = null;
+            if(old != null){
+                numListeners--;
+            }
+            return old;
+        }
+        long key = pack(foreignAddress, foreignPort, localAddress, localPort);
+        int i = slot(key);
+        while(values[i] != null && keys[i] != key){
+            i = (i + 1) & mask;
+        }
+        if(values[i] == null){
+            return null;
+        }
+        old = values[i];
+        values[i] = null;
+        size--;
+        closeGap(i);
+        return old;
+    }
+
+    /**
+     * @return The number of sockets in the table
+     */
+    public int size() {
+        return size + numListeners;
+    }
+
+    /******************** Private Functions ********************/
+
+    // Listening sockets of this node go in the array indexed by port
+    private boolean isListener(int foreignAddress, int foreignPort, int localAddress, int localPort) {
+        return foreignAddress == -1 && foreignPort == -1 && localAddress == this.localAddress
+            && localPort >= 0 && localPort <= Transport.MAX_PORT_NUM;
+    }
+
+    private static long pack(int foreignAddress, int foreignPort, int localAddress, int localPort) {
+        return ((long) (foreignAddress & 0xffff) << 48) | ((long) (foreignPort & 0xffff) << 32)
+            | ((long) (localAddress & 0xffff) << 16) | (long) (localPort & 0xffff);
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    // Shift back the entries after a freed slot so that no probe sequence is broken
+    private void closeGap(int free) {
+        int i = (free + 1) & mask;
+        while(values[i] != null){
+            int home = slot(keys[i]);
+            // move the entry unless its home lies cyclically in (free, i]
+            if(((i - home) & mask) >= ((i - free) & mask)){
+                keys[free] = keys[i];
+                values[free] = values[i];
+                values[i] = null;
+                free = i;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        TCPSockWrapper[] oldValues = values;
+        keys = new long[capacity];
+        values = new TCPSockWrapper[capacity];
+        mask = capacity - 1;
+        for(int j = 0; j < oldKeys.length; j++){
+            if(oldValues[j] != null){
+                int i = slot(oldKeys[j]);
+                while(values[i] != null){
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+}
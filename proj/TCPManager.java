@@ -12,15 +12,14 @@
  */
 import java.util.*;
 import java.nio.*;
+import java.io.Serializable;
 
-public class TCPManager {
+public class TCPManager implements Serializable {
     private Node node;
     private int addr;
     private Manager manager;
-    private Map<RequestTuple, TCPSockWrapper> sockets;
-
-    public static int DEFAULT_READ_BUFF_SIZE = 10000;
-    public static int DEFAULT_WRITE_BUFF_SIZE = 10000;
+    private SocketTable sockets;
+    private TransportView transportView; // reads segments received in place
 
     private static final byte dummy[] = new byte[0];
 
@@ -28,7 +27,8 @@ public class TCPManager {
         this.node = node;
         this.addr = addr;
         this.manager = manager;
-        this.sockets = new HashMap<RequestTuple, TCPSockWrapper>();
+        this.sockets = new SocketTable(addr);
+        this.transportView = new TransportView();
     }
 
     /**
@@ -51,25 +51,50 @@ public class TCPManager {
     }
 
     public void receivePacket(int from, Packet packet){
+        receivePacket(from, new PacketView().wrap(packet.pack()));
+    }
 
-        Transport transport = Transport.unpack(packet.getPayload());
-        RequestTuple key = new RequestTuple(from, transport.getSrcPort(), packet.getDest(), transport.getDestPort());
-        RequestTuple wildCardKey = new RequestTuple(-1, -1, packet.getDest(), transport.getDestPort());
+    /**
+     * Demultiplex a segment to its socket. The headers are read in place, and
+     * the segment is only unpacked once a socket is found for it. Its payload
+     * is taken from the buffer pool and given back once the socket is done.
+     */
+    public void receivePacket(int from, PacketView packet){
 
-        TCPSockWrapper match = null;
-        if (sockets.containsKey(key)) {
-            match = (TCPSockWrapper) sockets.get(key);
-        }else if(sockets.containsKey(wildCardKey)){
-            match = (TCPSockWrapper) sockets.get(wildCardKey);
+        TransportView transport = transportView.wrap(packet);
+        if(!transport.isValid()){
+            Debug.log(node, "TCPManager: Dropped a malformed segment from " + from);
+            return;
         }
+        TCPSockWrapper match = lookup(from, transport.getSrcPort(), packet.getDest(), transport.getDestPort());
+        if(match != null){
+            Transport segment = transport.toTransport(manager.getBufferPool());
+            match.handleTransport(segment, from);
+            segment.release();
+        }
+    }
 
+    /**
+     * Demultiplex a segment that was passed as an object rather than in a packet
+     */
+    public void receiveTransport(int from, int dest, Transport transport){
+        TCPSockWrapper match = lookup(from, transport.getSrcPort(), dest, transport.getDestPort());
         if(match != null){
-            Debug.log(node, "TCPManager: Received a packet from " + from 
-                + " to " + key.localAddress + ":" + key.localPort);
             match.handleTransport(transport, from);
         }
     }
 
+    // Find the socket for a segment: the connected one if there is one, else the listening one
+    private TCPSockWrapper lookup(int from, int srcPort, int dest, int destPort){
+        TCPSockWrapper match = sockets.lookup(from, srcPort, dest, destPort);
+
+        if(match != null && node.getSettings().isDebug()){
+            Debug.log(node, "TCPManager: Received a packet from " + from 
+                + " to " + dest + ":" + destPort);
+        }
+        return match;
+    }
+
     /*
      * Begin socket API
      */
@@ -81,7 +106,8 @@ public class TCPManager {
      *                 a local port
      */
     public TCPSock socket() {
-        return new TCPSockWrapper(this, node, DEFAULT_READ_BUFF_SIZE, DEFAULT_WRITE_BUFF_SIZE).getTCPSock();
+        Settings settings = manager.getSettings();
+        return new TCPSockWrapper(this, node, settings.getReadBuffSize(), settings.getWriteBuffSize()).getTCPSock();
     }
     
     /**
@@ -107,16 +133,17 @@ public class TCPManager {
     public int bind(TCPSockWrapper sockWrapper, int localPort, int foreignAddress, int foreignPort){
         RequestTuple rt = new RequestTuple(foreignAddress, foreignPort, addr, localPort);
         
-        if(sockets.containsKey(rt)){
+        if(sockets.containsKey(foreignAddress, foreignPort, addr, localPort)){
             Debug.log(node, "TCPManager: could not bind a socket to port " 
                 + localPort + " (another socket already bound to port)");
             return -1;
-        }else if (sockets.containsValue(sockWrapper)){
+        }else if (sockWrapper.getBoundKey() != null){
             Debug.log(node, "TCPManager: could not bind a socket to port " 
                 + localPort + " (this socket already bound to port" + sockWrapper.getTCPSock().getLocalPort() + ")");
             return -1;
         }else{
-            sockets.put(rt, sockWrapper);
+            sockets.put(foreignAddress, foreignPort, addr, localPort, sockWrapper);
+            sockWrapper.setBoundKey(rt);
             Debug.log(node, "TCPManager: bound a socket to " + rt.localAddress + ":" + rt.localPort
                 + ", foreign address " + rt.foreignAddress + ":" + rt.foreignPort);
             return 0;
@@ -130,12 +157,17 @@ public class TCPManager {
      * @return int 0 on success, otherwise -1
      */
     public int updateSocketEntry(RequestTuple oldKey, RequestTuple newKey){
-        if(!sockets.containsKey(oldKey)){
+        TCPSockWrapper entry = sockets.remove(oldKey.foreignAddress, oldKey.foreignPort,
+                                              oldKey.localAddress, oldKey.localPort);
+        if(entry == null){
             return -1;
         }
-
-        TCPSockWrapper entry = (TCPSockWrapper) sockets.remove(oldKey);
-        sockets.put(newKey, entry);
+        TCPSockWrapper replaced = sockets.put(newKey.foreignAddress, newKey.foreignPort,
+                                              newKey.localAddress, newKey.localPort, entry);
+        if(replaced != null && replaced != entry){
+            replaced.setBoundKey(null);
+        }
+        entry.setBoundKey(newKey);
         return 0;
     }
     
@@ -146,7 +178,7 @@ public class TCPManager {
      * @return true if bound, else false
      */
     public boolean hasSocketWrapper(TCPSockWrapper wrapper){
-        return sockets.containsValue(wrapper);
+        return wrapper.getBoundKey() != null;
     }
 
     /**
@@ -156,12 +188,13 @@ public class TCPManager {
      * @return true if bound, else false
      */
     public boolean removeSocketWrapper(RequestTuple key){
-        if (!sockets.containsKey(key)){
+        TCPSockWrapper removed = sockets.remove(key.foreignAddress, key.foreignPort,
+                                                key.localAddress, key.localPort);
+        if(removed == null){
             return false;
-        }else{
-            sockets.remove(key);
-            return true;
         }
+        removed.setBoundKey(null);
+        return true;
     }
 
     /*
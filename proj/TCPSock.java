@@ -11,8 +11,9 @@
  * @version 1.0
  */
 import java.nio.*;
+import java.io.Serializable;
 
-public class TCPSock {
+public class TCPSock implements Serializable {
     private TCPManager tcpMan;
     private TCPSockWrapper wrapper;
     private int foreignAddress;
@@ -90,6 +91,57 @@ public class TCPSock {
         return wrapper.acceptConnection();
     }
 
+    /**
+     * Use selective acknowledgements and selective repeat on this
+     * socket rather than go-back-N. Sockets accepted from a listening
+     * socket take its choice. The default comes from the sack command
+     *
+     * @param selectiveAck boolean True for selective repeat
+     */
+    public void setSelectiveAck(boolean selectiveAck){
+        wrapper.setSelectiveAck(selectiveAck);
+    }
+
+    public boolean isSelectiveAck(){
+        return wrapper.isSelectiveAck();
+    }
+
+    /**
+     * Pace what this socket sends: spread each window over a
+     * round trip rather than send it at once. Sockets accepted
+     * from a listening socket take its choice. The default comes
+     * from the pacing command
+     *
+     * @param pacing boolean True to pace
+     */
+    public void setPacing(boolean pacing){
+        wrapper.setPacing(pacing);
+    }
+
+    public boolean isPacing(){
+        return wrapper.isPacing();
+    }
+
+    /**
+     * Choose the congestion control algorithm of this socket, before
+     * it connects. Sockets accepted from a listening socket take its
+     * choice. The default comes from the congestion-control command
+     *
+     * @param algorithm String One of the names in CongestionController,
+     *      or null for no congestion control
+     * @throws IllegalArgumentException If the algorithm is not recognized
+     */
+    public void setCongestionControl(String algorithm) throws IllegalArgumentException {
+        if(algorithm != null && !CongestionControllers.isKnown(algorithm)){
+            throw new IllegalArgumentException("Unknown congestion control algorithm: " + algorithm);
+        }
+        wrapper.setCongestionControl(algorithm);
+    }
+
+    public String getCongestionControl(){
+        return wrapper.getCongestionControl();
+    }
+
     public boolean isBound(){
         return tcpMan.hasSocketWrapper(this.wrapper);
     }
@@ -197,11 +249,8 @@ public class TCPSock {
             numBytesToWrite = len;
         }
 
-        byte [] bytesToWrite = new byte[numBytesToWrite];
-        System.arraycopy(buf, pos, bytesToWrite, 0, numBytesToWrite);
-
         try{
-            wrapper.writeToWriteBuff(bytesToWrite);
+            wrapper.writeToWriteBuff(buf, pos, numBytesToWrite);
             wrapper.flushWriteBuff();
             Debug.log(node, "TCPSock: Wrote " + numBytesToWrite + " bytes");
             return numBytesToWrite;
@@ -242,10 +291,9 @@ public class TCPSock {
             numBytesToRead = len;
         }
 
-        // copy the read bytes to the provided buffer (not efficient)
-        byte [] bytesRead = wrapper.readFromReadBuff(numBytesToRead);
-        System.arraycopy(bytesRead, 0, buf, pos, numBytesToRead);
-        Debug.log(node, "TCPSock: Read " + bytesRead.length + " bytes");
+        // read straight into the provided buffer
+        int numBytesRead = wrapper.readFromReadBuff(buf, pos, numBytesToRead);
+        Debug.log(node, "TCPSock: Read " + numBytesRead + " bytes");
 
         // if we're shutting down and read all remaining bytes, set CLOSED
         if(wrapper.getState() == TCPSockWrapper.State.SHUTDOWN){
@@ -254,7 +302,7 @@ public class TCPSock {
             }
         }
 
-        return bytesRead.length;
+        return numBytesRead;
     }
 
     /*
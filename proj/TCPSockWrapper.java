@@ -9,16 +9,19 @@
  */
 import java.nio.*;
 import java.util.*;
-import java.lang.reflect.Method;
+import java.io.Serializable;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.IOException;
 
-public class TCPSockWrapper{
+public class TCPSockWrapper implements Serializable {
     private final long retryInterval = 200; // how frequently we retry to connect while pending
     private final int maxStartSeq = 100; // the greatest possible start sequence (random)
     private final TCPManager tcpMan;
     private final Node node;
     private final TCPSock sock;
-    private final ByteBuffer readBuff;
-    private final ByteBuffer writeBuff;
+    private transient ByteBuffer readBuff; // ByteBuffer is not serializable, see writeObject
+    private transient ByteBuffer writeBuff;
     // TCP socket states
     enum State {
         // protocol states
@@ -33,10 +36,18 @@ public class TCPSockWrapper{
     private int startSeq;
     private Queue<RequestTuple> pendingConnections;
     private int requestsBacklog;
+    private RequestTuple boundKey; // key of this socket in the TCPManager, null if not bound
+    private boolean selectiveAck; // selective repeat with SACK rather than go-back-N
+    private boolean pacing; // spread segments over a round trip rather than send in bursts
+    private String congestionControl; // congestion control algorithm, null for none
 
     private AsyncSendHelper sendHelper;
     private AsyncReceiveHelper receiveHelper;
 
+    private WheelTimer connectionRetryTimer;
+    private Integer retryAddr; // where the pending connection goes, read when retrying
+    private Integer retryPort;
+
     /**
      * Create a new TCPSockWrapper as the client,
      * without knowing the foreign address and port.
@@ -50,8 +61,12 @@ public class TCPSockWrapper{
         this.readBuff = ByteBuffer.allocate(readBuffSize);
         this.writeBuff = ByteBuffer.allocate(writeBuffSize);
         this.state = State.READY;
-        this.startSeq = (int)(Math.random() * maxStartSeq);
+        this.startSeq = node.getRandom().nextInt(maxStartSeq);
         this.requestsBacklog = -1;
+        this.selectiveAck = node.isSelectiveAck();
+        this.pacing = node.isPacing();
+        this.congestionControl = node.isCongestionControl() ?
+            node.getCongestionControlAlgorithm() : null;
     }
 
     /**
@@ -72,14 +87,29 @@ public class TCPSockWrapper{
         this.state = State.ESTABLISHED;
         this.startSeq = startSeq;
         this.requestsBacklog = -1;
+        this.selectiveAck = node.isSelectiveAck();
+        this.pacing = node.isPacing();
+        this.congestionControl = node.isCongestionControl() ?
+            node.getCongestionControlAlgorithm() : null;
     }
 
     /**
      * @param bytes Bytes to be written into read buffer
      */
     public void writeToReadBuff(byte [] bytes) throws BufferOverflowException{
+        writeToReadBuff(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Write part of an array to the read buffer.
+     *
+     * @param bytes Array holding the bytes to write
+     * @param offset Where in bytes to start
+     * @param length Number of bytes to write
+     */
+    public void writeToReadBuff(byte [] bytes, int offset, int length) throws BufferOverflowException{
         try{
-            readBuff.put(bytes);
+            readBuff.put(bytes, offset, length);
         }catch(ReadOnlyBufferException robe){
             System.err.println("TCPSockWrapper: can't write to read buffer");
             robe.printStackTrace();
@@ -95,8 +125,21 @@ public class TCPSockWrapper{
      * @param bytes Bytes to be written into write buffer
      */
     public void writeToWriteBuff(byte [] bytes) throws BufferOverflowException{
+        writeToWriteBuff(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Write part of an array to the write buffer. Throws
+     * BufferOverflowException if the write buffer is
+     * full, like writeToWriteBuff(byte[]).
+     *
+     * @param bytes Array holding the bytes to write
+     * @param offset Where in bytes to start
+     * @param length Number of bytes to write
+     */
+    public void writeToWriteBuff(byte [] bytes, int offset, int length) throws BufferOverflowException{
         try{
-            Debug.log(node, "TCPSockWrapper: Writing " + bytes.length 
+            Debug.log(node, "TCPSockWrapper: Writing " + length 
                 + " bytes to write buff");
             Debug.log(node, "\t\tTCPSockWrapper: Write Buff State PRE-write = ");
             Debug.log(node, "\t\t\tTCPSockWrapper: Position: " + writeBuff.position());
@@ -104,7 +147,7 @@ public class TCPSockWrapper{
             Debug.log(node, "\t\t\tTCPSockWrapper: Capacity: " + writeBuff.capacity());
             Debug.log(node, "\t\t\tTCPSockWrapper: First byte: " + writeBuff.array()[0]);
             
-            writeBuff.put(bytes);
+            writeBuff.put(bytes, offset, length);
 
         }catch(ReadOnlyBufferException robe){
             System.err.println("TCPSockWrapper: can't write to write buffer");
@@ -117,7 +160,20 @@ public class TCPSockWrapper{
      * @return Bytes read
      */
     public byte [] readFromReadBuff(int numBytes){
-        return readFromBuffer(numBytes, readBuff);
+        return readFromBuffer(numBytes, readBuff, null);
+    }
+
+    /**
+     * Read from the read buffer straight into
+     * an array of the caller.
+     *
+     * @param dest Array to read into
+     * @param offset Where in dest to start
+     * @param numBytes Maximum number of bytes to read from read buffer
+     * @return Number of bytes read, -1 on failure
+     */
+    public int readFromReadBuff(byte [] dest, int offset, int numBytes){
+        return readFromBuffer(dest, offset, Math.min(numBytes, readBuff.position()), readBuff);
     }
 
     /**
@@ -125,7 +181,20 @@ public class TCPSockWrapper{
      * @return Bytes read
      */
     public byte[] readFromWriteBuff(int numBytes){
-        return readFromBuffer(numBytes, writeBuff);
+        return readFromBuffer(numBytes, writeBuff, null);
+    }
+
+    /**
+     * Read from the write buffer into an array
+     * taken from a pool. The caller owns the
+     * array and gives it back when done.
+     *
+     * @param numBytes Maximum number of bytes to read from write buffer
+     * @param pool Pool to take the array from
+     * @return Bytes read, in an array of exactly their length
+     */
+    public byte[] readFromWriteBuff(int numBytes, BufferPool pool){
+        return readFromBuffer(numBytes, writeBuff, pool);
     }
 
     /**
@@ -207,10 +276,9 @@ public class TCPSockWrapper{
                 destPort, Transport.SYN, -1, startSeq, new byte[0]); // use window size -1
 
             // Send the packet
-            node.sendSegment(sock.getLocalAddress(), destAddr, 
-                Protocol.TRANSPORT_PKT, t.pack());
+            node.sendSegment(sock.getLocalAddress(), destAddr, t);
 
-            Debug.trace("S");
+            Debug.trace(node, "S");
 
             // Reflect state change
             this.state = State.SYN_SENT;
@@ -240,14 +308,18 @@ public class TCPSockWrapper{
         RequestTuple nextRequest = (RequestTuple) pendingConnections.remove();
         
         TCPSockWrapper newConnectionWrapper = new TCPSockWrapper(this.tcpMan, this.node, 
-            TCPManager.DEFAULT_READ_BUFF_SIZE, 
-            TCPManager.DEFAULT_WRITE_BUFF_SIZE,
+            node.getSettings().getReadBuffSize(), 
+            node.getSettings().getWriteBuffSize(),
             nextRequest.foreignAddress,
             nextRequest.foreignPort,
             sock.getLocalAddress(),
             sock.getLocalPort(),
             nextRequest.getStartSeq());
 
+        newConnectionWrapper.setSelectiveAck(this.selectiveAck);
+        newConnectionWrapper.setPacing(this.pacing);
+        newConnectionWrapper.setCongestionControl(this.congestionControl);
+
         int success = tcpMan.bind(newConnectionWrapper, nextRequest.localPort,
             nextRequest.foreignAddress, nextRequest.foreignPort);
 
@@ -277,6 +349,10 @@ public class TCPSockWrapper{
         if(receiveHelper != null && getReadBuffSize() == 0){
             state = State.CLOSED;
         }
+
+        // if sending, the FIN goes once everything is acknowledged;
+        // should it all be already, no ACK is coming to send it
+        flushWriteBuff();
     }
 
     /**
@@ -361,9 +437,95 @@ public class TCPSockWrapper{
      */
     public void setClosed(){
         this.state = State.CLOSED;
+        stopConnectionRetry();
+
+        if(boundKey != null){
+            tcpMan.removeSocketWrapper(boundKey);
+        }
+    }
+
+    /**
+     * Whether this socket uses selective acknowledgements. The
+     * sender then retransmits only the segments the receiver
+     * has not reported, and the receiver keeps segments that
+     * arrive out of order. Otherwise it uses go-back-N.
+     *
+     * @return boolean True for selective repeat
+     */
+    public boolean isSelectiveAck(){
+        return this.selectiveAck;
+    }
 
-        tcpMan.removeSocketWrapper(new RequestTuple(sock.getForeignAddress(), 
-            sock.getForeignPort(), sock.getLocalAddress(), sock.getLocalPort()));
+    /**
+     * Choose between selective repeat and go-back-N.
+     *
+     * @param selectiveAck boolean True for selective repeat
+     */
+    public void setSelectiveAck(boolean selectiveAck){
+        this.selectiveAck = selectiveAck;
+    }
+
+    /**
+     * Whether this socket paces what it sends. The sender then
+     * spaces new segments at about a window per round trip, or
+     * at the rate its congestion control asks for, rather than
+     * sending a window at once.
+     *
+     * @return boolean True if pacing
+     */
+    public boolean isPacing(){
+        return this.pacing;
+    }
+
+    /**
+     * Choose whether to pace what this socket sends.
+     *
+     * @param pacing boolean True to pace
+     */
+    public void setPacing(boolean pacing){
+        this.pacing = pacing;
+    }
+
+    /**
+     * The congestion control algorithm this socket uses
+     * once connected.
+     *
+     * @return String One of the names in CongestionController,
+     *      or null for none
+     */
+    public String getCongestionControl(){
+        return this.congestionControl;
+    }
+
+    /**
+     * Choose the congestion control algorithm. This takes
+     * effect when the socket connects.
+     *
+     * @param congestionControl String One of the names in
+     *      CongestionController, or null for none
+     */
+    public void setCongestionControl(String congestionControl){
+        this.congestionControl = congestionControl;
+    }
+
+    /**
+     * Get the key this socket is bound to in the TCPManager.
+     *
+     * @return RequestTuple The key, or null if the socket
+     *      is not bound
+     */
+    public RequestTuple getBoundKey(){
+        return this.boundKey;
+    }
+
+    /**
+     * Record the key this socket is bound to. Called from
+     * TCPManager whenever the socket is bound, moved or removed.
+     *
+     * @param key RequestTuple The key, or null once removed
+     */
+    public void setBoundKey(RequestTuple key){
+        this.boundKey = key;
     }
 
     /**
@@ -380,32 +542,44 @@ public class TCPSockWrapper{
      */
 
     /**
-     * Read from a buffer, and put it back in write mode
-     * if necessary.
+     * Read from a buffer into a new array, or one
+     * taken from pool if it is not null.
      */
-    private byte [] readFromBuffer(int numBytes, ByteBuffer buff){
+    private byte [] readFromBuffer(int numBytes, ByteBuffer buff, BufferPool pool){
+        int size = Math.min(numBytes, buff.position());
+        byte [] contents = (pool != null) ? pool.obtain(size) : new byte[size];
+        if(readFromBuffer(contents, 0, size, buff) < 0){
+            return null;
+        }
+        return contents;
+    }
+
+    /**
+     * Read from a buffer into part of an array,
+     * and put it back in write mode if necessary.
+     */
+    private int readFromBuffer(byte [] dest, int offset, int numBytes, ByteBuffer buff){
 
         buff.flip(); // set the limit to current position, then position to 0
         try{
             if(numBytes >= buff.limit()){ // full read
                 Debug.log(node, "\t\tTCPSockWrapper: Reading whole contents of buffer: " + buff.limit() 
                     + " (requested " + numBytes + ")");
-                byte [] contents = new byte[buff.limit()];
-                buff.get(contents);
+                int numRead = buff.limit();
+                buff.get(dest, offset, numRead);
                 buff.clear();
-                return contents;
+                return numRead;
             }else{ // partial read
                 Debug.log(node, "\t\tTCPSockWrapper: Reading partial contents of buffer: " + numBytes);
-                byte [] contents = new byte[numBytes];
-                buff.get(contents);
+                buff.get(dest, offset, numBytes);
                 buff.compact();
 
-                return contents;
+                return numBytes;
             }
         }catch(BufferUnderflowException bue){
             System.err.println("TCPSockWrapper: buffer underflowed (shouldn't happen)");
             bue.printStackTrace();
-            return null;
+            return -1;
         }finally{
             Debug.log(node, "\t\tTCPSockWrapper: State POST-read = ");
             Debug.log(node, "\t\t\tTCPSockWrapper: Position: " + buff.position());
@@ -419,20 +593,32 @@ public class TCPSockWrapper{
      * Check in timeout seconds if this
      * connection has been made yet.
      *
-     * If not, re-try connection.
-     */
-    private void setupConnectionRetry(long timeout, int destAddr, int destPort){
-        Manager m = tcpMan.getManager();
-        try {
-            Method method = Callback.getMethod("setupConnection", this, new String [] {"java.lang.Integer", "java.lang.Integer"});
-            Callback cb = new Callback(method, this, new Object [] {
-                (Object) new Integer(destAddr), 
-                (Object) new Integer(destPort)});
-
-            m.addTimer(this.node.getAddr(), timeout, cb);
-        }catch(Exception e) {
-            System.err.println("TCPSockWrapper: Failed to add timer callback. Method Name: setupConnection" +
-                 "\nException: " + e);
+     * If not, re-try connection. The timer is
+     * made once, so it reads the destination
+     * from the wrapper rather than keeping the
+     * one of the first attempt.
+     */
+    private void setupConnectionRetry(long timeout, Integer destAddr, Integer destPort){
+        this.retryAddr = destAddr;
+        this.retryPort = destPort;
+        if(connectionRetryTimer == null){
+            connectionRetryTimer = new WheelTimer(new TaskCallback(){
+                public void run(){
+                    setupConnection(retryAddr, retryPort);
+                }
+            });
+        }
+
+        tcpMan.getManager().getTimingWheel().schedule(connectionRetryTimer, timeout);
+    }
+
+    /**
+     * Stop retrying the connection, if we
+     * still are.
+     */
+    private void stopConnectionRetry(){
+        if(connectionRetryTimer != null){
+            tcpMan.getManager().getTimingWheel().cancel(connectionRetryTimer);
         }
     }
 
@@ -440,7 +626,11 @@ public class TCPSockWrapper{
      * Check if this transport acknowledges the
      * pending connection was established.
      * 
-     * If so, handle everything required.
+     * If so, handle everything required. The
+     * server acknowledges with startSeq when it
+     * accepts, and with startSeq + 1 when it
+     * answers a SYN repeated after that, so
+     * either will do.
      */
     private void checkConnectionAcknowledgement(Transport transport){
         if(!sock.isConnectionPending()){
@@ -449,13 +639,15 @@ public class TCPSockWrapper{
         }else if(transport.getType() != Transport.ACK){
             Debug.log(node, "TCPSockWrapper: Received a non-acknowledgement while connection pending");
             return;
-        }else if(transport.getSeqNum() != startSeq){
+        }else if(transport.getSeqNum() != startSeq && transport.getSeqNum() != startSeq + 1){
             Debug.log(node, "TCPSockWrapper: Received acknowledgement, but the seq num was wrong");
             return;
         }
 
         Debug.log(node, "TCPSockWrapper: Received acknowledgement... connected!");
 
+        stopConnectionRetry();
+
         this.sendHelper = new AsyncSendHelper(this, node, tcpMan, startSeq);
         this.state = State.ESTABLISHED;
     }
@@ -516,10 +708,9 @@ public class TCPSockWrapper{
                 Transport.ACK, -1, seqNum, new byte[0]); // use window size -1
 
             // Send the packet
-            node.sendSegment(localAddress, foreignAddress, 
-                Protocol.TRANSPORT_PKT, t.pack());
+            node.sendSegment(localAddress, foreignAddress, t);
 
-            Debug.trace("S");
+            Debug.trace(node, "S");
 
         }catch (IllegalArgumentException iae){
             System.err.println("TCPSockWrapper: Passed bad args to Transport constructor");
@@ -542,7 +733,7 @@ public class TCPSockWrapper{
                 if(this.receiveHelper != null){
                     receiveHelper.processData(transport);
                 }else{
-                    Debug.log("\tTCPSockWrapper: However, no receive helper");
+                    Debug.log(node, "\tTCPSockWrapper: However, no receive helper");
                 }
                 break;
             case Transport.SYN:
@@ -561,4 +752,33 @@ public class TCPSockWrapper{
                 break;
         }
     }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        writeBuffer(out, readBuff);
+        writeBuffer(out, writeBuff);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        readBuff = readBuffer(in);
+        writeBuff = readBuffer(in);
+    }
+
+    private static void writeBuffer(ObjectOutputStream out, ByteBuffer buff) throws IOException {
+        out.writeInt(buff.capacity());
+        out.writeInt(buff.position());
+        out.writeInt(buff.limit());
+        out.write(buff.array(), 0, buff.capacity());
+    }
+
+    private static ByteBuffer readBuffer(ObjectInputStream in) throws IOException {
+        ByteBuffer buff = ByteBuffer.allocate(in.readInt());
+        int position = in.readInt();
+        int limit = in.readInt();
+        in.readFully(buff.array());
+        buff.limit(limit);
+        buff.position(position);
+        return buff;
+    }
 }
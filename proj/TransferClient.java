@@ -111,6 +111,7 @@ public class TransferClient extends FishThread {
             Debug.stat(node, "\ttime elapsed = " +
                            (finishTime - startTime) + " msec");
             Debug.stat(node, "\tBps = " + pos * 1000.0 / (finishTime - startTime));
+            manager.transferDone(new TransferRecord(node.getAddr(), pos, finishTime - startTime));
             // release the socket
             sock.release();
             this.stop();
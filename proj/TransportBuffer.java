@@ -6,44 +6,42 @@
  */
 import java.lang.reflect.Method;
 import java.util.*;
+import java.io.Serializable;
 
-public class TransportBuffer {
+public class TransportBuffer implements Serializable {
 	private final Queue<TransportWrapper> buffer; 
 	private final Manager manager;
 	private final Node node;
 
-	private final Method method;
-	private final Object obj;
-	private final Object[] params;
-
-	private CancelableCallback currentCallback;
+	private final WheelTimer timer;
 
 	public TransportBuffer(Method method, Object obj, Object[] params, Manager manager, Node node){
+		this(new Callback(method, obj, params), manager, node);
+	}
+
+	/**
+	 * @param timeoutCallback The callback to invoke
+	 * 		when the timer reaches zero.
+	 * @param manager The manager to set timers with.
+	 * @param node The node that owns this buffer.
+	 */
+	public TransportBuffer(Callback timeoutCallback, Manager manager, Node node){
 		this.buffer = new LinkedList<TransportWrapper>();
 		this.manager = manager;
 		this.node = node;
-		this.method = method;
-		this.obj = obj;
-		this.params = params;
-
-		this.currentCallback = null;
+		this.timer = new WheelTimer(timeoutCallback);
 	}
 
 	/**
 	 * Start the callback timer. When the timer reaches
 	 * zero, the callback method will call with its 
-	 * specified params.
+	 * specified params. Restarting a running timer
+	 * moves it rather than adding another.
 	 *
 	 * @param timeout The timer in milliseconds.
 	 */
 	public void startTimer(long timeout){
-		if(currentCallback != null){
-			currentCallback.cancel();
-		}
-
-		currentCallback = new CancelableCallback(method, obj, params);
-
-		manager.addTimer(this.node.getAddr(), timeout, currentCallback);
+		manager.getTimingWheel().schedule(timer, timeout);
 	}
 
 	/**
@@ -51,9 +49,18 @@ public class TransportBuffer {
 	 * @see startTimer
 	 */
 	public void stopTimer(){
-		if(currentCallback != null) {
-			currentCallback.cancel();
-		}
+		manager.getTimingWheel().cancel(timer);
+	}
+
+	/**
+	 * Check whether the callback timer is running.
+	 * @see startTimer
+	 *
+	 * @return True if it has been started and has
+	 * 		not yet fired or been stopped.
+	 */
+	public boolean isTimerRunning(){
+		return timer.isPending();
 	}
 
 	/**
@@ -1,10 +1,16 @@
+import java.io.Serializable;
+
 /**
  * A basic wrapper for buffering a transport.
- * Includes the time sent for RTT tracking.
+ * Includes the time sent for RTT tracking, whether
+ * it has been resent, and whether the receiver has
+ * selectively acknowledged it.
  */
-public class TransportWrapper {
+public class TransportWrapper implements Serializable {
 	private Transport transport;
 	private long timeSent;
+	private boolean sacked;
+	private boolean retransmitted;
 
 	public TransportWrapper(Transport transport, long timeSent){
 		this.transport = transport;
@@ -39,4 +45,43 @@ public class TransportWrapper {
 	public void setTimeSent(long timeSent){
 		this.timeSent = timeSent;
 	}
+
+	/**
+	 * Whether the receiver has reported holding this
+	 * transport in a SACK block, so it need not be resent.
+	 *
+	 * @return True if selectively acknowledged
+	 */
+	public boolean isSacked(){
+		return sacked;
+	}
+
+	/**
+	 * Mark this transport as selectively acknowledged.
+	 *
+	 * @param sacked True if the receiver holds it
+	 */
+	public void setSacked(boolean sacked){
+		this.sacked = sacked;
+	}
+
+	/**
+	 * Whether this transport has been sent more than
+	 * once. Its ACK could answer any of the copies, so
+	 * it gives no RTT sample (Karn's algorithm).
+	 *
+	 * @return True if resent
+	 */
+	public boolean isRetransmitted(){
+		return retransmitted;
+	}
+
+	/**
+	 * Mark this transport as resent.
+	 *
+	 * @param retransmitted True if resent
+	 */
+	public void setRetransmitted(boolean retransmitted){
+		this.retransmitted = retransmitted;
+	}
 }
@@ -0,0 +1,68 @@
+/**
+ * TCP Vegas congestion control, which watches delay rather than loss.
+ * The lowest RTT seen is taken as the delay with empty queues, so
+ * from the RTT of the last round trip the sender can tell how many
+ * of its bytes are waiting in queues. Once a round trip it grows the
+ * window by a segment if fewer than ALPHA segments are queued and
+ * shrinks it by one if more than BETA are, so it backs off before
+ * the queues overflow. Losses are handled as in NewReno.
+ */
+public class VegasController extends NewRenoController {
+    private static final int ALPHA = 2;   // segments queued below which the window grows
+    private static final int BETA = 4;    // segments queued above which the window shrinks
+    private static final int GAMMA = 1;   // segments queued at which slow start ends
+
+    private long baseRtt;      // lowest RTT seen, or 0 before any sample
+    private long roundRtt;     // lowest RTT seen this round trip, or 0
+    private long roundStart;
+
+    public VegasController(int mss){
+        super(mss);
+        this.baseRtt = 0;
+        this.roundRtt = 0;
+        this.roundStart = 0;
+    }
+
+    public void onRttSample(long rtt, long now){
+        if(baseRtt == 0 || rtt < baseRtt){
+            baseRtt = rtt;
+        }
+        if(roundRtt == 0 || rtt < roundRtt){
+            roundRtt = rtt;
+        }
+    }
+
+    public void onAck(int bytesAcked, int bytesInFlight, long now){
+        if(roundRtt == 0){
+            // nothing measured this round trip
+            super.onAck(bytesAcked, bytesInFlight, now);
+            return;
+        }else if(now - roundStart < baseRtt){
+            // wait for the round trip to end, but keep up slow start
+            if(cwnd < ssThresh){
+                cwnd += mss;
+            }
+            return;
+        }
+
+        int window = Math.min(cwnd, bytesInFlight + bytesAcked);
+        double queued = (double) window * (roundRtt - baseRtt) / roundRtt;
+
+        if(cwnd < ssThresh){
+            if(queued > GAMMA * mss){
+                // queues are building: drop to what the path holds
+                cwnd = Math.max((int)((double) window * baseRtt / roundRtt) + mss, 2 * mss);
+                ssThresh = cwnd;
+            }else{
+                cwnd += mss;
+            }
+        }else if(queued < ALPHA * mss){
+            cwnd = (int) Math.min((long) cwnd + mss, Integer.MAX_VALUE);
+        }else if(queued > BETA * mss){
+            cwnd = Math.max(window - mss, 2 * mss);
+        }
+
+        roundStart = now;
+        roundRtt = 0;
+    }
+}
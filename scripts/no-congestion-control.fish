@@ -13,6 +13,12 @@ time + 5
 echo ------- Testing NO congestion control -------
 0 trace off
 0 congestion-control off
+1 congestion-control off
+2 congestion-control off
+3 congestion-control off
+4 congestion-control off
+5 congestion-control off
+6 congestion-control off
 0 server 21 1
 
 time + 5
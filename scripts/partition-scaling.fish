@@ -0,0 +1,520 @@
+// perl fishnet.pl simulate 128 scripts/partition-scaling.fish
+// 128 nodes in a ring, each sending to the next one down. Edges alternate between 10 and 20 ms,
+// so a ParallelSimulator with partitions of whole pairs has a lookahead of 20 ms (see ScenarioBench -partitions)
+edge 0 1 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 2 3 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 4 5 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 6 7 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 8 9 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 10 11 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 12 13 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 14 15 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 16 17 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 18 19 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 20 21 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 22 23 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 24 25 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 26 27 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 28 29 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 30 31 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 32 33 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 34 35 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 36 37 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 38 39 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 40 41 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 42 43 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 44 45 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 46 47 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 48 49 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 50 51 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 52 53 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 54 55 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 56 57 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 58 59 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 60 61 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 62 63 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 64 65 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 66 67 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 68 69 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 70 71 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 72 73 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 74 75 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 76 77 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 78 79 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 80 81 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 82 83 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 84 85 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 86 87 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 88 89 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 90 91 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 92 93 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 94 95 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 96 97 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 98 99 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 100 101 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 102 103 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 104 105 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 106 107 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 108 109 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 110 111 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 112 113 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 114 115 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 116 117 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 118 119 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 120 121 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 122 123 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 124 125 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 126 127 lossRate 0.02 delay 10 bw 10000 bt 2000
+edge 1 2 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 3 4 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 5 6 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 7 8 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 9 10 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 11 12 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 13 14 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 15 16 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 17 18 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 19 20 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 21 22 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 23 24 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 25 26 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 27 28 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 29 30 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 31 32 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 33 34 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 35 36 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 37 38 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 39 40 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 41 42 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 43 44 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 45 46 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 47 48 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 49 50 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 51 52 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 53 54 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 55 56 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 57 58 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 59 60 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 61 62 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 63 64 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 65 66 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 67 68 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 69 70 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 71 72 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 73 74 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 75 76 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 77 78 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 79 80 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 81 82 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 83 84 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 85 86 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 87 88 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 89 90 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 91 92 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 93 94 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 95 96 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 97 98 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 99 100 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 101 102 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 103 104 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 105 106 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 107 108 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 109 110 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 111 112 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 113 114 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 115 116 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 117 118 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 119 120 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 121 122 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 123 124 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 125 126 lossRate 0.02 delay 20 bw 10000 bt 2000
+edge 127 0 lossRate 0.02 delay 20 bw 10000 bt 2000
+time + 5
+0 trace off
+1 trace off
+2 trace off
+3 trace off
+4 trace off
+5 trace off
+6 trace off
+7 trace off
+8 trace off
+9 trace off
+10 trace off
+11 trace off
+12 trace off
+13 trace off
+14 trace off
+15 trace off
+16 trace off
+17 trace off
+18 trace off
+19 trace off
+20 trace off
+21 trace off
+22 trace off
+23 trace off
+24 trace off
+25 trace off
+26 trace off
+27 trace off
+28 trace off
+29 trace off
+30 trace off
+31 trace off
+32 trace off
+33 trace off
+34 trace off
+35 trace off
+36 trace off
+37 trace off
+38 trace off
+39 trace off
+40 trace off
+41 trace off
+42 trace off
+43 trace off
+44 trace off
+45 trace off
+46 trace off
+47 trace off
+48 trace off
+49 trace off
+50 trace off
+51 trace off
+52 trace off
+53 trace off
+54 trace off
+55 trace off
+56 trace off
+57 trace off
+58 trace off
+59 trace off
+60 trace off
+61 trace off
+62 trace off
+63 trace off
+64 trace off
+65 trace off
+66 trace off
+67 trace off
+68 trace off
+69 trace off
+70 trace off
+71 trace off
+72 trace off
+73 trace off
+74 trace off
+75 trace off
+76 trace off
+77 trace off
+78 trace off
+79 trace off
+80 trace off
+81 trace off
+82 trace off
+83 trace off
+84 trace off
+85 trace off
+86 trace off
+87 trace off
+88 trace off
+89 trace off
+90 trace off
+91 trace off
+92 trace off
+93 trace off
+94 trace off
+95 trace off
+96 trace off
+97 trace off
+98 trace off
+99 trace off
+100 trace off
+101 trace off
+102 trace off
+103 trace off
+104 trace off
+105 trace off
+106 trace off
+107 trace off
+108 trace off
+109 trace off
+110 trace off
+111 trace off
+112 trace off
+113 trace off
+114 trace off
+115 trace off
+116 trace off
+117 trace off
+118 trace off
+119 trace off
+120 trace off
+121 trace off
+122 trace off
+123 trace off
+124 trace off
+125 trace off
+126 trace off
+127 trace off
+0 server 21 1
+1 server 21 1
+2 server 21 1
+3 server 21 1
+4 server 21 1
+5 server 21 1
+6 server 21 1
+7 server 21 1
+8 server 21 1
+9 server 21 1
+10 server 21 1
+11 server 21 1
+12 server 21 1
+13 server 21 1
+14 server 21 1
+15 server 21 1
+16 server 21 1
+17 server 21 1
+18 server 21 1
+19 server 21 1
+20 server 21 1
+21 server 21 1
+22 server 21 1
+23 server 21 1
+24 server 21 1
+25 server 21 1
+26 server 21 1
+27 server 21 1
+28 server 21 1
+29 server 21 1
+30 server 21 1
+31 server 21 1
+32 server 21 1
+33 server 21 1
+34 server 21 1
+35 server 21 1
+36 server 21 1
+37 server 21 1
+38 server 21 1
+39 server 21 1
+40 server 21 1
+41 server 21 1
+42 server 21 1
+43 server 21 1
+44 server 21 1
+45 server 21 1
+46 server 21 1
+47 server 21 1
+48 server 21 1
+49 server 21 1
+50 server 21 1
+51 server 21 1
+52 server 21 1
+53 server 21 1
+54 server 21 1
+55 server 21 1
+56 server 21 1
+57 server 21 1
+58 server 21 1
+59 server 21 1
+60 server 21 1
+61 server 21 1
+62 server 21 1
+63 server 21 1
+64 server 21 1
+65 server 21 1
+66 server 21 1
+67 server 21 1
+68 server 21 1
+69 server 21 1
+70 server 21 1
+71 server 21 1
+72 server 21 1
+73 server 21 1
+74 server 21 1
+75 server 21 1
+76 server 21 1
+77 server 21 1
+78 server 21 1
+79 server 21 1
+80 server 21 1
+81 server 21 1
+82 server 21 1
+83 server 21 1
+84 server 21 1
+85 server 21 1
+86 server 21 1
+87 server 21 1
+88 server 21 1
+89 server 21 1
+90 server 21 1
+91 server 21 1
+92 server 21 1
+93 server 21 1
+94 server 21 1
+95 server 21 1
+96 server 21 1
+97 server 21 1
+98 server 21 1
+99 server 21 1
+100 server 21 1
+101 server 21 1
+102 server 21 1
+103 server 21 1
+104 server 21 1
+105 server 21 1
+106 server 21 1
+107 server 21 1
+108 server 21 1
+109 server 21 1
+110 server 21 1
+111 server 21 1
+112 server 21 1
+113 server 21 1
+114 server 21 1
+115 server 21 1
+116 server 21 1
+117 server 21 1
+118 server 21 1
+119 server 21 1
+120 server 21 1
+121 server 21 1
+122 server 21 1
+123 server 21 1
+124 server 21 1
+125 server 21 1
+126 server 21 1
+127 server 21 1
+time + 5
+0 transfer 127 21 40 20000
+1 transfer 0 21 40 20000
+2 transfer 1 21 40 20000
+3 transfer 2 21 40 20000
+4 transfer 3 21 40 20000
+5 transfer 4 21 40 20000
+6 transfer 5 21 40 20000
+7 transfer 6 21 40 20000
+8 transfer 7 21 40 20000
+9 transfer 8 21 40 20000
+10 transfer 9 21 40 20000
+11 transfer 10 21 40 20000
+12 transfer 11 21 40 20000
+13 transfer 12 21 40 20000
+14 transfer 13 21 40 20000
+15 transfer 14 21 40 20000
+16 transfer 15 21 40 20000
+17 transfer 16 21 40 20000
+18 transfer 17 21 40 20000
+19 transfer 18 21 40 20000
+20 transfer 19 21 40 20000
+21 transfer 20 21 40 20000
+22 transfer 21 21 40 20000
+23 transfer 22 21 40 20000
+24 transfer 23 21 40 20000
+25 transfer 24 21 40 20000
+26 transfer 25 21 40 20000
+27 transfer 26 21 40 20000
+28 transfer 27 21 40 20000
+29 transfer 28 21 40 20000
+30 transfer 29 21 40 20000
+31 transfer 30 21 40 20000
+32 transfer 31 21 40 20000
+33 transfer 32 21 40 20000
+34 transfer 33 21 40 20000
+35 transfer 34 21 40 20000
+36 transfer 35 21 40 20000
+37 transfer 36 21 40 20000
+38 transfer 37 21 40 20000
+39 transfer 38 21 40 20000
+40 transfer 39 21 40 20000
+41 transfer 40 21 40 20000
+42 transfer 41 21 40 20000
+43 transfer 42 21 40 20000
+44 transfer 43 21 40 20000
+45 transfer 44 21 40 20000
+46 transfer 45 21 40 20000
+47 transfer 46 21 40 20000
+48 transfer 47 21 40 20000
+49 transfer 48 21 40 20000
+50 transfer 49 21 40 20000
+51 transfer 50 21 40 20000
+52 transfer 51 21 40 20000
+53 transfer 52 21 40 20000
+54 transfer 53 21 40 20000
+55 transfer 54 21 40 20000
+56 transfer 55 21 40 20000
+57 transfer 56 21 40 20000
+58 transfer 57 21 40 20000
+59 transfer 58 21 40 20000
+60 transfer 59 21 40 20000
+61 transfer 60 21 40 20000
+62 transfer 61 21 40 20000
+63 transfer 62 21 40 20000
+64 transfer 63 21 40 20000
+65 transfer 64 21 40 20000
+66 transfer 65 21 40 20000
+67 transfer 66 21 40 20000
+68 transfer 67 21 40 20000
+69 transfer 68 21 40 20000
+70 transfer 69 21 40 20000
+71 transfer 70 21 40 20000
+72 transfer 71 21 40 20000
+73 transfer 72 21 40 20000
+74 transfer 73 21 40 20000
+75 transfer 74 21 40 20000
+76 transfer 75 21 40 20000
+77 transfer 76 21 40 20000
+78 transfer 77 21 40 20000
+79 transfer 78 21 40 20000
+80 transfer 79 21 40 20000
+81 transfer 80 21 40 20000
+82 transfer 81 21 40 20000
+83 transfer 82 21 40 20000
+84 transfer 83 21 40 20000
+85 transfer 84 21 40 20000
+86 transfer 85 21 40 20000
+87 transfer 86 21 40 20000
+88 transfer 87 21 40 20000
+89 transfer 88 21 40 20000
+90 transfer 89 21 40 20000
+91 transfer 90 21 40 20000
+92 transfer 91 21 40 20000
+93 transfer 92 21 40 20000
+94 transfer 93 21 40 20000
+95 transfer 94 21 40 20000
+96 transfer 95 21 40 20000
+97 transfer 96 21 40 20000
+98 transfer 97 21 40 20000
+99 transfer 98 21 40 20000
+100 transfer 99 21 40 20000
+101 transfer 100 21 40 20000
+102 transfer 101 21 40 20000
+103 transfer 102 21 40 20000
+104 transfer 103 21 40 20000
+105 transfer 104 21 40 20000
+106 transfer 105 21 40 20000
+107 transfer 106 21 40 20000
+108 transfer 107 21 40 20000
+109 transfer 108 21 40 20000
+110 transfer 109 21 40 20000
+111 transfer 110 21 40 20000
+112 transfer 111 21 40 20000
+113 transfer 112 21 40 20000
+114 transfer 113 21 40 20000
+115 transfer 114 21 40 20000
+116 transfer 115 21 40 20000
+117 transfer 116 21 40 20000
+118 transfer 117 21 40 20000
+119 transfer 118 21 40 20000
+120 transfer 119 21 40 20000
+121 transfer 120 21 40 20000
+122 transfer 121 21 40 20000
+123 transfer 122 21 40 20000
+124 transfer 123 21 40 20000
+125 transfer 124 21 40 20000
+126 transfer 125 21 40 20000
+127 transfer 126 21 40 20000
+time + 100000000
+time + 10
+exit